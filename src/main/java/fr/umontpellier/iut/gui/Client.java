@@ -0,0 +1,398 @@
+package fr.umontpellier.iut.gui;
+
+import com.google.gson.JsonObject;
+
+import javax.websocket.CloseReason;
+import javax.websocket.SendResult;
+import javax.websocket.Session;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Client connecté à une partie par une websocket.
+ * <p>
+ * Les états sont envoyés de manière asynchrone : le thread du jeu ne fait que
+ * déposer le nouvel état dans l'emplacement d'envoi du client et n'attend
+ * jamais le réseau. Un seul envoi est en cours à la fois par client ; si de
+ * nouveaux états sont publiés pendant un envoi, seul le plus récent est
+ * conservé et il est envoyé dès que l'envoi en cours se termine. Un client qui
+ * sait appliquer les patchs reçoit alors un patch calculé depuis le dernier
+ * état qu'il a effectivement reçu.
+ * <p>
+ * Un client dont l'envoi en cours dure plus de {@code DELAI_MAX_ENVOI} est
+ * considéré comme bloqué et sa connexion est fermée. Le délai est vérifié à
+ * chaque dépôt d'un message et périodiquement par le serveur (voir
+ * {@code verifierDelai}), même si la partie ne publie plus rien.
+ */
+public class Client {
+    /**
+     * Nom du paramètre de la requête de connexion par lequel un client indique
+     * qu'il sait appliquer les patchs (par exemple
+     * {@code ws://localhost:3232/?delta=1})
+     */
+    public static final String PARAMETRE_DELTA = "delta";
+    /**
+     * Nom du paramètre de la requête de connexion par lequel un client qui se
+     * reconnecte indique la version du dernier état qu'il a reçu (par exemple
+     * {@code ws://localhost:3232/?delta=1&epoque=8121&depuis=42}, voir
+     * {@code PARAMETRE_EPOQUE})
+     */
+    public static final String PARAMETRE_DEPUIS = "depuis";
+    /**
+     * Nom du paramètre de la requête de connexion par lequel un client qui se
+     * reconnecte indique l'époque du dernier état qu'il a reçu : la version
+     * {@code depuis} n'est reprise que si l'époque est celle de la partie
+     */
+    public static final String PARAMETRE_EPOQUE = "epoque";
+    /**
+     * Nom et valeur du paramètre de la requête de connexion par lequel un client
+     * rejoint une partie en tant que spectateur (par exemple
+     * {@code ws://localhost:3232/?partie=ma-partie&role=spectateur})
+     */
+    public static final String PARAMETRE_ROLE = "role";
+    public static final String ROLE_SPECTATEUR = "spectateur";
+    /**
+     * Durée maximale (en millisecondes) d'un envoi avant que le client soit
+     * déconnecté
+     */
+    public static final long DELAI_MAX_ENVOI = 10_000;
+    /**
+     * Nombre moyen de messages par seconde acceptés d'un client, et nombre
+     * maximal de messages acceptés en rafale (les messages en excès sont
+     * ignorés)
+     */
+    public static final double DEBIT_MAX_MESSAGES = 10;
+    public static final int RAFALE_MAX_MESSAGES = 20;
+    /**
+     * Session websocket du client
+     */
+    private final Session session;
+    /**
+     * Indique si le client reçoit des patchs (sinon il reçoit l'état complet à
+     * chaque mise à jour)
+     */
+    private final boolean delta;
+    /**
+     * Encodage des messages envoyés au client
+     */
+    private final Encodage encodage;
+    /**
+     * Indique si le client est un spectateur (il ne peut pas jouer)
+     */
+    private final boolean spectateur;
+    /**
+     * Époque et version du dernier état reçu par le client avant sa
+     * reconnexion (ou -1)
+     */
+    private final long epoqueReprise;
+    private final long versionReprise;
+    /**
+     * Limite le débit des messages reçus du client
+     */
+    private final LimiteurDebit limiteur;
+    /**
+     * Nombre de messages du client ignorés par le limiteur de débit
+     */
+    private final LongAdder nbMessagesRejetes;
+    /**
+     * Dernier état reçu par le client (ou {@code null} si le client doit recevoir
+     * un état complet)
+     */
+    private EtatPartie etatRecu;
+    /**
+     * État en cours d'envoi (ou {@code null} si aucun envoi n'est en cours)
+     */
+    private EtatPartie etatEnCours;
+    /**
+     * Date (en millisecondes) du début de l'envoi en cours
+     */
+    private long debutEnvoi;
+    /**
+     * Emplacement d'envoi : état le plus récent qui attend la fin de l'envoi en
+     * cours (ou {@code null})
+     */
+    private EtatPartie etatEnAttente;
+    /**
+     * Indique que le prochain envoi doit être un état complet
+     */
+    private boolean etatCompletDemande;
+    /**
+     * Nombre d'états remplacés dans l'emplacement d'envoi avant d'avoir été
+     * envoyés
+     */
+    private long nbEtatsFusionnes;
+    /**
+     * Message de rejet qui attend la fin de l'envoi en cours (ou {@code null})
+     */
+    private String rejetEnAttente;
+    /**
+     * Indique si un message de rejet est en cours d'envoi
+     */
+    private boolean rejetEnCours;
+    /**
+     * Indique si la connexion du client a été fermée par le serveur
+     */
+    private boolean expulse;
+
+    public Client(Session session) {
+        this.session = session;
+        List<String> valeurs = session.getRequestParameterMap().get(PARAMETRE_DELTA);
+        delta = valeurs != null && !valeurs.isEmpty() && !valeurs.get(0).equals("0");
+        encodage = Encodage.depuis(session);
+        List<String> role = session.getRequestParameterMap().get(PARAMETRE_ROLE);
+        spectateur = role != null && role.contains(ROLE_SPECTATEUR);
+        epoqueReprise = lireVersion(session.getRequestParameterMap().get(PARAMETRE_EPOQUE));
+        versionReprise = lireVersion(session.getRequestParameterMap().get(PARAMETRE_DEPUIS));
+        limiteur = new LimiteurDebit(DEBIT_MAX_MESSAGES, RAFALE_MAX_MESSAGES);
+        nbMessagesRejetes = new LongAdder();
+    }
+
+    private static long lireVersion(List<String> valeurs) {
+        if (valeurs == null || valeurs.isEmpty()) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(valeurs.get(0));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    public Session getSession() {
+        return session;
+    }
+
+    public boolean accepteDelta() {
+        return delta;
+    }
+
+    public Encodage getEncodage() {
+        return encodage;
+    }
+
+    public boolean estSpectateur() {
+        return spectateur;
+    }
+
+    public long getEpoqueReprise() {
+        return epoqueReprise;
+    }
+
+    public long getVersionReprise() {
+        return versionReprise;
+    }
+
+    public long getNbMessagesRejetes() {
+        return nbMessagesRejetes.sum();
+    }
+
+    /**
+     * Décide si un message reçu du client doit être traité, selon le débit de
+     * messages du client
+     *
+     * @return {@code false} si le message doit être ignoré
+     */
+    boolean autoriserMessage() {
+        if (limiteur.autoriser()) {
+            return true;
+        }
+        nbMessagesRejetes.increment();
+        return false;
+    }
+
+    public synchronized long getNbEtatsFusionnes() {
+        return nbEtatsFusionnes;
+    }
+
+    /**
+     * Transmet un état au client, sans attendre la fin de l'envoi. Les états plus
+     * anciens que le dernier état transmis ou en attente sont ignorés.
+     *
+     * @param etat l'état à transmettre
+     */
+    synchronized void envoyer(EtatPartie etat) {
+        if (expulse || etat.getVersion() <= derniereVersion() || !peutLire(etat)) {
+            return;
+        }
+        if (!envoiEnCours()) {
+            demarrerEnvoi(etat);
+        } else if (!verifierDelai(System.currentTimeMillis())) {
+            if (etatEnAttente != null) {
+                nbEtatsFusionnes++;
+            }
+            etatEnAttente = etat;
+        }
+    }
+
+    /**
+     * Transmet l'état complet au client (à la connexion ou lorsque le client
+     * signale qu'il a manqué une version)
+     */
+    synchronized void envoyerEtatComplet(EtatPartie etat) {
+        etatCompletDemande = true;
+        if (expulse || etat.getVersion() < derniereVersion() || !peutLire(etat)) {
+            // un état plus récent est déjà en attente, il sera envoyé en entier
+            // (un état sans forme binaire n'est pas envoyé à un client binaire :
+            // la partie publie à nouveau l'état avec sa forme binaire)
+            return;
+        }
+        if (!envoiEnCours()) {
+            demarrerEnvoi(etat);
+        } else if (!verifierDelai(System.currentTimeMillis())) {
+            etatEnAttente = etat;
+        }
+    }
+
+    /**
+     * Signale au client que sa réponse a été refusée par le jeu (réponse
+     * invalide ou périmée). Le message est court et n'est envoyé qu'à ce
+     * client : l'état de la partie n'a pas changé, il n'est ni reconstruit ni
+     * renvoyé. Seul le dernier rejet non encore envoyé est conservé.
+     *
+     * @param reponse la réponse refusée
+     * @param version la version de l'état courant de la partie
+     */
+    synchronized void rejeter(String reponse, long version) {
+        if (expulse) {
+            return;
+        }
+        JsonObject rejet = new JsonObject();
+        rejet.addProperty("type", "rejet");
+        rejet.addProperty("version", version);
+        rejet.addProperty("reponse", reponse);
+        if (!envoiEnCours()) {
+            demarrerEnvoiRejet(rejet.toString());
+        } else if (!verifierDelai(System.currentTimeMillis())) {
+            rejetEnAttente = rejet.toString();
+        }
+    }
+
+    /**
+     * Ferme la connexion du client si son envoi en cours dure depuis plus de
+     * {@code DELAI_MAX_ENVOI}
+     *
+     * @param maintenant la date courante (en millisecondes)
+     * @return vrai si le client est (ou a déjà été) expulsé
+     */
+    synchronized boolean verifierDelai(long maintenant) {
+        if (!expulse && envoiEnCours() && maintenant - debutEnvoi > DELAI_MAX_ENVOI) {
+            expulser();
+        }
+        return expulse;
+    }
+
+    /**
+     * Reprend l'envoi des états à un client qui se reconnecte : le client
+     * possède déjà l'état {@code base}, il ne reçoit donc que le patch de
+     * {@code base} à {@code etat} (rien si {@code base} est l'état courant).
+     *
+     * @param base l'état reçu par le client avant sa reconnexion
+     * @param etat l'état actuel de la partie
+     */
+    synchronized void reprendre(EtatPartie base, EtatPartie etat) {
+        if (etatRecu == null && etatEnCours == null && etatEnAttente == null) {
+            etatRecu = base;
+        }
+        envoyer(etat);
+    }
+
+    /**
+     * @return faux si le client lit le format binaire et que l'état n'en a pas
+     */
+    private boolean peutLire(EtatPartie etat) {
+        return encodage != Encodage.BINAIRE || etat.aFormeBinaire();
+    }
+
+    /**
+     * @return la version de l'état le plus récent envoyé ou en attente d'envoi
+     */
+    private long derniereVersion() {
+        EtatPartie dernier = etatEnAttente != null ? etatEnAttente
+                : etatEnCours != null ? etatEnCours
+                : etatRecu;
+        return dernier == null ? -1 : dernier.getVersion();
+    }
+
+    private boolean envoiEnCours() {
+        return etatEnCours != null || rejetEnCours;
+    }
+
+    private void demarrerEnvoiRejet(String rejet) {
+        rejetEnCours = true;
+        debutEnvoi = System.currentTimeMillis();
+        session.getAsyncRemote().sendText(rejet, this::rejetEnvoye);
+    }
+
+    private synchronized void rejetEnvoye(SendResult resultat) {
+        rejetEnCours = false;
+        envoyerSuivant();
+    }
+
+    private void demarrerEnvoi(EtatPartie etat) {
+        boolean complet = etatRecu == null || etatCompletDemande;
+        etatCompletDemande = false;
+        etatEnCours = etat;
+        debutEnvoi = System.currentTimeMillis();
+        if (encodage == Encodage.BINAIRE) {
+            // le format binaire ne contient que des indices : le dictionnaire est
+            // renvoyé chaque fois que le client repart d'un état complet
+            session.getAsyncRemote().sendBinary(etat.getTrameBinaire(complet), this::envoiTermine);
+            return;
+        }
+        Message message = delta && !complet ? etat.getPatchDepuis(etatRecu) : etat.getEtatComplet();
+        if (encodage == Encodage.TEXTE) {
+            session.getAsyncRemote().sendText(message.getJson(), this::envoiTermine);
+        } else {
+            session.getAsyncRemote().sendBinary(message.getTrame(encodage), this::envoiTermine);
+        }
+    }
+
+    private synchronized void envoiTermine(SendResult resultat) {
+        if (resultat.isOK()) {
+            etatRecu = etatEnCours;
+        } else {
+            // on ne sait pas ce que le client a reçu : le prochain envoi sera complet
+            etatRecu = null;
+        }
+        etatEnCours = null;
+        envoyerSuivant();
+    }
+
+    /**
+     * Démarre l'envoi suivant à la fin d'un envoi : le rejet en attente (court)
+     * puis l'état en attente
+     */
+    private void envoyerSuivant() {
+        if (expulse) {
+            return;
+        }
+        if (rejetEnAttente != null) {
+            String rejet = rejetEnAttente;
+            rejetEnAttente = null;
+            demarrerEnvoiRejet(rejet);
+        } else if (etatEnAttente != null) {
+            EtatPartie etat = etatEnAttente;
+            etatEnAttente = null;
+            demarrerEnvoi(etat);
+        }
+    }
+
+    /**
+     * Ferme la connexion d'un client qui ne suit plus (la fermeture est faite
+     * en dehors du thread appelant, qui peut être celui du jeu)
+     */
+    private void expulser() {
+        expulse = true;
+        etatEnAttente = null;
+        rejetEnAttente = null;
+        CompletableFuture.runAsync(() -> {
+            try {
+                session.close(new CloseReason(CloseReason.CloseCodes.TRY_AGAIN_LATER, "Client trop lent"));
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        });
+    }
+}
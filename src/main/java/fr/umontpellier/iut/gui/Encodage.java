@@ -0,0 +1,53 @@
+package fr.umontpellier.iut.gui;
+
+import javax.websocket.Session;
+import java.util.List;
+
+/**
+ * Encodages des messages envoyés aux clients, choisi par chaque client avec le
+ * paramètre {@code encodage} de sa requête de connexion (par exemple
+ * {@code ws://localhost:3232/?encodage=deflate})
+ */
+public enum Encodage {
+    /**
+     * Messages texte (le serveur websocket encode le texte pour chaque session)
+     */
+    TEXTE,
+    /**
+     * Messages binaires contenant le JSON encodé en UTF-8 (encodé une seule fois
+     * pour tous les clients)
+     */
+    UTF8,
+    /**
+     * Messages binaires contenant le JSON encodé en UTF-8 puis compressé au format
+     * zlib (compressé une seule fois pour tous les clients)
+     */
+    DEFLATE,
+    /**
+     * Messages binaires au format compact décrit dans {@code EcrivainBinaire}
+     * (toujours l'état complet, le premier message d'une connexion commençant
+     * par le dictionnaire de la partie)
+     */
+    BINAIRE;
+
+    /**
+     * Nom du paramètre de la requête de connexion indiquant l'encodage voulu
+     */
+    public static final String PARAMETRE_ENCODAGE = "encodage";
+
+    /**
+     * @return l'encodage demandé par le client lors de sa connexion ({@code TEXTE}
+     *         par défaut)
+     */
+    public static Encodage depuis(Session session) {
+        List<String> valeurs = session.getRequestParameterMap().get(PARAMETRE_ENCODAGE);
+        if (valeurs != null && !valeurs.isEmpty()) {
+            for (Encodage encodage : values()) {
+                if (encodage.name().equalsIgnoreCase(valeurs.get(0))) {
+                    return encodage;
+                }
+            }
+        }
+        return TEXTE;
+    }
+}
@@ -0,0 +1,242 @@
+package fr.umontpellier.iut.gui;
+
+import java.nio.ByteBuffer;
+import java.util.Objects;
+
+/**
+ * État (immuable) d'une partie tel qu'il est envoyé aux clients.
+ * <p>
+ * L'état est découpé en fragments JSON : un par ville, par route et par joueur,
+ * plus un pour le prompt, les piles et le log. Ce découpage permet de calculer
+ * un patch ne contenant que les fragments qui ont changé depuis un état
+ * précédent, au lieu de renvoyer tout le plateau à chaque mise à jour.
+ * <p>
+ * Deux types de messages sont produits :
+ * <ul>
+ * <li>l'état complet : {@code {"type":"etat","epoque":e,"version":v,"prompt":{..},"villes":[..],"routes":[..],"joueurs":[..],"piles":{..},"log":[..]}}</li>
+ * <li>un patch : {@code {"type":"patch","version":v,"base":b,"villes":{"i":{..}},...}}
+ * où seules les sections modifiées sont présentes, et où les villes, routes
+ * et joueurs modifiés sont indexés par leur position dans la liste</li>
+ * </ul>
+ * L'époque {@code e} distingue l'instance de jeu qui a produit l'état : les
+ * versions ne se comparent qu'entre états de la même époque.
+ * <p>
+ * L'état peut aussi contenir sa forme binaire (voir {@code EcrivainBinaire}),
+ * envoyée aux clients qui ont choisi l'encodage {@code BINAIRE} : elle n'est
+ * écrite que lorsque la partie a de tels clients.
+ */
+public final class EtatPartie {
+    /**
+     * Nombre aléatoire propre à l'instance de jeu qui a produit l'état
+     */
+    private final long epoque;
+    /**
+     * Numéro de version de l'état (strictement croissant au cours d'une partie)
+     */
+    private final long version;
+    private final String prompt;
+    private final String[] villes;
+    private final String[] routes;
+    private final String[] joueurs;
+    private final String piles;
+    private final String log;
+    /**
+     * Trames binaires du dictionnaire de la partie et de l'état (ou {@code null}
+     * si l'état n'a pas de forme binaire)
+     */
+    private final byte[] dictionnaire;
+    private final byte[] binaire;
+    /**
+     * Trame binaire de l'état précédée du dictionnaire (construite à la première
+     * demande)
+     */
+    private volatile ByteBuffer binaireAvecDictionnaire;
+    /**
+     * Message contenant l'état complet (construit à la première demande)
+     */
+    private volatile Message etatComplet;
+    /**
+     * Dernier patch calculé (en général depuis l'état publié juste avant, et
+     * partagé par tous les clients qui ont reçu cet état)
+     */
+    private volatile Patch dernierPatch;
+
+    /**
+     * Patch calculé depuis un état de version donnée (la référence à l'état de
+     * base n'est pas conservée pour ne pas retenir tout l'historique)
+     */
+    private record Patch(long base, Message message) {
+    }
+
+    public EtatPartie(long version, String prompt, String[] villes, String[] routes, String[] joueurs,
+                      String piles, String log) {
+        this(0, version, prompt, villes, routes, joueurs, piles, log, null, null);
+    }
+
+    public EtatPartie(long epoque, long version, String prompt, String[] villes, String[] routes, String[] joueurs,
+                      String piles, String log, byte[] dictionnaire, byte[] binaire) {
+        this.epoque = epoque;
+        this.version = version;
+        this.prompt = prompt;
+        this.villes = villes;
+        this.routes = routes;
+        this.joueurs = joueurs;
+        this.piles = piles;
+        this.log = log;
+        this.dictionnaire = dictionnaire;
+        this.binaire = binaire;
+    }
+
+    /**
+     * @return le nombre aléatoire propre à l'instance de jeu qui a produit
+     *         l'état (deux états d'époques différentes ne viennent pas du même
+     *         jeu, même si la partie a le même identifiant)
+     */
+    public long getEpoque() {
+        return epoque;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * @return la représentation JSON complète de l'état
+     */
+    public String toJson() {
+        return getEtatComplet().getJson();
+    }
+
+    /**
+     * @return le message contenant l'état complet
+     */
+    public Message getEtatComplet() {
+        Message resultat = etatComplet;
+        if (resultat == null) {
+            StringBuilder builder = new StringBuilder(taille(villes) + taille(routes) + taille(joueurs) + 256);
+            builder.append("{\"type\":\"etat\",\"epoque\":").append(epoque);
+            builder.append(",\"version\":").append(version);
+            builder.append(",\"prompt\":").append(prompt);
+            ajouterListe(builder, "villes", villes);
+            ajouterListe(builder, "routes", routes);
+            ajouterListe(builder, "joueurs", joueurs);
+            builder.append(",\"piles\":").append(piles);
+            builder.append(",\"log\":").append(log);
+            resultat = new Message(builder.append('}').toString());
+            etatComplet = resultat;
+        }
+        return resultat;
+    }
+
+    /**
+     * @return vrai si l'état contient sa forme binaire
+     */
+    public boolean aFormeBinaire() {
+        return binaire != null;
+    }
+
+    /**
+     * Renvoie la trame binaire de l'état. La trame renvoyée est une vue propre à
+     * l'appelant, qui partage le contenu commun.
+     *
+     * @param avecDictionnaire indique si la trame doit commencer par le
+     *                         dictionnaire de la partie (pour un client qui ne l'a
+     *                         pas encore reçu)
+     * @throws IllegalStateException si l'état n'a pas de forme binaire
+     */
+    public ByteBuffer getTrameBinaire(boolean avecDictionnaire) {
+        if (binaire == null) {
+            throw new IllegalStateException("L'état " + version + " n'a pas de forme binaire");
+        }
+        if (!avecDictionnaire) {
+            return ByteBuffer.wrap(binaire).asReadOnlyBuffer();
+        }
+        ByteBuffer trame = binaireAvecDictionnaire;
+        if (trame == null) {
+            trame = ByteBuffer.allocate(dictionnaire.length + binaire.length).put(dictionnaire).put(binaire).flip()
+                    .asReadOnlyBuffer();
+            binaireAvecDictionnaire = trame;
+        }
+        return trame.duplicate();
+    }
+
+    /**
+     * Calcule le patch permettant de passer d'un état précédent à cet état
+     *
+     * @param base un état précédent de la même partie
+     * @return la représentation JSON du patch
+     */
+    public String patchDepuis(EtatPartie base) {
+        return getPatchDepuis(base).getJson();
+    }
+
+    /**
+     * Renvoie le message contenant le patch permettant de passer d'un état
+     * précédent à cet état
+     *
+     * @param base un état précédent de la même partie
+     */
+    public Message getPatchDepuis(EtatPartie base) {
+        Patch patch = dernierPatch;
+        if (patch == null || patch.base() != base.version) {
+            patch = new Patch(base.version, new Message(calculerPatch(base)));
+            dernierPatch = patch;
+        }
+        return patch.message();
+    }
+
+    private String calculerPatch(EtatPartie base) {
+        StringBuilder builder = new StringBuilder(256);
+        builder.append("{\"type\":\"patch\",\"version\":").append(version);
+        builder.append(",\"base\":").append(base.version);
+        ajouterSiModifie(builder, "prompt", base.prompt, prompt);
+        ajouterModifications(builder, "villes", base.villes, villes);
+        ajouterModifications(builder, "routes", base.routes, routes);
+        ajouterModifications(builder, "joueurs", base.joueurs, joueurs);
+        ajouterSiModifie(builder, "piles", base.piles, piles);
+        ajouterSiModifie(builder, "log", base.log, log);
+        return builder.append('}').toString();
+    }
+
+    private static void ajouterSiModifie(StringBuilder builder, String nom, String avant, String apres) {
+        if (!Objects.equals(avant, apres)) {
+            builder.append(",\"").append(nom).append("\":").append(apres);
+        }
+    }
+
+    private static void ajouterModifications(StringBuilder builder, String nom, String[] avant, String[] apres) {
+        if (avant.length != apres.length) {
+            ajouterListe(builder, nom, apres);
+            return;
+        }
+        boolean premier = true;
+        for (int i = 0; i < apres.length; i++) {
+            if (!Objects.equals(avant[i], apres[i])) {
+                builder.append(premier ? ",\"" + nom + "\":{\"" : ",\"").append(i).append("\":").append(apres[i]);
+                premier = false;
+            }
+        }
+        if (!premier) {
+            builder.append('}');
+        }
+    }
+
+    private static void ajouterListe(StringBuilder builder, String nom, String[] fragments) {
+        builder.append(",\"").append(nom).append("\":[");
+        for (int i = 0; i < fragments.length; i++) {
+            if (i > 0) {
+                builder.append(',');
+            }
+            builder.append(fragments[i]);
+        }
+        builder.append(']');
+    }
+
+    private static int taille(String[] fragments) {
+        int taille = 0;
+        for (String fragment : fragments) {
+            taille += fragment.length() + 1;
+        }
+        return taille;
+    }
+}
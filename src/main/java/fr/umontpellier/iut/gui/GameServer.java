@@ -1,98 +1,338 @@
 package fr.umontpellier.iut.gui;
 
-import fr.umontpellier.iut.rails.Jeu;
 import org.glassfish.tyrus.server.Server;
 
 import javax.websocket.DeploymentException;
 import javax.websocket.Session;
 import java.io.IOException;
-import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
 import java.util.Scanner;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
 
 public class GameServer {
     /**
-     * Liste des clients connectés au serveur
+     * Identifiant de la partie à laquelle sont rattachés les clients qui n'en
+     * précisent pas (et qui reçoit les instructions saisies au clavier)
      */
-    private static ArrayList<Session> clients = new ArrayList<>();
+    public static final String PARTIE_PAR_DEFAUT = "defaut";
     /**
-     * Description de l'état du jeu, envoyé aux clients pour la mise à jour de l'interface graphique
+     * Nom du paramètre de la requête de connexion indiquant la partie à rejoindre
+     * (par exemple {@code ws://localhost:3232/?partie=ma-partie})
      */
-    private static String etatJeu = "";
+    public static final String PARAMETRE_PARTIE = "partie";
     /**
-     * Instance de jeu exécutée par le serveur
+     * Noms des joueurs des parties créées à la connexion d'un client
      */
-    private static Jeu jeu;
+    private static final String[] NOMS_JOUEURS_PAR_DEFAUT = {"Guybrush", "Largo", "LeChuck", "Elaine"};
+    /**
+     * Nombre maximal de parties hébergées par le serveur (les connexions qui
+     * demanderaient une nouvelle partie au-delà sont refusées)
+     */
+    public static final int NB_MAX_PARTIES = 1_000;
+    /**
+     * Durée (en millisecondes) après laquelle une partie sans client, qui n'a
+     * reçu ni connexion ni instruction, est retirée du registre
+     */
+    public static final long DELAI_INACTIVITE = 10 * 60_000;
+    /**
+     * Nombre maximal de spectateurs connectés au serveur (toutes parties
+     * confondues)
+     */
+    public static final int NB_MAX_SPECTATEURS = 50_000;
+    /**
+     * Nombre de spectateurs connectés au serveur
+     */
+    private static final AtomicInteger nbSpectateurs = new AtomicInteger();
+    /**
+     * Nombre de messages de clients ignorés (débit du client trop élevé, ou file
+     * d'entrées du jeu pleine)
+     */
+    private static final LongAdder nbMessagesRejetes = new LongAdder();
+    /**
+     * Parties hébergées par le serveur, indexées par identifiant
+     */
+    private static final Map<String, Partie> parties = new ConcurrentHashMap<>();
+    /**
+     * Exécuteur des parties : les parties n'attendent pas les instructions des
+     * joueurs dans un thread, elles sont avancées par ce petit groupe de threads
+     * démons à chaque instruction reçue
+     */
+    private static final ExecutorService executeurParties = Executors.newFixedThreadPool(
+            Runtime.getRuntime().availableProcessors(), new ThreadFactoryParties());
+    /**
+     * Threads chargés des envois aux spectateurs (ainsi les envois aux
+     * spectateurs ne sont jamais faits par les threads des parties)
+     */
+    private static final ScheduledExecutorService diffusionSpectateurs = Executors.newScheduledThreadPool(
+            Math.max(1, Runtime.getRuntime().availableProcessors() / 2),
+            r -> {
+                Thread thread = new Thread(r, "diffusion-spectateurs");
+                thread.setDaemon(true);
+                return thread;
+            });
+    /**
+     * Thread des tâches périodiques du serveur (retrait des parties
+     * abandonnées, fermeture des connexions bloquées)
+     */
+    private static final ScheduledExecutorService surveillance = Executors.newSingleThreadScheduledExecutor(
+            r -> {
+                Thread thread = new Thread(r, "surveillance");
+                thread.setDaemon(true);
+                return thread;
+            });
 
-    public static void main(String[] args) {
+    static {
+        surveillance.scheduleWithFixedDelay(() -> supprimerPartiesInactives(System.currentTimeMillis()),
+                1, 1, TimeUnit.MINUTES);
+        surveillance.scheduleWithFixedDelay(() -> verifierEnvois(System.currentTimeMillis()),
+                1, 1, TimeUnit.SECONDS);
+    }
+
+    public static void main(String[] args) throws IOException {
         // Lancement de la partie
-        jeu = new Jeu(new String[]{"Guybrush", "Largo", "LeChuck", "Elaine"});
+        Partie partie = creerPartie(PARTIE_PAR_DEFAUT, NOMS_JOUEURS_PAR_DEFAUT);
 
         // Prépare le serveur websocket
         Server server = new Server("localhost", 3232, "/", WebSocketClient.class);
+        // Prépare le serveur HTTP (état des parties, pour les clients sans websocket)
+        ServeurHttp serveurHttp = new ServeurHttp("localhost", 3233);
 
         try (Scanner scanner = new Scanner(System.in)) {
             server.start();             // lance le serveur
-            new Thread(jeu).start();    // démarre le jeu (exécute la méthode Jeu.run() dans un nouveau thread)
+            serveurHttp.start();
 
             while (true) {
-                jeu.addInput(scanner.nextLine());
+                partie.addInput(scanner.nextLine());
             }
         } catch (DeploymentException e) {
             throw new RuntimeException(e);
         } finally {
+            serveurHttp.stop();
             server.stop();
         }
     }
 
     /**
-     * Ajoute une nouvelle instruction à la file d'instructions
-     * (cette méthode est appelée lorsqu'un message est reçue sur la websocket)
-     * 
-     * @param message l'instruction à ajouter
+     * Crée une nouvelle partie, l'ajoute au registre et démarre son exécution
+     *
+     * @param id         identifiant de la partie
+     * @param nomJoueurs noms des joueurs de la partie
+     * @return la partie créée
+     * @throws IllegalArgumentException si une partie avec le même identifiant
+     *                                  existe déjà
+     * @throws IllegalStateException    si le serveur héberge déjà
+     *                                  {@code NB_MAX_PARTIES} parties
+     */
+    public static Partie creerPartie(String id, String[] nomJoueurs) {
+        Partie partie;
+        // le nombre de parties est vérifié et la partie ajoutée d'un seul bloc
+        // (les retraits, eux, ne font que libérer des places)
+        synchronized (parties) {
+            if (parties.containsKey(id)) {
+                throw new IllegalArgumentException("La partie " + id + " existe déjà");
+            }
+            if (parties.size() >= NB_MAX_PARTIES) {
+                throw new IllegalStateException("Nombre maximal de parties atteint");
+            }
+            partie = new Partie(id, nomJoueurs);
+            parties.put(id, partie);
+        }
+        executeurParties.execute(partie::executer);
+        return partie;
+    }
+
+    /**
+     * Exécute un traitement d'une partie par l'exécuteur des parties
+     */
+    static void executerPartie(Runnable traitement) {
+        executeurParties.execute(traitement);
+    }
+
+    /**
+     * @return la partie d'identifiant donné (ou {@code null} si aucune partie ne
+     *         correspond)
+     */
+    public static Partie getPartie(String id) {
+        return parties.get(id);
+    }
+
+    /**
+     * @return les parties hébergées par le serveur
+     */
+    public static Collection<Partie> getParties() {
+        return parties.values();
+    }
+
+    /**
+     * Renvoie la partie d'identifiant donné, en la créant (avec les noms de joueurs
+     * par défaut) si elle n'existe pas encore
+     *
+     * @return la partie, ou {@code null} si elle n'existe pas et que le serveur
+     *         héberge déjà {@code NB_MAX_PARTIES} parties
+     */
+    public static Partie getOuCreerPartie(String id) {
+        Partie partie = parties.get(id);
+        while (partie == null) {
+            try {
+                partie = creerPartie(id, NOMS_JOUEURS_PAR_DEFAUT);
+            } catch (IllegalArgumentException e) {
+                // partie créée entre temps par une autre connexion
+                partie = parties.get(id);
+            } catch (IllegalStateException e) {
+                return null;
+            }
+        }
+        return partie;
+    }
+
+    /**
+     * Retire une partie du registre
      */
-    public static void addInput(String message) {
-        jeu.addInput(message);
+    public static void supprimerPartie(String id) {
+        parties.remove(id);
     }
 
     /**
-     * Met à jour l'état de la partie, et envoie le nouvel état à tous les clients connectés
-     * 
-     * @param etatJeu l'état de la partie
+     * Retire du registre les parties abandonnées : sans client, et sans
+     * connexion ni instruction depuis plus de {@code DELAI_INACTIVITE} (la
+     * partie par défaut, qui reçoit les instructions du clavier, est gardée)
+     *
+     * @param maintenant la date courante (en millisecondes)
+     * @return le nombre de parties retirées
      */
-    public static void setEtatJeu(String etatJeu) {
-        GameServer.etatJeu = etatJeu;
-        // Envoie l'état de la partie à tous les clients
-        try {
-            for (Session session : clients) {
-                session.getBasicRemote().sendText(etatJeu);
+    static int supprimerPartiesInactives(long maintenant) {
+        int nbSupprimees = 0;
+        for (Partie partie : parties.values()) {
+            if (!partie.getId().equals(PARTIE_PAR_DEFAUT) && partie.estInactive(maintenant, DELAI_INACTIVITE)
+                    && parties.remove(partie.getId(), partie)) {
+                nbSupprimees++;
             }
-        } catch (IOException e) {
-            e.printStackTrace();
         }
+        return nbSupprimees;
+    }
+
+    /**
+     * Ferme la connexion des clients dont l'envoi est bloqué depuis plus de
+     * {@code Client.DELAI_MAX_ENVOI}, dans toutes les parties (un client
+     * bloqué n'est sinon détecté qu'au prochain message qui lui est destiné)
+     *
+     * @param maintenant la date courante (en millisecondes)
+     */
+    static void verifierEnvois(long maintenant) {
+        for (Partie partie : parties.values()) {
+            partie.verifierEnvois(maintenant);
+        }
+    }
+
+    /**
+     * Détermine l'identifiant de la partie demandée par un client à partir des
+     * paramètres de sa requête de connexion
+     *
+     * @param session la session du client
+     * @return l'identifiant de la partie demandée, ou {@code PARTIE_PAR_DEFAUT}
+     */
+    public static String getIdPartie(Session session) {
+        List<String> valeurs = session.getRequestParameterMap().get(PARAMETRE_PARTIE);
+        if (valeurs == null || valeurs.isEmpty() || valeurs.get(0).isBlank()) {
+            return PARTIE_PAR_DEFAUT;
+        }
+        return valeurs.get(0);
+    }
+
+    /**
+     * Met à jour l'état d'une partie, et envoie le nouvel état à tous les clients
+     * connectés à cette partie
+     *
+     * @param idPartie identifiant de la partie
+     * @param etat     l'état de la partie
+     */
+    public static void setEtatJeu(String idPartie, EtatPartie etat) {
+        Partie partie = parties.get(idPartie);
+        if (partie != null) {
+            partie.setEtat(etat);
+        }
+    }
+
+    /**
+     * @return vrai si la partie a au moins un client qui lit les états au
+     *         format binaire (les états n'ont sinon pas de forme binaire)
+     */
+    public static boolean veutEtatBinaire(String idPartie) {
+        Partie partie = parties.get(idPartie);
+        return partie != null && partie.veutEtatBinaire();
     }
 
     /**
-     * Ajoute un nouveau client à la liste, et lui transmet l'état actuel de la partie
-     * (cette méthode est appelée lorsqu'une nouvelle connexion est établie)
-     * 
-     * @param session la session du nouveau client
+     * Réserve une place pour un nouveau spectateur
+     *
+     * @return {@code false} si le nombre maximal de spectateurs du serveur est
+     *         atteint
      */
-    public static void addClient(Session session) {
-        GameServer.clients.add(session);
-        try {
-            session.getBasicRemote().sendText(etatJeu);
-        } catch (IOException e) {
-            e.printStackTrace();
+    static boolean reserverPlaceSpectateur() {
+        if (nbSpectateurs.incrementAndGet() > NB_MAX_SPECTATEURS) {
+            nbSpectateurs.decrementAndGet();
+            return false;
         }
+        return true;
+    }
+
+    /**
+     * Libère la place d'un spectateur qui s'est déconnecté
+     */
+    static void libererPlaceSpectateur() {
+        nbSpectateurs.decrementAndGet();
+    }
+
+    static void compterMessageRejete() {
+        nbMessagesRejetes.increment();
+    }
+
+    /**
+     * @return le nombre de messages de clients ignorés depuis le démarrage du
+     *         serveur
+     */
+    public static long getNbMessagesRejetes() {
+        return nbMessagesRejetes.sum();
     }
 
     /**
-     * Retire un client de la liste
-     * (cette méthode est appelée lorsqu'une connexion est fermée)
-     * 
-     * @param session la session du client à retirer
+     * @return le nombre de spectateurs connectés au serveur
      */
-    public static void removeClient(Session session) {
-        GameServer.clients.remove(session);
+    public static int getNbSpectateurs() {
+        return nbSpectateurs.get();
+    }
+
+    /**
+     * Planifie une diffusion aux spectateurs d'une partie
+     *
+     * @param diffusion la diffusion à exécuter
+     * @param delai     délai avant l'exécution
+     * @param unite     unité du délai
+     */
+    static void planifierDiffusion(Runnable diffusion, long delai, TimeUnit unite) {
+        diffusionSpectateurs.schedule(diffusion, delai, unite);
+    }
+
+    /**
+     * Fabrique des threads exécutant les parties
+     */
+    private static class ThreadFactoryParties implements ThreadFactory {
+        private final AtomicInteger compteur = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "partie-" + compteur.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
     }
 }
@@ -0,0 +1,42 @@
+package fr.umontpellier.iut.gui;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Historique borné des derniers états publiés par une partie.
+ * <p>
+ * Les versions des états d'une partie se suivent : l'état de version {@code v}
+ * est rangé dans la case {@code v % capacite} d'un tableau circulaire, et
+ * remplace l'état publié {@code capacite} versions plus tôt. Les états
+ * partagent leurs fragments inchangés, l'historique coûte donc peu de mémoire.
+ * <p>
+ * L'historique est rempli par le thread du jeu et lu par les threads du serveur
+ * websocket, sans verrou.
+ */
+public class HistoriqueEtats {
+    private final AtomicReferenceArray<EtatPartie> etats;
+
+    public HistoriqueEtats(int capacite) {
+        etats = new AtomicReferenceArray<>(capacite);
+    }
+
+    public void ajouter(EtatPartie etat) {
+        etats.set(indice(etat.getVersion()), etat);
+    }
+
+    /**
+     * @return l'état de version donnée s'il est encore dans l'historique (sinon
+     *         {@code null})
+     */
+    public EtatPartie get(long version) {
+        if (version < 0) {
+            return null;
+        }
+        EtatPartie etat = etats.get(indice(version));
+        return etat != null && etat.getVersion() == version ? etat : null;
+    }
+
+    private int indice(long version) {
+        return (int) Math.floorMod(version, (long) etats.length());
+    }
+}
@@ -0,0 +1,49 @@
+package fr.umontpellier.iut.gui;
+
+/**
+ * Limiteur de débit par seau à jetons : chaque message consomme un jeton, et
+ * le seau se remplit de {@code debit} jetons par seconde, dans la limite de
+ * {@code capacite} jetons (ce qui autorise de courtes rafales).
+ */
+public class LimiteurDebit {
+    private final double capacite;
+    /**
+     * Nombre de jetons ajoutés par nanoseconde
+     */
+    private final double jetonsParNanoseconde;
+    private double jetons;
+    /**
+     * Date (en nanosecondes) du dernier remplissage du seau
+     */
+    private long dernierRemplissage;
+
+    /**
+     * @param debit    nombre de messages autorisés par seconde (en moyenne)
+     * @param capacite nombre maximal de messages autorisés en rafale
+     */
+    public LimiteurDebit(double debit, int capacite) {
+        this.capacite = capacite;
+        jetonsParNanoseconde = debit / 1e9;
+        jetons = capacite;
+        dernierRemplissage = System.nanoTime();
+    }
+
+    /**
+     * Consomme un jeton s'il en reste
+     *
+     * @return {@code false} si le message doit être rejeté
+     */
+    public synchronized boolean autoriser() {
+        return autoriser(System.nanoTime());
+    }
+
+    synchronized boolean autoriser(long maintenant) {
+        jetons = Math.min(capacite, jetons + (maintenant - dernierRemplissage) * jetonsParNanoseconde);
+        dernierRemplissage = maintenant;
+        if (jetons < 1) {
+            return false;
+        }
+        jetons--;
+        return true;
+    }
+}
@@ -0,0 +1,80 @@
+package fr.umontpellier.iut.gui;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.Deflater;
+
+/**
+ * Message (état complet ou patch) envoyé aux clients d'une partie.
+ * <p>
+ * Chaque encodage binaire du message est calculé une seule fois, à la première
+ * demande, puis la même trame (immuable) est envoyée à tous les clients qui
+ * ont choisi cet encodage : le coût d'encodage et de compression ne dépend
+ * donc pas du nombre de clients.
+ */
+public final class Message {
+    /**
+     * Niveau de compression des trames compressées (compromis entre le temps de
+     * compression et la taille des trames)
+     */
+    private static final int NIVEAU_COMPRESSION = 6;
+    /**
+     * Contenu JSON du message
+     */
+    private final String json;
+    /**
+     * Trames binaires (en lecture seule), calculées à la première demande
+     */
+    private volatile ByteBuffer trameUtf8;
+    private volatile ByteBuffer trameDeflate;
+
+    public Message(String json) {
+        this.json = json;
+    }
+
+    public String getJson() {
+        return json;
+    }
+
+    /**
+     * Renvoie la trame binaire du message dans l'encodage demandé. La trame
+     * renvoyée est une vue propre à l'appelant (sa position peut être modifiée
+     * sans affecter les autres envois), qui partage le contenu commun.
+     *
+     * @param encodage {@code Encodage.UTF8} ou {@code Encodage.DEFLATE}
+     */
+    public ByteBuffer getTrame(Encodage encodage) {
+        ByteBuffer trame;
+        if (encodage == Encodage.DEFLATE) {
+            trame = trameDeflate;
+            if (trame == null) {
+                trame = ByteBuffer.wrap(compresser(json.getBytes(StandardCharsets.UTF_8))).asReadOnlyBuffer();
+                trameDeflate = trame;
+            }
+        } else {
+            trame = trameUtf8;
+            if (trame == null) {
+                trame = ByteBuffer.wrap(json.getBytes(StandardCharsets.UTF_8)).asReadOnlyBuffer();
+                trameUtf8 = trame;
+            }
+        }
+        return trame.duplicate();
+    }
+
+    private static byte[] compresser(byte[] donnees) {
+        Deflater deflater = new Deflater(NIVEAU_COMPRESSION);
+        try {
+            deflater.setInput(donnees);
+            deflater.finish();
+            ByteArrayOutputStream sortie = new ByteArrayOutputStream(donnees.length / 4 + 64);
+            byte[] tampon = new byte[4096];
+            while (!deflater.finished()) {
+                sortie.write(tampon, 0, deflater.deflate(tampon));
+            }
+            return sortie.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+}
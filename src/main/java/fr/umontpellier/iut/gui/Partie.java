@@ -0,0 +1,436 @@
+package fr.umontpellier.iut.gui;
+
+import fr.umontpellier.iut.rails.Jeu;
+
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Partie hébergée par le serveur : une instance de jeu, son dernier état et les
+ * clients qui y sont connectés
+ */
+public class Partie {
+    /**
+     * Préfixe des messages de contrôle envoyés par les clients (ces messages ne
+     * sont pas transmis au jeu)
+     */
+    public static final String PREFIXE_COMMANDE = "!";
+    /**
+     * Commande par laquelle un client demande l'état complet de la partie (par
+     * exemple lorsqu'il reçoit un patch qui ne s'applique pas à sa version)
+     */
+    public static final String COMMANDE_ETAT = "!etat";
+    /**
+     * Nombre maximal de mises à jour envoyées par seconde aux spectateurs d'une
+     * partie (les états intermédiaires ne leur sont pas envoyés)
+     */
+    public static final int FREQUENCE_MAX_SPECTATEURS = 4;
+    /**
+     * Nombre maximal de spectateurs d'une partie
+     */
+    public static final int NB_MAX_SPECTATEURS = 5_000;
+    /**
+     * Nombre maximal d'instructions en attente dans la file d'instructions (les
+     * instructions reçues lorsque la file est pleine sont ignorées)
+     */
+    public static final int TAILLE_MAX_FILE_ENTREES = 32;
+    /**
+     * Nombre d'états conservés pour la reprise des clients qui se reconnectent
+     */
+    public static final int TAILLE_HISTORIQUE = 64;
+    /**
+     * Identifiant de la partie dans le registre du serveur
+     */
+    private final String id;
+    /**
+     * Instance de jeu exécutée pour cette partie
+     */
+    private final Jeu jeu;
+    /**
+     * Liste des clients connectés à la partie (les joueurs)
+     */
+    private final List<Client> clients;
+    /**
+     * Liste des spectateurs de la partie : ils ne peuvent pas envoyer
+     * d'instructions au jeu et reçoivent les mises à jour à fréquence limitée
+     */
+    private final List<Client> spectateurs;
+    /**
+     * Indique si un envoi aux spectateurs est déjà planifié
+     */
+    private final AtomicBoolean diffusionSpectateursPlanifiee;
+    /**
+     * Date (en millisecondes) du dernier envoi aux spectateurs
+     */
+    private volatile long derniereDiffusionSpectateurs;
+    /**
+     * Dernier état du jeu publié, envoyé aux clients pour la mise à jour de
+     * l'interface graphique (ou {@code null} si aucun état n'a été publié)
+     */
+    private volatile EtatPartie etat;
+    /**
+     * Derniers états publiés
+     */
+    private final HistoriqueEtats historique;
+    /**
+     * Complété par le prochain état publié (attendu par les requêtes HTTP en
+     * attente d'une nouvelle version)
+     */
+    private volatile CompletableFuture<EtatPartie> prochainEtat;
+    /**
+     * Indique si le jeu est terminé
+     */
+    private volatile boolean terminee;
+    /**
+     * Nombre de clients (joueurs et spectateurs) qui lisent les états au format
+     * binaire : la forme binaire des états n'est écrite que s'il y en a
+     */
+    private final AtomicInteger nbClientsBinaires;
+    /**
+     * Date (en millisecondes) de la dernière connexion, déconnexion ou
+     * instruction reçue
+     */
+    private volatile long derniereActivite;
+    /**
+     * Instructions des joueurs en attente de traitement, avec le client qui les
+     * a envoyées (pour lui signaler un refus)
+     */
+    private final BlockingQueue<Entree> entrees;
+    /**
+     * Nombre d'instructions ignorées parce que la file d'instructions était
+     * pleine
+     */
+    private final LongAdder nbEntreesRejetees;
+    /**
+     * Indique si le traitement des instructions en attente est déjà planifié
+     */
+    private final AtomicBoolean traitementPlanifie;
+
+    /**
+     * Instruction reçue d'un client ({@code null} pour l'entrée standard)
+     */
+    private record Entree(Client client, String message) {
+    }
+
+    public Partie(String id, String[] nomJoueurs) {
+        this.id = id;
+        clients = new CopyOnWriteArrayList<>();
+        spectateurs = new CopyOnWriteArrayList<>();
+        diffusionSpectateursPlanifiee = new AtomicBoolean();
+        entrees = new ArrayBlockingQueue<>(TAILLE_MAX_FILE_ENTREES);
+        nbEntreesRejetees = new LongAdder();
+        traitementPlanifie = new AtomicBoolean();
+        nbClientsBinaires = new AtomicInteger();
+        prochainEtat = new CompletableFuture<>();
+        historique = new HistoriqueEtats(TAILLE_HISTORIQUE);
+        jeu = new Jeu(id, nomJoueurs);
+        derniereActivite = System.currentTimeMillis();
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public Jeu getJeu() {
+        return jeu;
+    }
+
+    public EtatPartie getEtat() {
+        return etat;
+    }
+
+    public boolean estTerminee() {
+        return terminee;
+    }
+
+    public int getNbClients() {
+        return clients.size();
+    }
+
+    public int getNbSpectateurs() {
+        return spectateurs.size();
+    }
+
+    /**
+     * @return vrai si au moins un client de la partie lit les états au format
+     *         binaire
+     */
+    boolean veutEtatBinaire() {
+        return nbClientsBinaires.get() > 0;
+    }
+
+    /**
+     * Ferme la connexion des clients et spectateurs dont l'envoi en cours est
+     * bloqué (voir {@code Client.verifierDelai})
+     */
+    void verifierEnvois(long maintenant) {
+        for (Client client : clients) {
+            client.verifierDelai(maintenant);
+        }
+        for (Client spectateur : spectateurs) {
+            spectateur.verifierDelai(maintenant);
+        }
+    }
+
+    /**
+     * @return vrai si la partie n'a ni client ni spectateur, et n'a reçu ni
+     *         connexion ni instruction depuis plus de {@code delai}
+     *         millisecondes
+     */
+    boolean estInactive(long maintenant, long delai) {
+        return clients.isEmpty() && spectateurs.isEmpty() && maintenant - derniereActivite > delai;
+    }
+
+    /**
+     * @return le nombre d'instructions ignorées parce que la file
+     *         d'instructions était pleine
+     */
+    public long getNbEntreesRejetees() {
+        return nbEntreesRejetees.sum();
+    }
+
+    /**
+     * Démarre la partie : le jeu avance jusqu'au premier choix attendu d'un
+     * joueur (cette méthode est exécutée par l'exécuteur des parties du serveur)
+     */
+    synchronized void executer() {
+        jeu.demarrer();
+        appliquerEntrees();
+        verifierFin();
+    }
+
+    /**
+     * Ajoute une nouvelle instruction (lue sur l'entrée standard) à la file
+     * d'instructions du jeu
+     *
+     * @param message l'instruction à ajouter
+     * @return {@code false} si l'instruction a été ignorée (file pleine)
+     */
+    public boolean addInput(String message) {
+        return addInput(null, message);
+    }
+
+    /**
+     * Ajoute une nouvelle instruction à la file d'instructions du jeu, et
+     * planifie son traitement par l'exécuteur des parties du serveur (aucun
+     * thread n'est bloqué en attendant les instructions d'une partie). Si le
+     * jeu refuse l'instruction, seul le client qui l'a envoyée en est averti.
+     *
+     * @param client  le client qui a envoyé l'instruction (ou {@code null})
+     * @param message l'instruction à ajouter
+     * @return {@code false} si l'instruction a été ignorée (file pleine)
+     */
+    public boolean addInput(Client client, String message) {
+        derniereActivite = System.currentTimeMillis();
+        if (!entrees.offer(new Entree(client, message))) {
+            nbEntreesRejetees.increment();
+            return false;
+        }
+        if (traitementPlanifie.compareAndSet(false, true)) {
+            GameServer.executerPartie(this::traiterInstructions);
+        }
+        return true;
+    }
+
+    /**
+     * Publie à nouveau l'état courant avec sa forme binaire, pour un client
+     * binaire qui vient de se connecter alors que l'état n'en avait pas
+     */
+    private synchronized void publierEtatBinaire() {
+        EtatPartie etatCourant = etat;
+        if (etatCourant != null && !etatCourant.aFormeBinaire()) {
+            jeu.publierEtat();
+        }
+    }
+
+    /**
+     * Fait avancer le jeu avec les instructions en attente
+     */
+    private synchronized void traiterInstructions() {
+        // remis à faux avant de vider la file : une instruction ajoutée pendant
+        // le traitement planifie un nouveau traitement
+        traitementPlanifie.set(false);
+        appliquerEntrees();
+        verifierFin();
+    }
+
+    /**
+     * Applique les instructions en attente tant que le jeu attend un choix (les
+     * instructions reçues avant le démarrage du jeu sont conservées)
+     */
+    private void appliquerEntrees() {
+        Entree entree;
+        while (jeu.getInviteCourante() != null && (entree = entrees.poll()) != null) {
+            if (!jeu.appliquer(entree.message()) && entree.client() != null) {
+                EtatPartie etatCourant = etat;
+                entree.client().rejeter(entree.message(), etatCourant == null ? -1 : etatCourant.getVersion());
+            }
+        }
+    }
+
+    private void verifierFin() {
+        if (jeu.estTerminee() && !terminee) {
+            terminee = true;
+            if (clients.isEmpty() && spectateurs.isEmpty()) {
+                GameServer.supprimerPartie(id);
+            }
+        }
+    }
+
+    /**
+     * Traite un message de contrôle envoyé par un client
+     *
+     * @param client   le client qui a envoyé le message
+     * @param commande le message (commençant par {@code PREFIXE_COMMANDE})
+     */
+    public void executerCommande(Client client, String commande) {
+        EtatPartie etatCourant = etat;
+        if (commande.equals(COMMANDE_ETAT) && etatCourant != null) {
+            client.envoyerEtatComplet(etatCourant);
+        }
+    }
+
+    /**
+     * Met à jour l'état de la partie, et le transmet à tous les joueurs connectés
+     * à la partie (sous forme de patch pour les clients qui savent les
+     * appliquer). Les envois sont asynchrones : cette méthode, appelée par le
+     * thread du jeu, n'attend pas le réseau.
+     * <p>
+     * L'envoi aux spectateurs est seulement planifié : il est fait par les
+     * threads de diffusion du serveur, au plus {@code FREQUENCE_MAX_SPECTATEURS}
+     * fois par seconde, avec l'état le plus récent à ce moment.
+     *
+     * @param etat le nouvel état de la partie
+     */
+    public void setEtat(EtatPartie etat) {
+        historique.ajouter(etat);
+        this.etat = etat;
+        for (Client client : clients) {
+            client.envoyer(etat);
+        }
+        if (!spectateurs.isEmpty() && diffusionSpectateursPlanifiee.compareAndSet(false, true)) {
+            long delai = derniereDiffusionSpectateurs + 1000 / FREQUENCE_MAX_SPECTATEURS - System.currentTimeMillis();
+            GameServer.planifierDiffusion(this::diffuserAuxSpectateurs, Math.max(0, delai), TimeUnit.MILLISECONDS);
+        }
+        CompletableFuture<EtatPartie> attente = prochainEtat;
+        prochainEtat = new CompletableFuture<>();
+        attente.complete(etat);
+    }
+
+    /**
+     * Renvoie le premier état de la partie plus récent qu'une version donnée.
+     * L'appelant ne doit pas bloquer le thread du jeu : les actions dépendantes
+     * du résultat doivent être exécutées de manière asynchrone.
+     *
+     * @param version la dernière version connue par l'appelant
+     * @return l'état courant s'il est plus récent, sinon le prochain état publié
+     */
+    public CompletableFuture<EtatPartie> attendreEtatApres(long version) {
+        CompletableFuture<EtatPartie> attente = prochainEtat;
+        // l'état courant est relu après le futur : un état publié entre temps
+        // n'est pas manqué
+        EtatPartie etatCourant = etat;
+        if (etatCourant != null && etatCourant.getVersion() > version) {
+            return CompletableFuture.completedFuture(etatCourant);
+        }
+        return attente;
+    }
+
+    /**
+     * Envoie l'état le plus récent de la partie à tous les spectateurs
+     */
+    private void diffuserAuxSpectateurs() {
+        diffusionSpectateursPlanifiee.set(false);
+        derniereDiffusionSpectateurs = System.currentTimeMillis();
+        EtatPartie etatCourant = etat;
+        for (Client spectateur : spectateurs) {
+            spectateur.envoyer(etatCourant);
+        }
+    }
+
+    /**
+     * Ajoute un nouveau client à la partie, et lui transmet l'état actuel de la
+     * partie (voir {@code envoyerEtatInitial})
+     *
+     * @param client le nouveau client
+     */
+    public void addClient(Client client) {
+        derniereActivite = System.currentTimeMillis();
+        clients.add(client);
+        envoyerEtatInitial(client);
+    }
+
+    /**
+     * Transmet l'état actuel de la partie à un client qui vient de se connecter.
+     * Un client qui se reconnecte et dont le dernier état reçu est encore dans
+     * l'historique ne reçoit que le patch depuis cet état ; sinon il reçoit
+     * l'état complet. L'état reçu n'est reconnu que si son époque est celle du
+     * jeu de la partie (une version d'une partie précédente de même
+     * identifiant désigne un autre état).
+     */
+    private void envoyerEtatInitial(Client client) {
+        if (client.getEncodage() == Encodage.BINAIRE) {
+            nbClientsBinaires.incrementAndGet();
+        }
+        EtatPartie etatCourant = etat;
+        if (etatCourant == null) {
+            return;
+        }
+        EtatPartie base = client.accepteDelta() && client.getEpoqueReprise() == etatCourant.getEpoque()
+                ? historique.get(client.getVersionReprise()) : null;
+        if (base != null) {
+            client.reprendre(base, etatCourant);
+        } else {
+            client.envoyerEtatComplet(etatCourant);
+        }
+        if (client.getEncodage() == Encodage.BINAIRE && !etatCourant.aFormeBinaire()) {
+            // publiée par l'exécuteur des parties (jamais pendant un coup du jeu)
+            GameServer.executerPartie(this::publierEtatBinaire);
+        }
+    }
+
+    /**
+     * Ajoute un spectateur à la partie, et lui transmet l'état actuel de la
+     * partie
+     *
+     * @param spectateur le nouveau spectateur
+     * @return {@code false} si la partie a déjà atteint son nombre maximal de
+     *         spectateurs (le spectateur n'est alors pas ajouté)
+     */
+    public boolean addSpectateur(Client spectateur) {
+        synchronized (spectateurs) {
+            if (spectateurs.size() >= NB_MAX_SPECTATEURS) {
+                return false;
+            }
+            spectateurs.add(spectateur);
+        }
+        derniereActivite = System.currentTimeMillis();
+        envoyerEtatInitial(spectateur);
+        return true;
+    }
+
+    /**
+     * Retire un client (joueur ou spectateur) de la partie. Une partie terminée
+     * est retirée du registre du serveur lorsque son dernier client se
+     * déconnecte ; une partie abandonnée en cours de jeu l'est après
+     * {@code GameServer.DELAI_INACTIVITE}.
+     *
+     * @param client le client à retirer
+     */
+    public void removeClient(Client client) {
+        if ((clients.remove(client) | spectateurs.remove(client)) && client.getEncodage() == Encodage.BINAIRE) {
+            nbClientsBinaires.decrementAndGet();
+        }
+        derniereActivite = System.currentTimeMillis();
+        if (terminee && clients.isEmpty() && spectateurs.isEmpty()) {
+            GameServer.supprimerPartie(id);
+        }
+    }
+}
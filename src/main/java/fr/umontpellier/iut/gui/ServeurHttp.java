@@ -0,0 +1,218 @@
+package fr.umontpellier.iut.gui;
+
+import com.google.gson.JsonObject;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serveur HTTP donnant accès à l'état des parties, pour les clients qui ne
+ * peuvent pas garder une websocket ouverte.
+ * <p>
+ * {@code GET /etat?partie=<id>} renvoie l'état complet de la partie (le même
+ * message que celui envoyé par la websocket), avec l'époque et la version de
+ * l'état comme {@code ETag} (l'époque distingue une partie recréée sous le même
+ * identifiant, dont les versions recommencent à 0). Si l'en-tête
+ * {@code If-None-Match} contient exactement l'{@code ETag} de l'état courant, la
+ * réponse est {@code 304 Not Modified} ; tout autre tag reçoit l'état courant.
+ * Avec le paramètre {@code attente=<ms>}, la réponse à un client déjà à jour
+ * est retardée jusqu'à la publication d'une version plus récente (ou jusqu'à
+ * l'expiration du délai, la réponse est alors {@code 304}).
+ * <p>
+ * Les réponses sont construites à partir du dernier état publié par la partie
+ * (immuable, et encodé une seule fois) : les requêtes n'interagissent jamais
+ * avec le thread du jeu. Les requêtes en attente n'occupent aucun thread.
+ * <p>
+ * {@code GET /statistiques} renvoie quelques compteurs du serveur (nombre de
+ * parties, de spectateurs, de messages ignorés).
+ */
+public class ServeurHttp {
+    /**
+     * Chemin de la ressource donnant l'état d'une partie
+     */
+    public static final String CHEMIN_ETAT = "/etat";
+    /**
+     * Chemin de la ressource donnant les compteurs du serveur
+     */
+    public static final String CHEMIN_STATISTIQUES = "/statistiques";
+    /**
+     * Nom du paramètre de la requête indiquant le délai d'attente maximal (en
+     * millisecondes) d'une nouvelle version
+     */
+    public static final String PARAMETRE_ATTENTE = "attente";
+    /**
+     * Délai d'attente maximal (en millisecondes) accepté pour une requête
+     */
+    public static final long ATTENTE_MAX = 60_000;
+    /**
+     * Nombre de threads traitant les requêtes
+     */
+    private static final int NB_THREADS = 4;
+
+    private final HttpServer serveur;
+    private final ExecutorService executeur;
+
+    public ServeurHttp(String hote, int port) throws IOException {
+        serveur = HttpServer.create(new InetSocketAddress(hote, port), 0);
+        executeur = Executors.newFixedThreadPool(NB_THREADS, r -> {
+            Thread thread = new Thread(r, "serveur-http");
+            thread.setDaemon(true);
+            return thread;
+        });
+        serveur.setExecutor(executeur);
+        serveur.createContext(CHEMIN_ETAT, this::traiterEtat);
+        serveur.createContext(CHEMIN_STATISTIQUES, ServeurHttp::traiterStatistiques);
+    }
+
+    public void start() {
+        serveur.start();
+    }
+
+    public void stop() {
+        serveur.stop(0);
+        executeur.shutdownNow();
+    }
+
+    /**
+     * @return le port sur lequel le serveur écoute
+     */
+    public int getPort() {
+        return serveur.getAddress().getPort();
+    }
+
+    private void traiterEtat(HttpExchange echange) throws IOException {
+        if (!echange.getRequestMethod().equals("GET")) {
+            repondre(echange, 405);
+            return;
+        }
+        Map<String, String> parametres = parametres(echange.getRequestURI().getRawQuery());
+        String idPartie = parametres.getOrDefault(GameServer.PARAMETRE_PARTIE, GameServer.PARTIE_PAR_DEFAUT);
+        Partie partie = GameServer.getPartie(idPartie);
+        if (partie == null) {
+            repondre(echange, 404);
+            return;
+        }
+        String ifNoneMatch = echange.getRequestHeaders().getFirst("If-None-Match");
+        long attente;
+        try {
+            attente = Math.min(ATTENTE_MAX, Long.parseLong(parametres.getOrDefault(PARAMETRE_ATTENTE, "0")));
+        } catch (NumberFormatException e) {
+            repondre(echange, 400);
+            return;
+        }
+
+        EtatPartie etat = partie.getEtat();
+        if (etat != null && !correspond(ifNoneMatch, etag(etat))) {
+            envoyerEtat(echange, etat);
+        } else if (attente <= 0) {
+            repondre(echange, etat == null ? 503 : 304);
+        } else {
+            // la réponse est envoyée par un thread du serveur lorsqu'une nouvelle
+            // version est publiée (et jamais par le thread du jeu qui la publie)
+            partie.attendreEtatApres(etat == null ? -1 : etat.getVersion())
+                    .copy()
+                    .completeOnTimeout(null, attente, TimeUnit.MILLISECONDS)
+                    .thenAcceptAsync(nouvelEtat -> {
+                        try {
+                            if (nouvelEtat == null) {
+                                repondre(echange, etat == null ? 503 : 304);
+                            } else {
+                                envoyerEtat(echange, nouvelEtat);
+                            }
+                        } catch (IOException e) {
+                            // client déconnecté pendant l'attente
+                            echange.close();
+                        }
+                    }, executeur);
+        }
+    }
+
+    private static void traiterStatistiques(HttpExchange echange) throws IOException {
+        long nbEntreesRejetees = 0;
+        int nbClients = 0;
+        for (Partie partie : GameServer.getParties()) {
+            nbEntreesRejetees += partie.getNbEntreesRejetees();
+            nbClients += partie.getNbClients();
+        }
+        JsonObject statistiques = new JsonObject();
+        statistiques.addProperty("parties", GameServer.getParties().size());
+        statistiques.addProperty("clients", nbClients);
+        statistiques.addProperty("spectateurs", GameServer.getNbSpectateurs());
+        statistiques.addProperty("messagesRejetes", GameServer.getNbMessagesRejetes());
+        statistiques.addProperty("entreesRejetees", nbEntreesRejetees);
+        byte[] corps = statistiques.toString().getBytes(StandardCharsets.UTF_8);
+        echange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        echange.sendResponseHeaders(200, corps.length);
+        try (OutputStream sortie = echange.getResponseBody()) {
+            sortie.write(corps);
+        }
+    }
+
+    private static void envoyerEtat(HttpExchange echange, EtatPartie etat) throws IOException {
+        ByteBuffer trame = etat.getEtatComplet().getTrame(Encodage.UTF8);
+        echange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        echange.getResponseHeaders().set("Cache-Control", "no-cache");
+        echange.getResponseHeaders().set("ETag", etag(etat));
+        echange.sendResponseHeaders(200, trame.remaining());
+        try (OutputStream sortie = echange.getResponseBody()) {
+            Channels.newChannel(sortie).write(trame);
+        }
+    }
+
+    private static void repondre(HttpExchange echange, int code) throws IOException {
+        echange.sendResponseHeaders(code, -1);
+        echange.close();
+    }
+
+    static String etag(EtatPartie etat) {
+        return "\"" + etat.getEpoque() + "-" + etat.getVersion() + "\"";
+    }
+
+    /**
+     * @return vrai si l'en-tête {@code If-None-Match} (éventuellement absent)
+     *         contient exactement le tag donné, ou {@code *}
+     */
+    static boolean correspond(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String tag : ifNoneMatch.split(",")) {
+            String valeur = tag.trim();
+            if (valeur.startsWith("W/")) {
+                valeur = valeur.substring(2);
+            }
+            if (valeur.equals("*") || valeur.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static Map<String, String> parametres(String requete) {
+        Map<String, String> parametres = new HashMap<>();
+        if (requete == null) {
+            return parametres;
+        }
+        for (String parametre : requete.split("&")) {
+            int egal = parametre.indexOf('=');
+            if (egal > 0) {
+                parametres.putIfAbsent(URLDecoder.decode(parametre.substring(0, egal), StandardCharsets.UTF_8),
+                        URLDecoder.decode(parametre.substring(egal + 1), StandardCharsets.UTF_8));
+            }
+        }
+        return parametres;
+    }
+}
@@ -2,22 +2,80 @@ package fr.umontpellier.iut.gui;
 
 import javax.websocket.*;
 import javax.websocket.server.ServerEndpoint;
+import java.io.IOException;
 
 @ServerEndpoint(value = "/")
 public class WebSocketClient {
+    /**
+     * Clés sous lesquelles la partie et le client sont conservés dans les
+     * propriétés de la session
+     */
+    static final String PROPRIETE_PARTIE = "partie";
+    static final String PROPRIETE_CLIENT = "client";
+
     @OnOpen
-    public void onOpen(Session session) {
-        GameServer.addClient(session);
+    public void onOpen(Session session) throws IOException {
+        Client client = new Client(session);
+        if (!client.estSpectateur()) {
+            Partie partie = GameServer.getOuCreerPartie(GameServer.getIdPartie(session));
+            if (partie == null) {
+                session.close(new CloseReason(CloseReason.CloseCodes.TRY_AGAIN_LATER, "Trop de parties"));
+                return;
+            }
+            session.getUserProperties().put(PROPRIETE_PARTIE, partie);
+            session.getUserProperties().put(PROPRIETE_CLIENT, client);
+            partie.addClient(client);
+            return;
+        }
+
+        // un spectateur ne peut rejoindre qu'une partie existante
+        Partie partie = GameServer.getPartie(GameServer.getIdPartie(session));
+        if (partie == null) {
+            session.close(new CloseReason(CloseReason.CloseCodes.CANNOT_ACCEPT, "Partie inconnue"));
+        } else if (!GameServer.reserverPlaceSpectateur()) {
+            session.close(new CloseReason(CloseReason.CloseCodes.TRY_AGAIN_LATER, "Trop de spectateurs"));
+        } else {
+            // la place réservée est libérée à la fermeture de la session
+            session.getUserProperties().put(PROPRIETE_CLIENT, client);
+            if (partie.addSpectateur(client)) {
+                session.getUserProperties().put(PROPRIETE_PARTIE, partie);
+            } else {
+                session.close(new CloseReason(CloseReason.CloseCodes.TRY_AGAIN_LATER, "Trop de spectateurs"));
+            }
+        }
     }
 
     @OnMessage
     public void onMessage(String message, Session session) {
-        GameServer.addInput(message);
+        Partie partie = getPartie(session);
+        if (partie == null) {
+            return;
+        }
+        Client client = getClient(session);
+        if (!client.autoriserMessage()) {
+            // message ignoré avant d'atteindre le jeu (client trop bavard)
+            GameServer.compterMessageRejete();
+            return;
+        }
+        if (message.startsWith(Partie.PREFIXE_COMMANDE)) {
+            partie.executerCommande(client, message);
+        } else if (!client.estSpectateur() && !partie.addInput(client, message)) {
+            // les messages des spectateurs ne sont pas transmis au jeu, les
+            // messages reçus lorsque la file du jeu est pleine sont ignorés
+            GameServer.compterMessageRejete();
+        }
     }
 
     @OnClose
     public void onClose(Session session) {
-        GameServer.removeClient(session);
+        Partie partie = getPartie(session);
+        if (partie != null) {
+            partie.removeClient(getClient(session));
+        }
+        Client client = getClient(session);
+        if (client != null && client.estSpectateur()) {
+            GameServer.libererPlaceSpectateur();
+        }
     }
 
     @OnError
@@ -25,4 +83,12 @@ public class WebSocketClient {
         exception.printStackTrace();
         System.err.println("Error for client: " + session.getId());
     }
-}
\ No newline at end of file
+
+    private static Partie getPartie(Session session) {
+        return (Partie) session.getUserProperties().get(PROPRIETE_PARTIE);
+    }
+
+    private static Client getClient(Session session) {
+        return (Client) session.getUserProperties().get(PROPRIETE_CLIENT);
+    }
+}
@@ -0,0 +1,239 @@
+package fr.umontpellier.iut.rails;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Choix des routes empruntées par les gares d'un joueur en fin de partie.
+ * <p>
+ * Chaque gare permet à son propriétaire d'emprunter une (seule) route d'un
+ * autre joueur arrivant dans sa ville. Le choix qui réalise le plus de points
+ * de destinations est cherché par un parcours des gares :
+ * <ul>
+ * <li>les routes qui relient des villes déjà reliées par le joueur sont
+ * inutiles, et deux routes qui relient les mêmes composantes sont
+ * équivalentes : seule la première est gardée ;</li>
+ * <li>les choix d'une gare ne sont plus essayés dès que l'un d'eux atteint la
+ * borne obtenue en empruntant toutes les routes candidates des gares
+ * restantes ;</li>
+ * <li>le meilleur résultat depuis une gare est mémorisé selon la partition des
+ * villes utiles (extrémités des destinations et des routes candidates), qui
+ * résume tout ce que les choix précédents ont relié.</li>
+ * </ul>
+ * Les connexions du joueur (union-find, voir {@code Connexions}) servent de
+ * point de départ : elles ne sont pas recalculées.
+ */
+public class AffectationGares {
+    private final Joueur joueur;
+    /**
+     * Routes empruntées par les gares du joueur
+     */
+    private final List<Route> routesEmpruntees;
+    /**
+     * Villes reliées par les routes du joueur et les routes empruntées
+     */
+    private final Connexions connexions;
+
+    private AffectationGares(Joueur joueur, List<Route> routesEmpruntees, Connexions connexions) {
+        this.joueur = joueur;
+        this.routesEmpruntees = Collections.unmodifiableList(routesEmpruntees);
+        this.connexions = connexions;
+    }
+
+    public Joueur getJoueur() {
+        return joueur;
+    }
+
+    /**
+     * @return les routes d'autres joueurs empruntées grâce aux gares (au plus
+     * une par gare)
+     */
+    public List<Route> getRoutesEmpruntees() {
+        return routesEmpruntees;
+    }
+
+    /**
+     * @return vrai si la destination est réalisée avec les routes du joueur et
+     * les routes empruntées par ses gares
+     */
+    public boolean estRealisee(Destination destination) {
+        return connexions.sontReliees(destination.getIdVille1(), destination.getIdVille2());
+    }
+
+    /**
+     * Cherche les routes à emprunter par les gares du joueur qui réalisent le
+     * plus de points de destinations
+     */
+    public static AffectationGares calculer(Plateau plateau, Joueur joueur) {
+        return new Recherche(plateau, joueur).resoudre();
+    }
+
+    /**
+     * État d'une recherche
+     */
+    private static class Recherche {
+        private final Plateau plateau;
+        private final Joueur joueur;
+        private final Topologie topologie;
+        private final Connexions depart;
+        /**
+         * Extrémités et valeurs des destinations du joueur
+         */
+        private final int[] destinations1;
+        private final int[] destinations2;
+        private final int[] valeurs;
+        /**
+         * Routes candidates de chaque gare (les gares sans route utile sont
+         * ignorées)
+         */
+        private final List<int[]> candidates;
+        /**
+         * Villes dont la composante influence le résultat
+         */
+        private final int[] villesUtiles;
+        /**
+         * Meilleur résultat depuis une gare, selon la partition des villes
+         * utiles
+         */
+        private final HashMap<String, Integer> memo;
+
+        private Recherche(Plateau plateau, Joueur joueur) {
+            this.plateau = plateau;
+            this.joueur = joueur;
+            topologie = plateau.getTopologie();
+            depart = plateau.copierConnexions(joueur);
+            memo = new HashMap<>();
+
+            List<Destination> liste = joueur.getDestinations();
+            int n = liste.size();
+            destinations1 = new int[n];
+            destinations2 = new int[n];
+            valeurs = new int[n];
+            for (int i = 0; i < n; i++) {
+                Destination destination = liste.get(i);
+                destinations1[i] = destination.getIdVille1();
+                destinations2[i] = destination.getIdVille2();
+                valeurs[i] = destination.getValeur();
+            }
+
+            candidates = new ArrayList<>();
+            Set<Integer> utiles = new HashSet<>();
+            for (int i = 0; i < n; i++) {
+                utiles.add(destinations1[i]);
+                utiles.add(destinations2[i]);
+            }
+            for (Ville gare : plateau.getGares(joueur)) {
+                List<Integer> routes = new ArrayList<>();
+                Set<Long> paires = new HashSet<>();
+                for (int route : topologie.getRoutesAdjacentes(gare.getId())) {
+                    Joueur proprietaire = plateau.getProprietaireRoute(route);
+                    if (proprietaire == null || proprietaire == joueur) continue;
+                    int racine1 = depart.trouver(topologie.getVille1(route));
+                    int racine2 = depart.trouver(topologie.getVille2(route));
+                    if (racine1 == racine2) continue;
+                    long paire = (long) Math.min(racine1, racine2) << 32 | Math.max(racine1, racine2);
+                    if (paires.add(paire)) {
+                        routes.add(route);
+                        utiles.add(topologie.getVille1(route));
+                        utiles.add(topologie.getVille2(route));
+                    }
+                }
+                if (!routes.isEmpty()) {
+                    candidates.add(routes.stream().mapToInt(Integer::intValue).toArray());
+                }
+            }
+            villesUtiles = utiles.stream().mapToInt(Integer::intValue).toArray();
+        }
+
+        private AffectationGares resoudre() {
+            // reconstruction du choix : à chaque gare, la première route qui
+            // atteint le meilleur résultat
+            List<Route> empruntees = new ArrayList<>();
+            Connexions connexions = depart;
+            int objectif = explorer(0, depart);
+            for (int gare = 0; gare < candidates.size(); gare++) {
+                if (explorer(gare + 1, connexions) == objectif) continue;
+                for (int route : candidates.get(gare)) {
+                    Connexions avecRoute = avec(connexions, route);
+                    if (explorer(gare + 1, avecRoute) == objectif) {
+                        connexions = avecRoute;
+                        empruntees.add(plateau.getRoutes().get(route));
+                        break;
+                    }
+                }
+            }
+            return new AffectationGares(joueur, empruntees, connexions);
+        }
+
+        /**
+         * @return le plus de points de destinations réalisables à partir de
+         * la gare d'indice donné, avec les connexions déjà obtenues
+         */
+        private int explorer(int gare, Connexions connexions) {
+            if (gare == candidates.size()) {
+                return points(connexions);
+            }
+            String cle = cle(gare, connexions);
+            Integer connu = memo.get(cle);
+            if (connu != null) {
+                return connu;
+            }
+            // borne : toutes les routes des gares restantes empruntées
+            Connexions optimiste = new Connexions(connexions);
+            for (int g = gare; g < candidates.size(); g++) {
+                for (int route : candidates.get(g)) {
+                    optimiste.relier(topologie.getVille1(route), topologie.getVille2(route));
+                }
+            }
+            int borne = points(optimiste);
+            int resultat = explorer(gare + 1, connexions);
+            for (int route : candidates.get(gare)) {
+                if (resultat == borne) break;
+                resultat = Math.max(resultat, explorer(gare + 1, avec(connexions, route)));
+            }
+            memo.put(cle, resultat);
+            return resultat;
+        }
+
+        private Connexions avec(Connexions connexions, int route) {
+            Connexions copie = new Connexions(connexions);
+            copie.relier(topologie.getVille1(route), topologie.getVille2(route));
+            return copie;
+        }
+
+        private int points(Connexions connexions) {
+            int points = 0;
+            for (int i = 0; i < valeurs.length; i++) {
+                if (connexions.sontReliees(destinations1[i], destinations2[i])) points += valeurs[i];
+            }
+            return points;
+        }
+
+        /**
+         * @return une clé décrivant la gare et la partition des villes utiles
+         * (chaque ville reçoit le numéro de la première ville utile de sa
+         * composante)
+         */
+        private String cle(int gare, Connexions connexions) {
+            char[] cle = new char[villesUtiles.length + 1];
+            cle[0] = (char) gare;
+            int[] racines = new int[villesUtiles.length];
+            for (int i = 0; i < villesUtiles.length; i++) {
+                racines[i] = connexions.trouver(villesUtiles[i]);
+                int premiere = i;
+                for (int j = 0; j < i; j++) {
+                    if (racines[j] == racines[i]) {
+                        premiere = j;
+                        break;
+                    }
+                }
+                cle[i + 1] = (char) premiere;
+            }
+            return new String(cle);
+        }
+    }
+}
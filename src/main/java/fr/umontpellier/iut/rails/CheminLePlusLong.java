@@ -0,0 +1,260 @@
+package fr.umontpellier.iut.rails;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Calcul du plus long chemin continu du réseau d'un joueur (bonus European
+ * Express) : le plus long parcours de ses routes qui n'emprunte pas deux fois
+ * la même route (les villes peuvent être traversées plusieurs fois).
+ * <p>
+ * Le problème est NP-difficile, mais le réseau d'un joueur est petit (au plus
+ * 45 wagons). Le réseau est découpé en composantes connexes, calculées en
+ * parallèle (fork/join). Dans une composante, les routes sont renumérotées
+ * pour que les routes empruntées tiennent dans un masque de bits
+ * ({@code long}), et le parcours en profondeur est élagué :
+ * <ul>
+ * <li>une composante qui a au plus deux villes de degré impair se parcourt
+ * entièrement (chemin eulérien) ;</li>
+ * <li>sinon, un plus long chemin commence et finit en une ville de degré
+ * impair (un chemin qui part d'une ville de degré pair peut être prolongé) :
+ * seules ces villes sont des départs ;</li>
+ * <li>l'exploration depuis une ville s'arrête dès qu'un chemin emprunte toutes
+ * les routes restantes ;</li>
+ * <li>le plus long prolongement depuis une ville avec un ensemble de routes
+ * déjà empruntées est mémorisé (les mêmes situations sont atteintes par des
+ * ordres de parcours différents) dans une petite table à accès direct, sans
+ * objets intermédiaires.</li>
+ * </ul>
+ */
+public final class CheminLePlusLong {
+    /**
+     * Nombre d'entrées de la table des prolongements mémorisés (une table à
+     * accès direct : une entrée en collision remplace la précédente)
+     */
+    private static final int TAILLE_MEMO = 1 << 12;
+    /**
+     * Nombre minimal de routes restantes pour mémoriser un prolongement (les
+     * petits prolongements sont plus rapides à recalculer qu'à chercher)
+     */
+    private static final int NB_ROUTES_MIN_MEMO = 6;
+    /**
+     * Nombre de routes à partir duquel une composante est calculée dans une
+     * tâche séparée (les petites composantes sont calculées directement)
+     */
+    private static final int NB_ROUTES_MIN_TACHE = 8;
+
+    private CheminLePlusLong() {
+    }
+
+    /**
+     * @return la longueur (en wagons) du plus long chemin continu formé par les
+     * routes capturées par le joueur
+     */
+    public static int calculer(Plateau plateau, Joueur joueur) {
+        List<Route> routes = plateau.getRoutesCapturees(joueur);
+        int[] ids = new int[routes.size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = routes.get(i).getId();
+        }
+        return calculer(plateau.getTopologie(), ids);
+    }
+
+    /**
+     * @return la longueur du plus long chemin continu formé par les routes
+     * d'identifiants donnés
+     */
+    static int calculer(Topologie topologie, int[] routes) {
+        // composantes connexes des villes touchées par les routes
+        Connexions connexions = new Connexions(topologie.getNbVilles());
+        for (int route : routes) {
+            connexions.relier(topologie.getVille1(route), topologie.getVille2(route));
+        }
+        HashMap<Integer, List<Integer>> routesParComposante = new HashMap<>();
+        for (int route : routes) {
+            routesParComposante.computeIfAbsent(connexions.trouver(topologie.getVille1(route)),
+                    k -> new ArrayList<>()).add(route);
+        }
+
+        List<Composante> taches = new ArrayList<>();
+        int meilleur = 0;
+        for (List<Integer> routesComposante : routesParComposante.values()) {
+            Composante composante = new Composante(topologie, routesComposante);
+            if (routesComposante.size() >= NB_ROUTES_MIN_TACHE && routesParComposante.size() > 1) {
+                taches.add(composante);
+            } else {
+                meilleur = Math.max(meilleur, composante.compute());
+            }
+        }
+        for (Composante tache : ForkJoinTask.invokeAll(taches)) {
+            meilleur = Math.max(meilleur, tache.join());
+        }
+        return meilleur;
+    }
+
+    /**
+     * Plus long chemin d'une composante connexe
+     */
+    @SuppressWarnings("serial")
+    private static class Composante extends RecursiveTask<Integer> {
+        /**
+         * Extrémités (numéros locaux des villes) et longueur de chaque route de
+         * la composante
+         */
+        private final int[] villes1;
+        private final int[] villes2;
+        private final int[] longueurs;
+        /**
+         * Masque des routes touchant chaque ville (composantes d'au plus 64
+         * routes)
+         */
+        private final long[] routesVilles;
+        /**
+         * Routes touchant chaque ville (composantes de plus de 64 routes)
+         */
+        private final int[][] listesRoutesVilles;
+        private final int longueurTotale;
+        /**
+         * Prolongements mémorisés : routes empruntées, et ville (bits 16 à 23)
+         * avec la longueur du plus long prolongement (bits 0 à 15), ou 0 pour
+         * une entrée vide
+         */
+        private final long[] memoEmpruntees;
+        private final int[] memoValeurs;
+
+        private Composante(Topologie topologie, List<Integer> routes) {
+            int nbRoutes = routes.size();
+            villes1 = new int[nbRoutes];
+            villes2 = new int[nbRoutes];
+            longueurs = new int[nbRoutes];
+            int[] numeros = new int[topologie.getNbVilles()];
+            Arrays.fill(numeros, -1);
+            int nbVilles = 0;
+            int total = 0;
+            for (int i = 0; i < nbRoutes; i++) {
+                int route = routes.get(i);
+                int ville1 = topologie.getVille1(route);
+                int ville2 = topologie.getVille2(route);
+                if (numeros[ville1] < 0) numeros[ville1] = nbVilles++;
+                if (numeros[ville2] < 0) numeros[ville2] = nbVilles++;
+                villes1[i] = numeros[ville1];
+                villes2[i] = numeros[ville2];
+                longueurs[i] = topologie.getLongueur(route);
+                total += longueurs[i];
+            }
+            longueurTotale = total;
+            int[] degres = new int[nbVilles];
+            for (int i = 0; i < nbRoutes; i++) {
+                degres[villes1[i]]++;
+                degres[villes2[i]]++;
+            }
+            listesRoutesVilles = new int[nbVilles][];
+            for (int v = 0; v < nbVilles; v++) {
+                listesRoutesVilles[v] = new int[degres[v]];
+                degres[v] = 0;
+            }
+            for (int i = 0; i < nbRoutes; i++) {
+                listesRoutesVilles[villes1[i]][degres[villes1[i]]++] = i;
+                listesRoutesVilles[villes2[i]][degres[villes2[i]]++] = i;
+            }
+            if (nbRoutes <= Long.SIZE) {
+                routesVilles = new long[nbVilles];
+                for (int i = 0; i < nbRoutes; i++) {
+                    routesVilles[villes1[i]] |= 1L << i;
+                    routesVilles[villes2[i]] |= 1L << i;
+                }
+                memoEmpruntees = new long[TAILLE_MEMO];
+                memoValeurs = new int[TAILLE_MEMO];
+            } else {
+                routesVilles = null;
+                memoEmpruntees = null;
+                memoValeurs = null;
+            }
+        }
+
+        @Override
+        protected Integer compute() {
+            List<Integer> departs = new ArrayList<>();
+            for (int v = 0; v < listesRoutesVilles.length; v++) {
+                if (listesRoutesVilles[v].length % 2 == 1) departs.add(v);
+            }
+            if (departs.size() <= 2) {
+                // chemin (ou cycle) eulérien : toutes les routes
+                return longueurTotale;
+            }
+            int meilleur = 0;
+            boolean[] empruntees = routesVilles == null ? new boolean[villes1.length] : null;
+            for (int depart : departs) {
+                int longueur = routesVilles != null
+                        ? explorer(depart, 0L, longueurTotale)
+                        : explorer(depart, empruntees, longueurTotale);
+                meilleur = Math.max(meilleur, longueur);
+                if (meilleur == longueurTotale) break;
+            }
+            return meilleur;
+        }
+
+        /**
+         * @param ville       la ville courante
+         * @param empruntees  le masque des routes déjà empruntées
+         * @param restant     la longueur totale des routes non empruntées
+         * @return la longueur du plus long prolongement depuis la ville
+         */
+        private int explorer(int ville, long empruntees, int restant) {
+            long disponibles = routesVilles[ville] & ~empruntees;
+            if (disponibles == 0) {
+                return 0;
+            }
+            boolean memoriser = villes1.length - Long.bitCount(empruntees) >= NB_ROUTES_MIN_MEMO;
+            int entree = 0;
+            if (memoriser) {
+                entree = (int) ((empruntees * 0x9E3779B97F4A7C15L + ville) >>> 52) & (TAILLE_MEMO - 1);
+                int valeur = memoValeurs[entree];
+                if (valeur != 0 && memoEmpruntees[entree] == empruntees && (valeur >>> 16) - 1 == ville) {
+                    return valeur & 0xFFFF;
+                }
+            }
+            int meilleur = 0;
+            for (long bits = disponibles; bits != 0; bits &= bits - 1) {
+                int route = Long.numberOfTrailingZeros(bits);
+                int suivante = villes1[route] == ville ? villes2[route] : villes1[route];
+                int longueur = longueurs[route]
+                        + explorer(suivante, empruntees | (1L << route), restant - longueurs[route]);
+                if (longueur > meilleur) {
+                    meilleur = longueur;
+                    if (meilleur == restant) break;
+                }
+            }
+            if (memoriser) {
+                memoEmpruntees[entree] = empruntees;
+                memoValeurs[entree] = (ville + 1) << 16 | meilleur;
+            }
+            return meilleur;
+        }
+
+        /**
+         * Version sans masque de bits, pour les composantes de plus de 64
+         * routes ({@code empruntees} est rétabli en sortie)
+         */
+        private int explorer(int ville, boolean[] empruntees, int restant) {
+            int meilleur = 0;
+            for (int route : listesRoutesVilles[ville]) {
+                if (!empruntees[route]) {
+                    empruntees[route] = true;
+                    int suivante = villes1[route] == ville ? villes2[route] : villes1[route];
+                    int longueur = longueurs[route] + explorer(suivante, empruntees, restant - longueurs[route]);
+                    empruntees[route] = false;
+                    if (longueur > meilleur) {
+                        meilleur = longueur;
+                        if (meilleur == restant) break;
+                    }
+                }
+            }
+            return meilleur;
+        }
+    }
+}
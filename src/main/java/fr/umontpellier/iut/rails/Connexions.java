@@ -0,0 +1,91 @@
+package fr.umontpellier.iut.rails;
+
+import java.util.Arrays;
+
+/**
+ * Villes reliées par les routes d'un joueur : structure union-find sur les
+ * identifiants des villes (union par rang et compression de chemins).
+ * <p>
+ * Une route capturée relie ses deux villes en temps quasi constant, et savoir
+ * si deux villes sont reliées ne demande pas de parcours du graphe. La
+ * structure ne sait pas retirer une route : lorsqu'un joueur perd une route,
+ * le plateau la reconstruit à partir des routes restantes.
+ */
+class Connexions {
+    /**
+     * Parent de chaque ville dans sa composante (une ville est la racine de sa
+     * composante si elle est son propre parent)
+     */
+    private final int[] parents;
+    /**
+     * Majorant de la hauteur de l'arbre de chaque racine
+     */
+    private final byte[] rangs;
+
+    Connexions(int nbVilles) {
+        parents = new int[nbVilles];
+        rangs = new byte[nbVilles];
+        vider();
+    }
+
+    /**
+     * Copie des connexions (les deux structures évoluent ensuite séparément)
+     */
+    Connexions(Connexions connexions) {
+        parents = connexions.parents.clone();
+        rangs = connexions.rangs.clone();
+    }
+
+    /**
+     * Sépare toutes les villes
+     */
+    void vider() {
+        for (int i = 0; i < parents.length; i++) {
+            parents[i] = i;
+        }
+        Arrays.fill(rangs, (byte) 0);
+    }
+
+    /**
+     * @return la ville représentant la composante de la ville donnée
+     */
+    int trouver(int ville) {
+        int racine = ville;
+        while (parents[racine] != racine) {
+            racine = parents[racine];
+        }
+        // compression : toutes les villes du chemin pointent sur la racine
+        while (parents[ville] != racine) {
+            int parent = parents[ville];
+            parents[ville] = racine;
+            ville = parent;
+        }
+        return racine;
+    }
+
+    /**
+     * Relie deux villes (et donc leurs composantes)
+     */
+    void relier(int ville1, int ville2) {
+        int racine1 = trouver(ville1);
+        int racine2 = trouver(ville2);
+        if (racine1 == racine2) {
+            return;
+        }
+        if (rangs[racine1] < rangs[racine2]) {
+            parents[racine1] = racine2;
+        } else if (rangs[racine1] > rangs[racine2]) {
+            parents[racine2] = racine1;
+        } else {
+            parents[racine2] = racine1;
+            rangs[racine1]++;
+        }
+    }
+
+    /**
+     * @return vrai si les deux villes sont dans la même composante
+     */
+    boolean sontReliees(int ville1, int ville2) {
+        return trouver(ville1) == trouver(ville2);
+    }
+}
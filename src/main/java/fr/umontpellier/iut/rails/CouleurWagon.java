@@ -74,4 +74,41 @@ public enum CouleurWagon {
         return joiner.toString();
     }
 
+    /**
+     * Lit un paiement de plusieurs cartes donné en une seule réponse, de la forme
+     * {@code "ROUGE x4, LOCOMOTIVE x2"} : des noms de couleurs (voir
+     * {@code name()}) suivis éventuellement de {@code " x"} et d'un nombre de
+     * cartes, séparés par des virgules. Une couleur peut apparaître plusieurs
+     * fois.
+     *
+     * @param paiement la réponse du joueur
+     * @return le nombre de cartes de chaque couleur (indexé par
+     *         {@code ordinal()}), ou {@code null} si la réponse n'est pas un
+     *         paiement bien formé
+     */
+    public static int[] lirePaiement(String paiement) {
+        int[] nbCartes = new int[values().length];
+        for (String terme : paiement.split(",", -1)) {
+            String[] parties = terme.trim().split("\\s+x", -1);
+            if (parties.length > 2) {
+                return null;
+            }
+            CouleurWagon couleur;
+            int nb = 1;
+            try {
+                couleur = valueOf(parties[0]);
+                if (parties.length == 2) {
+                    nb = Integer.parseInt(parties[1].trim());
+                }
+            } catch (IllegalArgumentException e) {
+                return null;
+            }
+            if (nb <= 0 || nb > 1000) {
+                return null;
+            }
+            nbCartes[couleur.ordinal()] += nb;
+        }
+        return nbCartes;
+    }
+
 }
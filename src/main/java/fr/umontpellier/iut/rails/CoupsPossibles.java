@@ -0,0 +1,146 @@
+package fr.umontpellier.iut.rails;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Routes qu'un joueur peut capturer et villes où il peut construire une gare,
+ * tenues à jour au fil des événements de la partie.
+ * <p>
+ * Plutôt que de tester toutes les routes et toutes les villes à chaque tour,
+ * seules les routes dont la capturabilité a pu changer sont marquées « à
+ * vérifier » :
+ * <ul>
+ * <li>une carte d'une couleur gagnée ou dépensée : les routes de cette couleur
+ * et les routes grises (toutes les routes pour une locomotive) ;</li>
+ * <li>une route capturée : la route et sa route double ;</li>
+ * <li>des wagons posés : toutes les routes, seulement lorsqu'il reste moins de
+ * wagons que la longueur de la plus longue route.</li>
+ * </ul>
+ * Les routes marquées sont re-testées ({@code Route.estCapturablePar}) au
+ * moment où les coups sont demandés. Les villes sans gare sont suivies par le
+ * plateau, et le fait que le joueur puisse payer une gare ne dépend pas de la
+ * ville : il est recalculé seulement après un changement des cartes ou des
+ * gares du joueur.
+ */
+public class CoupsPossibles {
+    private final Joueur joueur;
+    private final Plateau plateau;
+    /**
+     * Identifiants des routes capturables (à jour pour les routes qui ne sont
+     * pas à vérifier)
+     */
+    private final BitSet routesCapturables;
+    /**
+     * Identifiants des routes dont la capturabilité doit être re-testée
+     */
+    private final BitSet routesAVerifier;
+    /**
+     * Liste des routes capturables (reconstruite lorsque
+     * {@code routesCapturables} change)
+     */
+    private List<Route> listeRoutesCapturables;
+    private boolean peutConstruireGare;
+    private boolean gareAVerifier;
+
+    CoupsPossibles(Joueur joueur, Plateau plateau) {
+        this.joueur = joueur;
+        this.plateau = plateau;
+        int nbRoutes = plateau.getRoutes().size();
+        routesCapturables = new BitSet(nbRoutes);
+        routesAVerifier = new BitSet(nbRoutes);
+        routesAVerifier.set(0, nbRoutes);
+        gareAVerifier = true;
+        plateau.ajouterCoupsPossibles(this);
+    }
+
+    /**
+     * @return les routes que le joueur peut capturer (dans l'ordre de la liste
+     *         des routes)
+     */
+    public List<Route> getRoutesCapturables() {
+        List<Route> routes = plateau.getRoutes();
+        for (int i = routesAVerifier.nextSetBit(0); i >= 0; i = routesAVerifier.nextSetBit(i + 1)) {
+            boolean capturable = routes.get(i).estCapturablePar(joueur);
+            if (capturable != routesCapturables.get(i)) {
+                routesCapturables.set(i, capturable);
+                listeRoutesCapturables = null;
+            }
+        }
+        routesAVerifier.clear();
+        if (listeRoutesCapturables == null) {
+            List<Route> capturables = new ArrayList<>(routesCapturables.cardinality());
+            for (int i = routesCapturables.nextSetBit(0); i >= 0; i = routesCapturables.nextSetBit(i + 1)) {
+                capturables.add(routes.get(i));
+            }
+            listeRoutesCapturables = Collections.unmodifiableList(capturables);
+        }
+        return listeRoutesCapturables;
+    }
+
+    /**
+     * @return les villes où le joueur peut construire une gare (dans l'ordre de
+     *         la liste des villes)
+     */
+    public List<Ville> getVillesCapturables() {
+        if (gareAVerifier) {
+            peutConstruireGare = joueur.peutConstruireGare();
+            gareAVerifier = false;
+        }
+        return peutConstruireGare ? plateau.getVillesLibres() : Collections.emptyList();
+    }
+
+    /**
+     * Appelée lorsque le joueur gagne ou dépense une carte de la couleur donnée
+     */
+    void carteModifiee(CouleurWagon couleur) {
+        if (couleur == CouleurWagon.LOCOMOTIVE) {
+            toutVerifier();
+        } else {
+            for (int route : plateau.getTopologie().getRoutesDeCouleur(couleur)) {
+                routesAVerifier.set(route);
+            }
+            for (int route : plateau.getTopologie().getRoutesDeCouleur(CouleurWagon.GRIS)) {
+                routesAVerifier.set(route);
+            }
+            gareAVerifier = true;
+        }
+    }
+
+    /**
+     * Appelée lorsque le propriétaire d'une route change
+     */
+    void routeModifiee(int route) {
+        routesAVerifier.set(route);
+        int routeDouble = plateau.getTopologie().getRouteDouble(route);
+        if (routeDouble != Topologie.AUCUNE) {
+            routesAVerifier.set(routeDouble);
+        }
+    }
+
+    /**
+     * Appelée lorsque le joueur pose des wagons
+     */
+    void wagonsModifies() {
+        if (joueur.getNbWagons() < plateau.getTopologie().getLongueurMax()) {
+            routesAVerifier.set(0, plateau.getRoutes().size());
+        }
+    }
+
+    /**
+     * Appelée lorsque le nombre de gares du joueur change
+     */
+    void garesModifiees() {
+        gareAVerifier = true;
+    }
+
+    /**
+     * Marque toutes les routes et les gares à vérifier
+     */
+    void toutVerifier() {
+        routesAVerifier.set(0, plateau.getRoutes().size());
+        gareAVerifier = true;
+    }
+}
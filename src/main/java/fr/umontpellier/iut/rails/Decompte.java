@@ -0,0 +1,111 @@
+package fr.umontpellier.iut.rails;
+
+/**
+ * Décompte des points d'un joueur en fin de partie : routes capturées,
+ * destinations réalisées et manquées, gares non utilisées et bonus European
+ * Express (plus long chemin continu).
+ */
+public class Decompte {
+    /**
+     * Points attribués aux joueurs ayant le plus long chemin continu
+     */
+    public static final int BONUS_EUROPE_EXPRESS = 10;
+    /**
+     * Points de chaque gare non utilisée
+     */
+    public static final int POINTS_GARE = 4;
+
+    private final Joueur joueur;
+    private final int pointsRoutes;
+    /**
+     * Somme des valeurs des destinations réalisées
+     */
+    private final int pointsDestinationsRealisees;
+    /**
+     * Somme des valeurs des destinations manquées (comptées en négatif dans le
+     * total)
+     */
+    private final int pointsDestinationsManquees;
+    private final int pointsGares;
+    /**
+     * Longueur du plus long chemin continu du joueur
+     */
+    private final int longueurCheminLePlusLong;
+    private final int bonusEuropeExpress;
+
+    Decompte(Joueur joueur, int pointsRoutes, int pointsDestinationsRealisees, int pointsDestinationsManquees,
+             int pointsGares, int longueurCheminLePlusLong, int bonusEuropeExpress) {
+        this.joueur = joueur;
+        this.pointsRoutes = pointsRoutes;
+        this.pointsDestinationsRealisees = pointsDestinationsRealisees;
+        this.pointsDestinationsManquees = pointsDestinationsManquees;
+        this.pointsGares = pointsGares;
+        this.longueurCheminLePlusLong = longueurCheminLePlusLong;
+        this.bonusEuropeExpress = bonusEuropeExpress;
+    }
+
+    /**
+     * Décompte les points d'un joueur, sans le bonus European Express (qui
+     * dépend des autres joueurs)
+     */
+    static Decompte calculer(Plateau plateau, Joueur joueur) {
+        int pointsRoutes = 0;
+        for (Route route : plateau.getRoutesCapturees(joueur)) {
+            pointsRoutes += route.getPoints();
+        }
+        // les gares du joueur empruntent les routes qui réalisent le plus de destinations
+        AffectationGares gares = AffectationGares.calculer(plateau, joueur);
+        int realisees = 0;
+        int manquees = 0;
+        for (Destination destination : joueur.getDestinations()) {
+            if (gares.estRealisee(destination)) realisees += destination.getValeur();
+            else manquees += destination.getValeur();
+        }
+        return new Decompte(joueur, pointsRoutes, realisees, manquees, POINTS_GARE * joueur.getNbGares(),
+                CheminLePlusLong.calculer(plateau, joueur), 0);
+    }
+
+    /**
+     * @return une copie du décompte avec le bonus European Express
+     */
+    Decompte avecBonusEuropeExpress() {
+        return new Decompte(joueur, pointsRoutes, pointsDestinationsRealisees, pointsDestinationsManquees,
+                pointsGares, longueurCheminLePlusLong, BONUS_EUROPE_EXPRESS);
+    }
+
+    public Joueur getJoueur() {
+        return joueur;
+    }
+
+    public int getPointsRoutes() {
+        return pointsRoutes;
+    }
+
+    public int getPointsDestinationsRealisees() {
+        return pointsDestinationsRealisees;
+    }
+
+    public int getPointsDestinationsManquees() {
+        return pointsDestinationsManquees;
+    }
+
+    public int getPointsGares() {
+        return pointsGares;
+    }
+
+    public int getLongueurCheminLePlusLong() {
+        return longueurCheminLePlusLong;
+    }
+
+    public int getBonusEuropeExpress() {
+        return bonusEuropeExpress;
+    }
+
+    /**
+     * @return le score final du joueur
+     */
+    public int getTotal() {
+        return pointsRoutes + pointsDestinationsRealisees - pointsDestinationsManquees + pointsGares
+                + bonusEuropeExpress;
+    }
+}
@@ -2,33 +2,94 @@ package fr.umontpellier.iut.rails;
 
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 
+/**
+ * Destination : deux villes à relier et le nombre de points qu'elle vaut. Les
+ * noms des villes sont résolus en identifiants de {@code Topologie.EUROPE} à
+ * la construction (un nom inconnu est une erreur) : vérifier la destination
+ * ne demande ensuite aucune recherche par nom.
+ */
 public class Destination {
+    /**
+     * Destinations "normales" du jeu (les destinations sont immuables et
+     * partagées par toutes les parties)
+     */
+    private static final List<Destination> DESTINATIONS_EUROPE = List.copyOf(creerDestinationsEurope());
+    /**
+     * Destinations "longues" du jeu
+     */
+    private static final List<Destination> DESTINATIONS_LONGUES_EUROPE = List.copyOf(creerDestinationsLonguesEurope());
+
     /**
      * Ville de départ
      */
-    private String ville1;
+    private final String ville1;
     /**
      * Ville d'arrivée
      */
-    private String ville2;
+    private final String ville2;
+    /**
+     * Identifiants des deux villes dans la topologie du plateau
+     */
+    private final int idVille1;
+    private final int idVille2;
     /**
      * Nombre de points que vaut la destination
      */
-    private int valeur;
+    private final int valeur;
 
+    /**
+     * @throws IllegalArgumentException si l'une des villes n'est pas sur le
+     *                                  plateau
+     */
     public Destination(String ville1, String ville2, int valeur) {
         this.ville1 = ville1;
         this.ville2 = ville2;
         this.valeur = valeur;
+        idVille1 = resoudre(ville1);
+        idVille2 = resoudre(ville2);
+    }
+
+    private static int resoudre(String nom) {
+        int id = Topologie.EUROPE.getIdVille(nom);
+        if (id == Topologie.AUCUNE) {
+            throw new IllegalArgumentException("Ville inconnue : " + nom);
+        }
+        return id;
     }
 
-    
     @Override
     public String toString() {
         return getNom();
     }
 
+    public String getVille1() {
+        return ville1;
+    }
+
+    public String getVille2() {
+        return ville2;
+    }
+
+    /**
+     * @return l'identifiant de la ville de départ dans la topologie
+     */
+    public int getIdVille1() {
+        return idVille1;
+    }
+
+    /**
+     * @return l'identifiant de la ville d'arrivée dans la topologie
+     */
+    public int getIdVille2() {
+        return idVille2;
+    }
+
+    public int getValeur() {
+        return valeur;
+    }
+
     public String getNom() {
         return String.format("%s - %s (%d)", ville1, ville2, valeur);
     }
@@ -45,6 +106,17 @@ public class Destination {
      * @return une liste contenant toutes les destinations "normales" du jeu
      */
     public static ArrayList<Destination> makeDestinationsEurope() {
+        return new ArrayList<>(DESTINATIONS_EUROPE);
+    }
+
+    /**
+     * @return une liste contenant toutes les destinations "longues" du jeu
+     */
+    public static ArrayList<Destination> makeDestinationsLonguesEurope() {
+        return new ArrayList<>(DESTINATIONS_LONGUES_EUROPE);
+    }
+
+    private static ArrayList<Destination> creerDestinationsEurope() {
         ArrayList<Destination> destinations = new ArrayList<>();
         destinations.add(new Destination("Athina", "Angora", 5));
         destinations.add(new Destination("Budapest", "Sofia", 5));
@@ -56,7 +128,7 @@ public class Destination {
         destinations.add(new Destination("Zurich", "Budapest", 6));
         destinations.add(new Destination("Warszawa", "Smolensk", 6));
         destinations.add(new Destination("Zagrab", "Brindisi", 6));
-        destinations.add(new Destination("Paris", "Zagreb", 7));
+        destinations.add(new Destination("Paris", "Zagrab", 7));
         destinations.add(new Destination("Brest", "Marseille", 7));
         destinations.add(new Destination("London", "Berlin", 7));
         destinations.add(new Destination("Edinburgh", "Paris", 7));
@@ -74,12 +146,12 @@ public class Destination {
         destinations.add(new Destination("Kyiv", "Sochi", 8));
         destinations.add(new Destination("Madrid", "Zurich", 8));
         destinations.add(new Destination("Berlin", "Bucuresti", 8));
-        destinations.add(new Destination("Bruxelles", "Danzic", 9));
+        destinations.add(new Destination("Bruxelles", "Danzig", 9));
         destinations.add(new Destination("Berlin", "Roma", 9));
         destinations.add(new Destination("Angora", "Kharkov", 10));
         destinations.add(new Destination("Riga", "Bucuresti", 10));
         destinations.add(new Destination("Essen", "Kyiv", 10));
-        destinations.add(new Destination("Venizia", "Constantinople", 10));
+        destinations.add(new Destination("Venezia", "Constantinople", 10));
         destinations.add(new Destination("London", "Wien", 10));
         destinations.add(new Destination("Athina", "Wilno", 11));
         destinations.add(new Destination("Stockholm", "Wien", 11));
@@ -89,12 +161,9 @@ public class Destination {
         return destinations;
     }
 
-    /**
-     * @return une liste contenant toutes les destinations "longues" du jeu
-     */
-    public static ArrayList<Destination> makeDestinationsLonguesEurope() {
+    private static ArrayList<Destination> creerDestinationsLonguesEurope() {
         ArrayList<Destination> destinations = new ArrayList<>();
-        destinations.add(new Destination("Lisboa", "Danzic", 20));
+        destinations.add(new Destination("Lisboa", "Danzig", 20));
         destinations.add(new Destination("Brest", "Petrograd", 20));
         destinations.add(new Destination("Palermo", "Moskva", 20));
         destinations.add(new Destination("Kobenhavn", "Erzurum", 21));
@@ -0,0 +1,170 @@
+package fr.umontpellier.iut.rails;
+
+import java.util.Arrays;
+
+/**
+ * Distances entre toutes les villes pour un joueur : le nombre de wagons qu'il
+ * lui manque pour relier deux villes. Une route libre coûte sa longueur, une
+ * route du joueur ne coûte rien et une route d'un autre joueur est bloquée.
+ * <p>
+ * La matrice des distances (plus courts chemins entre toutes les paires de
+ * villes) est calculée une fois (Floyd-Warshall) puis mise à jour par le
+ * plateau à chaque changement de propriétaire d'une route :
+ * <ul>
+ * <li>une route qui devient moins chère (capturée par le joueur, ou libérée)
+ * ne peut raccourcir un chemin qu'en étant empruntée une fois : la mise à jour
+ * se fait en une passe sur les paires de villes ;</li>
+ * <li>une route qui devient plus chère (capturée par un autre joueur, ou perdue
+ * par le joueur) ne change rien si une autre route entre ses villes est aussi
+ * bon marché, ou si un chemin plus court que la route relie déjà ses villes ;
+ * sinon la matrice est recalculée à la prochaine requête.</li>
+ * </ul>
+ * Une requête est une lecture dans la matrice.
+ * <p>
+ * Comme {@code Ville} et {@code Route}, un objet {@code Distances} est une vue
+ * (un plateau et un joueur) : il reste valable pendant toute la partie.
+ */
+public class Distances {
+    /**
+     * Distance entre deux villes qui ne peuvent pas être reliées (assez petite
+     * pour que la somme de deux distances ne déborde pas)
+     */
+    static final int INFINI = Integer.MAX_VALUE / 2;
+
+    private final Plateau plateau;
+    private final Joueur joueur;
+    private final int nbVilles;
+    /**
+     * Distance entre les villes {@code i} et {@code j} à l'indice
+     * {@code i * nbVilles + j} (matrice symétrique)
+     */
+    private final int[] distances;
+    /**
+     * Indique si la matrice doit être recalculée (une route est devenue plus
+     * chère, ou les possessions ont été restaurées)
+     */
+    private boolean aReconstruire;
+
+    Distances(Plateau plateau, Joueur joueur) {
+        this.plateau = plateau;
+        this.joueur = joueur;
+        nbVilles = plateau.getTopologie().getNbVilles();
+        distances = new int[nbVilles * nbVilles];
+        aReconstruire = true;
+    }
+
+    public Joueur getJoueur() {
+        return joueur;
+    }
+
+    /**
+     * @return le nombre de wagons qu'il manque au joueur pour relier les deux
+     * villes ({@code 0} si elles sont déjà reliées par ses routes), ou
+     * {@code -1} si elles ne peuvent plus être reliées
+     */
+    public int getDistance(Ville ville1, Ville ville2) {
+        int distance = getDistance(ville1.getId(), ville2.getId());
+        return distance >= INFINI ? -1 : distance;
+    }
+
+    /**
+     * @return la distance entre les villes d'identifiants donnés, ou
+     * {@code INFINI}
+     */
+    int getDistance(int ville1, int ville2) {
+        if (aReconstruire) {
+            reconstruire();
+        }
+        return distances[ville1 * nbVilles + ville2];
+    }
+
+    /**
+     * Demande le recalcul de la matrice à la prochaine requête
+     */
+    void invalider() {
+        aReconstruire = true;
+    }
+
+    /**
+     * Met à jour les distances après le changement de coût d'une route pour le
+     * joueur
+     *
+     * @param route       l'identifiant de la route
+     * @param ancienCout  le coût de la route avant le changement
+     * @param nouveauCout le coût de la route après le changement
+     */
+    void routeModifiee(int route, int ancienCout, int nouveauCout) {
+        if (aReconstruire || ancienCout == nouveauCout) {
+            return;
+        }
+        Topologie topologie = plateau.getTopologie();
+        int ville1 = topologie.getVille1(route);
+        int ville2 = topologie.getVille2(route);
+        if (nouveauCout < ancienCout) {
+            raccourcir(ville1, ville2, nouveauCout);
+        } else if (ancienCout <= distances[ville1 * nbVilles + ville2]
+                && plateau.getCoutArete(joueur, ville1, ville2) > ancienCout) {
+            // la route était peut-être sur un plus court chemin
+            aReconstruire = true;
+        }
+    }
+
+    /**
+     * Prend en compte une arête de coût donné entre deux villes : un plus
+     * court chemin qui l'emprunte la traverse une seule fois
+     */
+    private void raccourcir(int ville1, int ville2, int cout) {
+        if (distances[ville1 * nbVilles + ville2] <= cout) {
+            return;
+        }
+        int[] depuis1 = Arrays.copyOfRange(distances, ville1 * nbVilles, (ville1 + 1) * nbVilles);
+        int[] depuis2 = Arrays.copyOfRange(distances, ville2 * nbVilles, (ville2 + 1) * nbVilles);
+        for (int i = 0; i < nbVilles; i++) {
+            int vers1 = depuis1[i] < INFINI ? depuis1[i] + cout : INFINI;
+            int vers2 = depuis2[i] < INFINI ? depuis2[i] + cout : INFINI;
+            if (vers1 == INFINI && vers2 == INFINI) continue;
+            int ligne = i * nbVilles;
+            for (int j = 0; j < nbVilles; j++) {
+                int distance = Math.min(vers1 + depuis2[j], vers2 + depuis1[j]);
+                if (distance < distances[ligne + j]) {
+                    distances[ligne + j] = distance;
+                }
+            }
+        }
+    }
+
+    /**
+     * Recalcule toute la matrice (Floyd-Warshall)
+     */
+    private void reconstruire() {
+        Arrays.fill(distances, INFINI);
+        for (int i = 0; i < nbVilles; i++) {
+            distances[i * nbVilles + i] = 0;
+        }
+        Topologie topologie = plateau.getTopologie();
+        for (int route = 0; route < topologie.getNbRoutes(); route++) {
+            int cout = plateau.getCoutRoute(joueur, route);
+            int ville1 = topologie.getVille1(route);
+            int ville2 = topologie.getVille2(route);
+            if (cout < distances[ville1 * nbVilles + ville2]) {
+                distances[ville1 * nbVilles + ville2] = cout;
+                distances[ville2 * nbVilles + ville1] = cout;
+            }
+        }
+        for (int k = 0; k < nbVilles; k++) {
+            int ligneK = k * nbVilles;
+            for (int i = 0; i < nbVilles; i++) {
+                int versK = distances[i * nbVilles + k];
+                if (versK >= INFINI) continue;
+                int ligne = i * nbVilles;
+                for (int j = 0; j < nbVilles; j++) {
+                    int distance = versK + distances[ligneK + j];
+                    if (distance < distances[ligne + j]) {
+                        distances[ligne + j] = distance;
+                    }
+                }
+            }
+        }
+        aReconstruire = false;
+    }
+}
@@ -0,0 +1,233 @@
+package fr.umontpellier.iut.rails;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Sérialise l'état d'un jeu au format binaire compact (protocole proposé aux
+ * clients qui ne lisent pas le JSON, comme les bots).
+ * <p>
+ * Les noms (villes, routes, joueurs, couleurs) ne sont envoyés qu'une fois, dans
+ * un dictionnaire : les états ne contiennent ensuite que des indices. Une ville
+ * ou une route est désignée par son identifiant (sa position dans la liste du
+ * plateau, {@code Jeu.getVilles()}, {@code Jeu.getRoutes()}), un joueur par sa position
+ * dans {@code Jeu.getJoueurs()} et une carte par l'ordinal de sa
+ * {@code CouleurWagon}. Les mains sont envoyées sous forme de nombres de cartes
+ * par couleur.
+ * <p>
+ * Les entiers sont en big-endian et les chaînes au format de
+ * {@code DataOutputStream.writeUTF} (longueur sur 2 octets puis UTF-8
+ * modifié) : un client Java peut tout lire avec un {@code DataInputStream}.
+ * Chaque trame commence par son type (1 octet) :
+ * <pre>
+ * DICTIONNAIRE (0)
+ *   u8 nbCouleurs,  nbCouleurs × str nomCouleurWagon
+ *   u16 nbVilles,   nbVilles × str nom
+ *   u16 nbRoutes,   nbRoutes × (str nom, u16 ville1, u16 ville2, u8 longueur,
+ *                               u8 couleur, u8 type (0 route, 1 tunnel, 2 ferry),
+ *                               u8 nbLocomotives)
+ *   u8 nbJoueurs,   nbJoueurs × (str nom, str couleur)
+ * ETAT (1)
+ *   i64 version
+ *   str instruction, u8 nbBoutons × str bouton, u8 joueurCourant, u8 peutPasser
+ *   u16 nbVilles × u8 proprietaire (AUCUN = 255)
+ *   u16 nbRoutes × u8 proprietaire
+ *   u8 nbJoueurs × (i16 score, u8 nbGares, u8 nbWagons,
+ *                   u8 nbDestinations × (u16 ville1, u16 ville2, u8 valeur),
+ *                   nbCouleurs × u8 cartesWagon, nbCouleurs × u8 cartesWagonPosees)
+ *   u16 pileCartesWagon, u16 pileDestinations, nbCouleurs × u8 defausseCartesWagon,
+ *   u8 nbCartesVisibles × u8 couleur
+ *   u8 nbMessages × str log
+ * </pre>
+ */
+public class EcrivainBinaire {
+    public static final byte TRAME_DICTIONNAIRE = 0;
+    public static final byte TRAME_ETAT = 1;
+    /**
+     * Indice désignant l'absence de joueur (ville ou route sans propriétaire)
+     */
+    public static final int AUCUN = 0xFF;
+    /**
+     * Indice désignant une ville inconnue
+     */
+    public static final int AUCUNE_VILLE = 0xFFFF;
+    private static final CouleurWagon[] COULEURS = CouleurWagon.values();
+
+    private final Jeu jeu;
+    private final ByteArrayOutputStream tampon;
+    private final DataOutputStream sortie;
+    private final int[] compteurCartes;
+    private final byte[] dictionnaire;
+
+    public EcrivainBinaire(Jeu jeu) {
+        this.jeu = jeu;
+        tampon = new ByteArrayOutputStream(1024);
+        sortie = new DataOutputStream(tampon);
+        compteurCartes = new int[COULEURS.length];
+        try {
+            dictionnaire = ecrireDictionnaire();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * @return la trame contenant le dictionnaire du jeu (elle ne change pas au
+     *         cours de la partie)
+     */
+    public byte[] getDictionnaire() {
+        return dictionnaire;
+    }
+
+    private byte[] ecrireDictionnaire() throws IOException {
+        tampon.reset();
+        sortie.writeByte(TRAME_DICTIONNAIRE);
+        sortie.writeByte(COULEURS.length);
+        for (CouleurWagon couleur : COULEURS) {
+            sortie.writeUTF(couleur.name());
+        }
+        List<Ville> villes = jeu.getVilles();
+        sortie.writeShort(villes.size());
+        for (Ville ville : villes) {
+            sortie.writeUTF(ville.getNom());
+        }
+        List<Route> routes = jeu.getRoutes();
+        sortie.writeShort(routes.size());
+        for (Route route : routes) {
+            sortie.writeUTF(route.getNom());
+            sortie.writeShort(route.getVille1().getId());
+            sortie.writeShort(route.getVille2().getId());
+            sortie.writeByte(route.getLongueur());
+            sortie.writeByte(route.getCouleur().ordinal());
+            if (route instanceof Ferry ferry) {
+                sortie.writeByte(2);
+                sortie.writeByte(ferry.getNbLocomotives());
+            } else {
+                sortie.writeByte(route instanceof Tunnel ? 1 : 0);
+                sortie.writeByte(0);
+            }
+        }
+        List<Joueur> joueurs = jeu.getJoueurs();
+        sortie.writeByte(joueurs.size());
+        for (Joueur joueur : joueurs) {
+            sortie.writeUTF(joueur.getNom());
+            sortie.writeUTF(joueur.getCouleur().name());
+        }
+        return tampon.toByteArray();
+    }
+
+    /**
+     * Écrit l'état courant du jeu
+     *
+     * @param version     numéro de version de l'état
+     * @param instruction l'instruction qui est donnée au joueur
+     * @param boutons     labels des choix proposés s'il y en a
+     * @param peutPasser  indique si le joueur peut passer sans faire de choix
+     * @return la trame contenant l'état du jeu
+     */
+    public byte[] ecrire(long version, String instruction, Collection<String> boutons, boolean peutPasser) {
+        try {
+            tampon.reset();
+            sortie.writeByte(TRAME_ETAT);
+            sortie.writeLong(version);
+
+            sortie.writeUTF(instruction);
+            sortie.writeByte(boutons.size());
+            for (String bouton : boutons) {
+                sortie.writeUTF(bouton);
+            }
+            sortie.writeByte(indiceJoueur(jeu.getJoueurCourant()));
+            sortie.writeBoolean(peutPasser);
+
+            List<Ville> villes = jeu.getVilles();
+            sortie.writeShort(villes.size());
+            for (int i = 0; i < villes.size(); i++) {
+                sortie.writeByte(indiceJoueur(villes.get(i).getProprietaire()));
+            }
+            List<Route> routes = jeu.getRoutes();
+            sortie.writeShort(routes.size());
+            for (int i = 0; i < routes.size(); i++) {
+                sortie.writeByte(indiceJoueur(routes.get(i).getProprietaire()));
+            }
+
+            List<Joueur> joueurs = jeu.getJoueurs();
+            sortie.writeByte(joueurs.size());
+            for (int i = 0; i < joueurs.size(); i++) {
+                ecrireJoueur(joueurs.get(i));
+            }
+
+            sortie.writeShort(jeu.getPileCartesWagon().size());
+            sortie.writeShort(jeu.getPileDestinations().size());
+            ecrireNbCartes(jeu.getDefausseCartesWagon());
+            List<CouleurWagon> visibles = jeu.getCartesWagonVisibles();
+            sortie.writeByte(visibles.size());
+            for (int i = 0; i < visibles.size(); i++) {
+                sortie.writeByte(visibles.get(i).ordinal());
+            }
+
+            List<String> log = jeu.getLog();
+            sortie.writeByte(log.size());
+            for (int i = 0; i < log.size(); i++) {
+                sortie.writeUTF(log.get(i));
+            }
+            return tampon.toByteArray();
+        } catch (IOException e) {
+            // le tampon est en mémoire, aucune écriture ne peut échouer
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void ecrireJoueur(Joueur joueur) throws IOException {
+        sortie.writeShort(joueur.getScore());
+        sortie.writeByte(joueur.getNbGares());
+        sortie.writeByte(joueur.getNbWagons());
+        List<Destination> destinations = joueur.getDestinations();
+        sortie.writeByte(destinations.size());
+        for (int i = 0; i < destinations.size(); i++) {
+            Destination destination = destinations.get(i);
+            sortie.writeShort(idVille(destination.getVille1()));
+            sortie.writeShort(idVille(destination.getVille2()));
+            sortie.writeByte(destination.getValeur());
+        }
+        ecrireNbCartes(joueur.getCartesWagon());
+        ecrireNbCartes(joueur.getCartesWagonPosees());
+    }
+
+    /**
+     * Écrit le nombre de cartes de chaque couleur d'une liste de cartes
+     */
+    private void ecrireNbCartes(List<CouleurWagon> cartes) throws IOException {
+        for (int i = 0; i < cartes.size(); i++) {
+            compteurCartes[cartes.get(i).ordinal()]++;
+        }
+        for (int c = 0; c < compteurCartes.length; c++) {
+            sortie.writeByte(compteurCartes[c]);
+            compteurCartes[c] = 0;
+        }
+    }
+
+    /**
+     * @return l'identifiant de la ville portant ce nom (ou AUCUNE_VILLE)
+     */
+    private int idVille(String nom) {
+        Ville ville = jeu.getPlateau().getVille(nom);
+        return ville == null ? AUCUNE_VILLE : ville.getId();
+    }
+
+    private int indiceJoueur(Joueur joueur) {
+        if (joueur == null) {
+            return AUCUN;
+        }
+        List<Joueur> joueurs = jeu.getJoueurs();
+        for (int i = 0; i < joueurs.size(); i++) {
+            if (joueurs.get(i) == joueur) {
+                return i;
+            }
+        }
+        return AUCUN;
+    }
+}
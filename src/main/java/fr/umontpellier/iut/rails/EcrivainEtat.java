@@ -0,0 +1,315 @@
+package fr.umontpellier.iut.rails;
+
+import com.google.gson.stream.JsonWriter;
+import fr.umontpellier.iut.gui.EtatPartie;
+
+import java.io.CharArrayWriter;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Sérialise l'état d'un jeu (le contenu envoyé aux clients à chaque prompt).
+ * <p>
+ * L'état est écrit directement en JSON dans un tampon réutilisé d'un prompt à
+ * l'autre, sans construire d'objets intermédiaires ({@code asPOJO}). Chaque
+ * fragment (ville, route, joueur, prompt, piles, log) est comparé au fragment
+ * correspondant de l'état précédent : s'il n'a pas changé, la chaîne de l'état
+ * précédent est réutilisée, seuls les fragments modifiés sont donc alloués.
+ * <p>
+ * Les noms des villes et des routes ne changent pas au cours de la partie : ils
+ * sont échappés une seule fois, à la création de l'écrivain.
+ * <p>
+ * Sur demande, l'état contient aussi sa forme binaire (écrite par
+ * {@code EcrivainBinaire}), pour les clients qui utilisent le protocole
+ * binaire : elle n'est écrite que si un client de la partie la lit.
+ */
+public class EcrivainEtat {
+    private static final CouleurWagon[] COULEURS = CouleurWagon.values();
+
+    /**
+     * Tampon dans lequel les fragments sont écrits (son contenu est accessible
+     * sans copie)
+     */
+    private static class Tampon extends CharArrayWriter {
+        private Tampon() {
+            super(4096);
+        }
+
+        /**
+         * Teste si la portion [debut, fin[ du tampon est identique à la chaîne donnée
+         */
+        private boolean contientEgal(int debut, int fin, String chaine) {
+            if (chaine == null || chaine.length() != fin - debut) {
+                return false;
+            }
+            for (int i = debut; i < fin; i++) {
+                if (buf[i] != chaine.charAt(i - debut)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private String extraire(int debut, int fin) {
+            return new String(buf, debut, fin - debut);
+        }
+    }
+
+    private final Jeu jeu;
+    private final Tampon tampon;
+    private final JsonWriter writer;
+    private final EcrivainBinaire ecrivainBinaire;
+    /**
+     * Noms des villes et des routes, déjà échappés en JSON
+     */
+    private final String[] nomsVilles;
+    private final String[] nomsRoutes;
+    /**
+     * Compteur de cartes par couleur, réutilisé pour écrire les mains triées
+     */
+    private final int[] compteurCartes;
+    /**
+     * Fragments du dernier état écrit
+     */
+    private String prompt;
+    private String[] villes;
+    private String[] routes;
+    private String[] joueurs;
+    private String piles;
+    private String log;
+
+    public EcrivainEtat(Jeu jeu) {
+        this.jeu = jeu;
+        tampon = new Tampon();
+        writer = new JsonWriter(tampon);
+        // chaque fragment est écrit comme une valeur JSON de premier niveau
+        writer.setLenient(true);
+        ecrivainBinaire = new EcrivainBinaire(jeu);
+        compteurCartes = new int[COULEURS.length];
+
+        List<Ville> listeVilles = jeu.getVilles();
+        nomsVilles = new String[listeVilles.size()];
+        for (int i = 0; i < nomsVilles.length; i++) {
+            nomsVilles[i] = echapper(listeVilles.get(i).getNom());
+        }
+        List<Route> listeRoutes = jeu.getRoutes();
+        nomsRoutes = new String[listeRoutes.size()];
+        for (int i = 0; i < nomsRoutes.length; i++) {
+            nomsRoutes[i] = echapper(listeRoutes.get(i).getNom());
+        }
+        villes = new String[nomsVilles.length];
+        routes = new String[nomsRoutes.length];
+        joueurs = new String[jeu.getJoueurs().size()];
+    }
+
+    /**
+     * Écrit l'état courant du jeu, sans forme binaire
+     *
+     * @param version     numéro de version de l'état
+     * @param instruction l'instruction qui est donnée au joueur
+     * @param boutons     labels des choix proposés s'il y en a
+     * @param peutPasser  indique si le joueur peut passer sans faire de choix
+     * @return l'état du jeu
+     */
+    public EtatPartie ecrire(long version, String instruction, Collection<String> boutons, boolean peutPasser) {
+        return ecrire(version, instruction, boutons, peutPasser, false);
+    }
+
+    /**
+     * Écrit l'état courant du jeu
+     *
+     * @param version     numéro de version de l'état
+     * @param instruction l'instruction qui est donnée au joueur
+     * @param boutons     labels des choix proposés s'il y en a
+     * @param peutPasser  indique si le joueur peut passer sans faire de choix
+     * @param binaire     indique si l'état doit aussi avoir sa forme binaire
+     * @return l'état du jeu
+     */
+    public EtatPartie ecrire(long version, String instruction, Collection<String> boutons, boolean peutPasser,
+                             boolean binaire) {
+        try {
+            tampon.reset();
+
+            int debut = tampon.size();
+            ecrirePrompt(instruction, boutons, peutPasser);
+            prompt = fragment(debut, prompt);
+
+            String[] nouvellesVilles = new String[villes.length];
+            List<Ville> listeVilles = jeu.getVilles();
+            for (int i = 0; i < nouvellesVilles.length; i++) {
+                debut = tampon.size();
+                ecrireProprietaire(nomsVilles[i], listeVilles.get(i).getProprietaire());
+                nouvellesVilles[i] = fragment(debut, villes[i]);
+            }
+            villes = nouvellesVilles;
+
+            String[] nouvellesRoutes = new String[routes.length];
+            List<Route> listeRoutes = jeu.getRoutes();
+            for (int i = 0; i < nouvellesRoutes.length; i++) {
+                debut = tampon.size();
+                ecrireProprietaire(nomsRoutes[i], listeRoutes.get(i).getProprietaire());
+                nouvellesRoutes[i] = fragment(debut, routes[i]);
+            }
+            routes = nouvellesRoutes;
+
+            String[] nouveauxJoueurs = new String[joueurs.length];
+            List<Joueur> listeJoueurs = jeu.getJoueurs();
+            for (int i = 0; i < nouveauxJoueurs.length; i++) {
+                debut = tampon.size();
+                ecrireJoueur(listeJoueurs.get(i));
+                nouveauxJoueurs[i] = fragment(debut, joueurs[i]);
+            }
+            joueurs = nouveauxJoueurs;
+
+            debut = tampon.size();
+            ecrirePiles();
+            piles = fragment(debut, piles);
+
+            debut = tampon.size();
+            writer.beginArray();
+            List<String> messages = jeu.getLog();
+            for (int i = 0; i < messages.size(); i++) {
+                writer.value(messages.get(i));
+            }
+            writer.endArray();
+            log = fragment(debut, log);
+
+            if (!binaire) {
+                return new EtatPartie(jeu.getEpoque(), version, prompt, villes, routes, joueurs, piles, log,
+                        null, null);
+            }
+            return new EtatPartie(jeu.getEpoque(), version, prompt, villes, routes, joueurs, piles, log,
+                    ecrivainBinaire.getDictionnaire(),
+                    ecrivainBinaire.ecrire(version, instruction, boutons, peutPasser));
+        } catch (IOException e) {
+            // le tampon est en mémoire, aucune écriture ne peut échouer
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Renvoie le fragment écrit depuis la position {@code debut} du tampon, en
+     * réutilisant le fragment précédent s'il est identique
+     */
+    private String fragment(int debut, String precedent) throws IOException {
+        writer.flush();
+        int fin = tampon.size();
+        return tampon.contientEgal(debut, fin, precedent) ? precedent : tampon.extraire(debut, fin);
+    }
+
+    private void ecrirePrompt(String instruction, Collection<String> boutons, boolean peutPasser) throws IOException {
+        writer.beginObject();
+        writer.name("instruction").value(instruction);
+        writer.name("boutons").beginArray();
+        for (String bouton : boutons) {
+            writer.value(bouton);
+        }
+        writer.endArray();
+        writer.name("nomJoueurCourant").value(jeu.getJoueurCourant().getNom());
+        writer.name("peutPasser").value(peutPasser);
+        writer.endObject();
+    }
+
+    private void ecrireProprietaire(String nom, Joueur proprietaire) throws IOException {
+        writer.beginObject();
+        writer.name("nom").jsonValue(nom);
+        if (proprietaire != null) {
+            writer.name("proprietaire").value(proprietaire.getCouleur().name());
+        }
+        writer.endObject();
+    }
+
+    private void ecrireJoueur(Joueur joueur) throws IOException {
+        writer.beginObject();
+        writer.name("nom").value(joueur.getNom());
+        writer.name("couleur").value(joueur.getCouleur().name());
+        writer.name("score").value(joueur.getScore());
+        writer.name("nbGares").value(joueur.getNbGares());
+        writer.name("nbWagons").value(joueur.getNbWagons());
+        writer.name("estJoueurCourant").value(joueur == jeu.getJoueurCourant());
+        writer.name("destinations").beginArray();
+        List<Destination> destinations = joueur.getDestinations();
+        for (int i = 0; i < destinations.size(); i++) {
+            Destination destination = destinations.get(i);
+            writer.beginObject();
+            writer.name("ville1").value(destination.getVille1());
+            writer.name("ville2").value(destination.getVille2());
+            writer.name("valeur").value(destination.getValeur());
+            writer.endObject();
+        }
+        writer.endArray();
+        writer.name("cartesWagon");
+        ecrireCartesTriees(joueur.getCartesWagon());
+        writer.name("cartesWagonPosees");
+        ecrireCartesTriees(joueur.getCartesWagonPosees());
+        List<Decompte> decomptes = jeu.getDecomptes();
+        if (decomptes != null) {
+            ecrireDecompte(decomptes.get(jeu.getJoueurs().indexOf(joueur)));
+        }
+        writer.endObject();
+    }
+
+    private void ecrireDecompte(Decompte decompte) throws IOException {
+        writer.name("decompte").beginObject();
+        writer.name("routes").value(decompte.getPointsRoutes());
+        writer.name("destinationsRealisees").value(decompte.getPointsDestinationsRealisees());
+        writer.name("destinationsManquees").value(decompte.getPointsDestinationsManquees());
+        writer.name("gares").value(decompte.getPointsGares());
+        writer.name("cheminLePlusLong").value(decompte.getLongueurCheminLePlusLong());
+        writer.name("bonusEuropeExpress").value(decompte.getBonusEuropeExpress());
+        writer.name("total").value(decompte.getTotal());
+        writer.endObject();
+    }
+
+    private void ecrirePiles() throws IOException {
+        writer.beginObject();
+        writer.name("pileCartesWagon").value(jeu.getPileCartesWagon().size());
+        writer.name("pileDestinations").value(jeu.getPileDestinations().size());
+        writer.name("defausseCartesWagon");
+        ecrireCartes(jeu.getDefausseCartesWagon());
+        writer.name("cartesWagonVisibles");
+        ecrireCartes(jeu.getCartesWagonVisibles());
+        writer.endObject();
+    }
+
+    private void ecrireCartes(List<CouleurWagon> cartes) throws IOException {
+        writer.beginArray();
+        for (int i = 0; i < cartes.size(); i++) {
+            writer.value(cartes.get(i).name());
+        }
+        writer.endArray();
+    }
+
+    /**
+     * Écrit une liste de cartes triée selon l'ordre des couleurs (tri par
+     * dénombrement, sans copie de la liste)
+     */
+    private void ecrireCartesTriees(List<CouleurWagon> cartes) throws IOException {
+        for (int i = 0; i < cartes.size(); i++) {
+            compteurCartes[cartes.get(i).ordinal()]++;
+        }
+        writer.beginArray();
+        for (int c = 0; c < compteurCartes.length; c++) {
+            for (; compteurCartes[c] > 0; compteurCartes[c]--) {
+                writer.value(COULEURS[c].name());
+            }
+        }
+        writer.endArray();
+    }
+
+    /**
+     * @return la chaîne donnée sous forme de littéral JSON
+     */
+    private static String echapper(String chaine) {
+        try {
+            StringWriter resultat = new StringWriter();
+            new JsonWriter(resultat).value(chaine).close();
+            return resultat.toString();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
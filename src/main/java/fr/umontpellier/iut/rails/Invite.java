@@ -0,0 +1,103 @@
+package fr.umontpellier.iut.rails;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * Choix attendu d'un joueur : l'instruction affichée, les réponses valides et
+ * la suite de la partie à exécuter avec la réponse.
+ * <p>
+ * Le jeu ne bloque jamais en attendant un choix : il garde l'invite courante
+ * ({@code Jeu.getInviteCourante()}) et reprend lorsqu'une réponse valide lui est
+ * donnée ({@code Jeu.appliquer}).
+ */
+public class Invite {
+    private final Joueur joueur;
+    private final String instruction;
+    private final List<String> choix;
+    private final List<String> boutons;
+    private final boolean peutPasser;
+    /**
+     * Réponses valides (choix et boutons, sans doublons)
+     */
+    private final Set<String> reponses;
+    /**
+     * Autres réponses valides, qui ne peuvent pas être énumérées (par exemple
+     * un paiement de plusieurs cartes à la fois)
+     */
+    private final Predicate<String> autresReponses;
+    /**
+     * Suite de la partie, exécutée avec la réponse du joueur
+     */
+    private final Consumer<String> suite;
+
+    Invite(Joueur joueur, String instruction, Collection<String> choix, Collection<String> boutons,
+           boolean peutPasser, Consumer<String> suite) {
+        this(joueur, instruction, choix, boutons, peutPasser, reponse -> false, suite);
+    }
+
+    Invite(Joueur joueur, String instruction, Collection<String> choix, Collection<String> boutons,
+           boolean peutPasser, Predicate<String> autresReponses, Consumer<String> suite) {
+        this.joueur = joueur;
+        this.instruction = instruction;
+        // copies : les listes de l'appelant peuvent être modifiées avant la réponse
+        this.choix = List.copyOf(choix);
+        this.boutons = List.copyOf(boutons);
+        this.peutPasser = peutPasser;
+        this.autresReponses = autresReponses;
+        this.suite = suite;
+        reponses = new HashSet<>(this.choix);
+        reponses.addAll(this.boutons);
+    }
+
+    /**
+     * @return le joueur qui doit répondre
+     */
+    public Joueur getJoueur() {
+        return joueur;
+    }
+
+    public String getInstruction() {
+        return instruction;
+    }
+
+    public List<String> getChoix() {
+        return choix;
+    }
+
+    public List<String> getBoutons() {
+        return boutons;
+    }
+
+    public boolean peutPasser() {
+        return peutPasser;
+    }
+
+    /**
+     * @return vrai si la réponse est un des choix, un des boutons, la chaîne
+     * vide lorsque le joueur peut passer, ou une des autres réponses acceptées
+     * par l'invite
+     */
+    public boolean accepte(String reponse) {
+        return reponses.contains(reponse) || (peutPasser && "".equals(reponse)) || autresReponses.test(reponse);
+    }
+
+    /**
+     * @return les réponses valides énumérables (choix et boutons, sans
+     * doublons)
+     */
+    Set<String> getReponses() {
+        return reponses;
+    }
+
+    /**
+     * Exécute la suite de la partie avec la réponse (supposée valide)
+     */
+    void repondre(String reponse) {
+        suite.accept(reponse);
+    }
+}
@@ -1,15 +1,20 @@
 package fr.umontpellier.iut.rails;
 
-import com.google.gson.Gson;
 import fr.umontpellier.iut.gui.GameServer;
 
+import java.security.SecureRandom;
 import java.util.*;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.LinkedBlockingQueue;
-import java.util.stream.Collectors;
+import java.util.function.Consumer;
 
 public class Jeu implements Runnable {
 
+    /**
+     * Identifiant de la partie à laquelle le jeu est rattaché sur le serveur
+     */
+    private String idPartie;
+
     /**
      * Liste des joueurs
      */
@@ -20,6 +25,11 @@ public class Jeu implements Runnable {
      */
     private Joueur joueurCourant;
 
+    /**
+     * Plateau de jeu (villes, routes et leurs index)
+     */
+    private Plateau plateau;
+
     /**
      * Liste des villes représentées sur le plateau de jeu
      */
@@ -33,27 +43,34 @@ public class Jeu implements Runnable {
     /**
      * Pile de pioche (face cachée)
      */
-    private List<CouleurWagon> pileCartesWagon;
+    private PiocheCartesWagon pileCartesWagon;
 
     /**
      * Cartes de la pioche face visible (normalement il y a 5 cartes face visible)
      */
-    private List<CouleurWagon> cartesWagonVisibles;
+    private PiocheCartesWagon cartesWagonVisibles;
 
     /**
      * Pile de cartes qui ont été défaussée au cours de la partie
      */
-    private List<CouleurWagon> defausseCartesWagon;
+    private PiocheCartesWagon defausseCartesWagon;
 
     /**
      * Pile des cartes "Destination" (uniquement les destinations "courtes", les
      * destinations "longues" sont distribuées au début de la partie et ne peuvent
      * plus être piochées après)
      */
-    private List<Destination> pileDestinations;
+    private Pioche<Destination> pileDestinations;
+
+    /**
+     * Nombre maximal de remplacements successifs des 5 cartes wagon visibles
+     * lorsque 3 locomotives sont visibles
+     */
+    private static final int NB_MAX_REMPLACEMENTS_VISIBLES = 10;
 
     /**
-     * File d'attente des instructions recues par le serveur
+     * File d'attente des instructions lues par {@code lireLigne} (exécution
+     * bloquante, {@code run}) ; les parties du serveur ont leur propre file
      */
     private BlockingQueue<String> inputQueue;
 
@@ -67,7 +84,54 @@ public class Jeu implements Runnable {
      */
     private List<String> savedLog;
 
+    /**
+     * Numéro de version du dernier état envoyé aux clients (incrémenté à chaque
+     * prompt)
+     */
+    private long versionEtat;
+
+    /**
+     * Nombre aléatoire propre à cette instance de jeu, envoyé avec les états :
+     * les versions recommencent à 0 dans chaque instance, et une partie peut
+     * être recréée sous le même identifiant. Un client qui se reconnecte avec
+     * une version d'une autre instance reçoit l'état complet.
+     */
+    private final long epoque;
+
+    /**
+     * Écrivain (réutilisé à chaque prompt) de l'état envoyé aux clients
+     */
+    private EcrivainEtat ecrivainEtat;
+
+    /**
+     * Dernier prompt envoyé (pour publier à nouveau l'état, voir
+     * {@code publierEtat})
+     */
+    private String instructionPubliee;
+    private Collection<String> boutonsPublies;
+    private boolean peutPasserPublie;
+
+    /**
+     * Choix attendu d'un joueur (ou {@code null} si aucun choix n'est attendu)
+     */
+    private Invite inviteCourante;
+
+    /**
+     * Indique si la partie est terminée
+     */
+    private boolean terminee;
+
+    /**
+     * Décomptes des points des joueurs en fin de partie (dans l'ordre des
+     * joueurs, {@code null} tant que la partie n'est pas terminée)
+     */
+    private List<Decompte> decomptes;
+
     public Jeu(String[] nomJoueurs) {
+        this(GameServer.PARTIE_PAR_DEFAUT, nomJoueurs);
+    }
+
+    public Jeu(String idPartie, String[] nomJoueurs) {
         /*
          * ATTENTION : Cette méthode est à réécrire.
          * 
@@ -78,15 +142,18 @@ public class Jeu implements Runnable {
          */
 
         // initialisation des entrées/sorties
+        this.idPartie = idPartie;
+        // 53 bits : la valeur est lue sans perte par les clients JavaScript
+        epoque = new SecureRandom().nextLong() & ((1L << 53) - 1);
         inputQueue = new LinkedBlockingQueue<>();
         log = new ArrayList<>();
         savedLog = new ArrayList<>();
 
         // création des cartes
-        pileCartesWagon = new ArrayList<>();
-        cartesWagonVisibles = new ArrayList<>();
-        defausseCartesWagon = new ArrayList<>();
-        pileDestinations = new ArrayList<>();
+        pileCartesWagon = new PiocheCartesWagon();
+        cartesWagonVisibles = new PiocheCartesWagon();
+        defausseCartesWagon = new PiocheCartesWagon();
+        pileDestinations = new Pioche<>();
 
         // création des joueurs
         ArrayList<Joueur.Couleur> couleurs = new ArrayList<>(Arrays.asList(Joueur.Couleur.values()));
@@ -99,9 +166,10 @@ public class Jeu implements Runnable {
         joueurCourant = joueurs.get(0);
 
         // création des villes et des routes
-        Plateau plateau = Plateau.makePlateauEurope();
+        plateau = new Plateau(Topologie.EUROPE, joueurs);
         villes = plateau.getVilles();
         routes = plateau.getRoutes();
+        ecrivainEtat = new EcrivainEtat(this);
 
         //Initialisation des piles de cartes et distribution de cartes aux joueurs.
         preparerPartie();
@@ -124,16 +192,16 @@ public class Jeu implements Runnable {
         for (int i = 0; i < 14; i++) {
             pileCartesWagon.add(CouleurWagon.LOCOMOTIVE);
         }
-        Collections.shuffle(pileCartesWagon);
+        pileCartesWagon.melanger();
         pileDestinations.addAll(Destination.makeDestinationsEurope());
-        Collections.shuffle(pileDestinations);
+        pileDestinations.melanger();
         do {
             defausseCartesWagon.addAll(cartesWagonVisibles);
             cartesWagonVisibles.clear();
             for (int i = 0; i < 5; i++) {
                 cartesWagonVisibles.add(piocherCarteWagon());
             }
-        } while (Collections.frequency(cartesWagonVisibles, CouleurWagon.LOCOMOTIVE) >= 3);
+        } while (cartesWagonVisibles.compter(CouleurWagon.LOCOMOTIVE) >= 3);
         for (int i = 0; i < 4; i++) {
             for (Joueur j : joueurs) {
                 j.piocherCarteWagon();
@@ -141,6 +209,18 @@ public class Jeu implements Runnable {
         }
     }
 
+    public String getIdPartie() {
+        return idPartie;
+    }
+
+    /**
+     * @return le nombre aléatoire qui distingue cette instance de jeu des
+     *         autres instances (voir {@code EtatPartie.getEpoque})
+     */
+    public long getEpoque() {
+        return epoque;
+    }
+
     public List<CouleurWagon> getPileCartesWagon() {
         return pileCartesWagon;
     }
@@ -149,6 +229,10 @@ public class Jeu implements Runnable {
         return cartesWagonVisibles;
     }
 
+    public Plateau getPlateau() {
+        return plateau;
+    }
+
     public List<Ville> getVilles() {
         return villes;
     }
@@ -170,54 +254,204 @@ public class Jeu implements Runnable {
     }
 
     /**
-     * Exécute la partie
+     * @return les messages d'information du jeu affichés à l'écran
+     */
+    public List<String> getLog() {
+        return log;
+    }
+
+    /**
+     * Exécute la partie jusqu'à son terme, en lisant les réponses des joueurs
+     * avec {@code lireLigne} (bloquant). Les réponses invalides sont ignorées.
      */
     public void run() {
-        /*
-         * ATTENTION : Cette méthode est à réécrire.
-         * 
-         * Cette méthode doit :
-         * - faire choisir à chaque joueur les destinations initiales qu'il souhaite
-         * garder : on pioche 3 destinations "courtes" et 1 destination "longue", puis
-         * le
-         * joueur peut choisir des destinations à défausser ou passer s'il ne veut plus
-         * en défausser. Il doit en garder au moins 2.
-         * - exécuter la boucle principale du jeu qui fait jouer le tour de chaque
-         * joueur à tour de rôle jusqu'à ce qu'un des joueurs n'ait plus que 2 wagons ou
-         * moins
-         * - exécuter encore un dernier tour de jeu pour chaque joueur après
-         */
+        demarrer();
+        while (inviteCourante != null) {
+            appliquer(lireLigne());
+        }
+    }
 
-        //Choix des destinations
-        List<Destination> destinationsLongues = new ArrayList<>();
-        destinationsLongues.addAll(Destination.makeDestinationsLonguesEurope());
-        Collections.shuffle(destinationsLongues);
+    /**
+     * Démarre la partie sans bloquer : la partie avance jusqu'au premier choix
+     * attendu d'un joueur ({@code getInviteCourante}), puis chaque réponse
+     * donnée à {@code appliquer} la fait avancer jusqu'au choix suivant.
+     * <p>
+     * Déroulement de la partie :
+     * - chaque joueur choisit les destinations initiales qu'il souhaite garder :
+     * on pioche 3 destinations "courtes" et 1 destination "longue", puis le joueur
+     * peut choisir des destinations à défausser ou passer s'il ne veut plus en
+     * défausser. Il doit en garder au moins 2.
+     * - chaque joueur joue son tour à tour de rôle jusqu'à ce qu'un des joueurs
+     * n'ait plus que 2 wagons ou moins
+     * - chaque joueur joue encore un dernier tour
+     */
+    public void demarrer() {
+        Pioche<Destination> destinationsLongues = new Pioche<>(Destination.makeDestinationsLonguesEurope());
+        destinationsLongues.melanger();
+        choisirDestinationsInitiales(0, destinationsLongues, () -> {
+            joueurCourant = joueurs.get(0);
+            jouerTourCourant();
+        });
+    }
+
+    private void choisirDestinationsInitiales(int indiceJoueur, Pioche<Destination> destinationsLongues,
+                                              Runnable suite) {
+        if (indiceJoueur == joueurs.size()) {
+            suite.run();
+            return;
+        }
         ArrayList<Destination> destinationDebutPartie = new ArrayList<>();
-        ArrayList<String> choixDestinationDebutPartie = new ArrayList<>();
-        for (Joueur j : joueurs) {
-            destinationDebutPartie.clear();
-            destinationDebutPartie.add(destinationsLongues.remove(0));
-            for (int i = 0; i < 3; i++) {
-                destinationDebutPartie.add(piocherDestination());
-            }
-            j.choisirDestinations(destinationDebutPartie, 2);
+        destinationDebutPartie.add(destinationsLongues.piocher());
+        for (int i = 0; i < 3; i++) {
+            destinationDebutPartie.add(piocherDestination());
         }
+        joueurs.get(indiceJoueur).choisirDestinations(destinationDebutPartie, 2,
+                defaussees -> choisirDestinationsInitiales(indiceJoueur + 1, destinationsLongues, suite));
+    }
 
-        //Boucle des tours de jeu
-        joueurCourant = joueurs.get(0);
-        boolean partieEnCours = true;
-        while (partieEnCours) {
-            joueurCourant.jouerTour();
+    /**
+     * Boucle des tours de jeu
+     */
+    private void jouerTourCourant() {
+        joueurCourant.jouerTour(() -> {
             if (joueurCourant.getNbWagons() <= 2) {
-                partieEnCours = false;
-            } else joueurCourant = joueurs.indexOf(joueurCourant) == joueurs.size()-1 ? joueurs.get(0) : joueurs.get(joueurs.indexOf(joueurCourant)+1);
+                jouerDernierTour(0);
+            } else {
+                joueurCourant = joueurSuivant();
+                jouerTourCourant();
+            }
+        });
+    }
+
+    /**
+     * Dernier tour de jeu
+     */
+    private void jouerDernierTour(int nbTours) {
+        if (nbTours == joueurs.size()) {
+            decompter();
+            terminee = true;
+            log("La partie est terminée.");
+            prompt("Fin de la partie.", Collections.emptyList(), false);
+            return;
+        }
+        joueurCourant = joueurSuivant();
+        joueurCourant.jouerTour(() -> jouerDernierTour(nbTours + 1));
+    }
+
+    /**
+     * Décompte les points de fin de partie et fixe le score final des joueurs.
+     * <p>
+     * Les décomptes des joueurs sont indépendants (plus long chemin continu,
+     * destinations) : ils sont calculés en parallèle, puis le bonus European
+     * Express est attribué aux joueurs ayant le plus long chemin.
+     */
+    void decompter() {
+        List<Decompte> parJoueur = joueurs.parallelStream()
+                .map(joueur -> Decompte.calculer(plateau, joueur))
+                .toList();
+        int longueurMax = 0;
+        for (Decompte decompte : parJoueur) {
+            longueurMax = Math.max(longueurMax, decompte.getLongueurCheminLePlusLong());
+        }
+        List<Decompte> resultat = new ArrayList<>(parJoueur.size());
+        for (Decompte decompte : parJoueur) {
+            if (longueurMax > 0 && decompte.getLongueurCheminLePlusLong() == longueurMax) {
+                decompte = decompte.avecBonusEuropeExpress();
+            }
+            Joueur joueur = decompte.getJoueur();
+            joueur.mettreAJourScore(decompte.getTotal() - joueur.getScore());
+            resultat.add(decompte);
+            log(String.format("%s: %d points (routes %d, destinations +%d/-%d, gares %d, European Express %d)",
+                    joueur.toLog(), decompte.getTotal(), decompte.getPointsRoutes(),
+                    decompte.getPointsDestinationsRealisees(), decompte.getPointsDestinationsManquees(),
+                    decompte.getPointsGares(), decompte.getBonusEuropeExpress()));
+        }
+        decomptes = Collections.unmodifiableList(resultat);
+    }
+
+    /**
+     * @return les décomptes des points de fin de partie (dans l'ordre des
+     *         joueurs), ou {@code null} si la partie n'est pas terminée
+     */
+    public List<Decompte> getDecomptes() {
+        return decomptes;
+    }
+
+    private Joueur joueurSuivant() {
+        int indice = joueurs.indexOf(joueurCourant);
+        return indice == joueurs.size() - 1 ? joueurs.get(0) : joueurs.get(indice + 1);
+    }
+
+    /**
+     * @return le choix attendu d'un joueur (ou {@code null} si la partie n'est
+     *         pas démarrée ou est terminée)
+     */
+    public Invite getInviteCourante() {
+        return inviteCourante;
+    }
+
+    /**
+     * @return vrai si la partie est terminée
+     */
+    public boolean estTerminee() {
+        return terminee;
+    }
+
+    /**
+     * Donne une réponse au choix attendu et fait avancer la partie jusqu'au choix
+     * suivant (ou jusqu'à la fin de la partie)
+     *
+     * @param reponse la réponse du joueur
+     * @return {@code false} si la réponse a été ignorée (aucun choix attendu, ou
+     *         réponse invalide). L'invite courante reste valable et n'est pas
+     *         publiée à nouveau.
+     */
+    public boolean appliquer(String reponse) {
+        Invite invite = inviteCourante;
+        if (invite == null) {
+            return false;
         }
+        if (!invite.accepte(reponse)) {
+            // l'état et l'invite n'ont pas changé : ils ne sont ni reconstruits
+            // ni renvoyés
+            return false;
+        }
+        inviteCourante = null;
+        invite.repondre(reponse);
+        return true;
+    }
+
+    /**
+     * Enregistre le choix attendu d'un joueur et l'envoie aux clients
+     */
+    void attendre(Invite invite) {
+        inviteCourante = invite;
+        prompt(invite.getInstruction(), invite.getBoutons(), invite.peutPasser());
+    }
 
-        //Dernier tour de jeu.
-        for (int i = 0; i < joueurs.size(); i++) {
-            joueurCourant = joueurs.indexOf(joueurCourant) == joueurs.size()-1 ? joueurs.get(0) : joueurs.get(joueurs.indexOf(joueurCourant)+1);
-            joueurCourant.jouerTour();
+    /**
+     * Exécute des étapes non bloquantes jusqu'à leur terme, en lisant les
+     * réponses des joueurs avec {@code lireLigne} (bloquant). C'est l'adaptateur
+     * des versions bloquantes des actions ({@code Joueur.jouerTour()},
+     * {@code Joueur.choisir(...)}, etc.).
+     *
+     * @param etapes les étapes, qui passent leur résultat à la suite reçue en
+     *               paramètre
+     * @return le résultat des étapes
+     */
+    <T> T executer(Consumer<Consumer<T>> etapes) {
+        List<T> resultat = new ArrayList<>(1);
+        Invite inviteInterrompue = inviteCourante;
+        inviteCourante = null;
+        etapes.accept(resultat::add);
+        while (resultat.isEmpty()) {
+            if (inviteCourante == null) {
+                throw new IllegalStateException("étapes interrompues sans choix attendu");
+            }
+            appliquer(lireLigne());
         }
+        inviteCourante = inviteInterrompue;
+        return resultat.get(0);
     }
 
     /**
@@ -251,10 +485,9 @@ public class Jeu implements Runnable {
         if (pileCartesWagon.isEmpty()) {
             pileCartesWagon.addAll(defausseCartesWagon);
             defausseCartesWagon.clear();
-            Collections.shuffle(pileCartesWagon);
+            pileCartesWagon.melanger();
         }
-        if (pileCartesWagon.isEmpty() && defausseCartesWagon.isEmpty()) return null;
-        else return pileCartesWagon.remove(0);
+        return pileCartesWagon.piocher();
     }
 
     /**
@@ -267,15 +500,14 @@ public class Jeu implements Runnable {
             cartesWagonVisibles.remove(c);
         }
         if (!pileCartesWagon.isEmpty()) {
-            cartesWagonVisibles.add(pileCartesWagon.remove(0));
+            cartesWagonVisibles.add(pileCartesWagon.piocher());
         }
-        while (Collections.frequency(cartesWagonVisibles, CouleurWagon.LOCOMOTIVE) >= 3
-                && cartesWagonVisibles.size()
-                + pileCartesWagon.size()
-                + defausseCartesWagon.size()
-                - Collections.frequency(cartesWagonVisibles, CouleurWagon.LOCOMOTIVE)
-                - Collections.frequency(pileCartesWagon, CouleurWagon.LOCOMOTIVE)
-                - Collections.frequency(defausseCartesWagon, CouleurWagon.LOCOMOTIVE) >= 3) {
+        // les locomotives de chaque pile sont comptées en temps constant ; le
+        // nombre de remplacements est borné pour ne pas boucler lorsque les
+        // cartes restantes sont presque toutes des locomotives
+        for (int n = 0; n < NB_MAX_REMPLACEMENTS_VISIBLES
+                && cartesWagonVisibles.compter(CouleurWagon.LOCOMOTIVE) >= 3
+                && nbCartesWagonHorsLocomotives() >= 3; n++) {
             defausseCartesWagon.addAll(cartesWagonVisibles);
             cartesWagonVisibles.clear();
             int nbCartes = Math.min(pileCartesWagon.size() + defausseCartesWagon.size(), 5);
@@ -285,6 +517,16 @@ public class Jeu implements Runnable {
         }
     }
 
+    /**
+     * @return le nombre de cartes wagon autres que des locomotives dans les cartes
+     * visibles, la pioche et la défausse
+     */
+    private int nbCartesWagonHorsLocomotives() {
+        return cartesWagonVisibles.size() - cartesWagonVisibles.compter(CouleurWagon.LOCOMOTIVE)
+                + pileCartesWagon.size() - pileCartesWagon.compter(CouleurWagon.LOCOMOTIVE)
+                + defausseCartesWagon.size() - defausseCartesWagon.compter(CouleurWagon.LOCOMOTIVE);
+    }
+
     /**
      * Pioche et renvoie la destination du dessus de la pile de destinations.
      * 
@@ -292,8 +534,7 @@ public class Jeu implements Runnable {
      *         disponible)
      */
     public Destination piocherDestination() {
-        if (pileDestinations.isEmpty()) return null;
-        else return pileDestinations.remove(0);
+        return pileDestinations.piocher();
     }
 
     /**
@@ -328,7 +569,7 @@ public class Jeu implements Runnable {
     }
 
     /**
-     * Ajoute un message à la file d'entrées
+     * Ajoute un message à la file d'entrées lue par {@code lireLigne}
      */
     public void addInput(String message) {
         inputQueue.add(message);
@@ -371,24 +612,24 @@ public class Jeu implements Runnable {
             System.out.printf(">>> %s: %s [%s] <<<%n", joueurCourant.getNom(), instruction, joiner);
         }
 
-        Map<String, Object> data = Map.ofEntries(
-                new AbstractMap.SimpleEntry<String, Object>("prompt", Map.ofEntries(
-                        new AbstractMap.SimpleEntry<String, Object>("instruction", instruction),
-                        new AbstractMap.SimpleEntry<String, Object>("boutons", boutons),
-                        new AbstractMap.SimpleEntry<String, Object>("nomJoueurCourant", getJoueurCourant().getNom()),
-                        new AbstractMap.SimpleEntry<String, Object>("peutPasser", peutPasser))),
-                new AbstractMap.SimpleEntry<>("villes",
-                        villes.stream().map(Ville::asPOJO).collect(Collectors.toList())),
-                new AbstractMap.SimpleEntry<>("routes",
-                        routes.stream().map(Route::asPOJO).collect(Collectors.toList())),
-                new AbstractMap.SimpleEntry<String, Object>("joueurs",
-                        joueurs.stream().map(Joueur::asPOJO).collect(Collectors.toList())),
-                new AbstractMap.SimpleEntry<String, Object>("piles", Map.ofEntries(
-                        new AbstractMap.SimpleEntry<String, Object>("pileCartesWagon", pileCartesWagon.size()),
-                        new AbstractMap.SimpleEntry<String, Object>("pileDestinations", pileDestinations.size()),
-                        new AbstractMap.SimpleEntry<String, Object>("defausseCartesWagon", defausseCartesWagon),
-                        new AbstractMap.SimpleEntry<String, Object>("cartesWagonVisibles", cartesWagonVisibles))),
-                new AbstractMap.SimpleEntry<String, Object>("log", log));
-        GameServer.setEtatJeu(new Gson().toJson(data));
+        instructionPubliee = instruction;
+        boutonsPublies = List.copyOf(boutons);
+        peutPasserPublie = peutPasser;
+        publierEtat();
+    }
+
+    /**
+     * Publie à nouveau l'état courant du jeu, sous une nouvelle version (par
+     * exemple pour y ajouter la forme binaire lorsqu'un client qui la lit se
+     * connecte). Ne fait rien si aucun prompt n'a encore été envoyé.
+     */
+    public void publierEtat() {
+        if (instructionPubliee == null) {
+            return;
+        }
+        versionEtat++;
+        // la forme binaire n'est écrite que si un client de la partie la lit
+        GameServer.setEtatJeu(idPartie, ecrivainEtat.ecrire(versionEtat, instructionPubliee, boutonsPublies,
+                peutPasserPublie, GameServer.veutEtatBinaire(idPartie)));
     }
 }
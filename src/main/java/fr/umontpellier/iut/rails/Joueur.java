@@ -1,6 +1,8 @@
 package fr.umontpellier.iut.rails;
 
 import java.util.*;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
 public class Joueur {
@@ -12,6 +14,12 @@ public class Joueur {
         JAUNE, ROUGE, BLEU, VERT, ROSE;
     }
 
+    /**
+     * Nombre maximal de paiements complets proposés en boutons lors du choix
+     * des cartes wagon
+     */
+    public static final int NB_PAIEMENTS_PROPOSES = 3;
+
     /**
      * Jeu auquel le joueur est rattaché
      */
@@ -37,18 +45,23 @@ public class Joueur {
      */
     private List<Destination> destinations;
     /**
-     * Liste des cartes que le joueur a en main
+     * Liste des cartes que le joueur a en main (nombre de cartes par couleur)
      */
-    private List<CouleurWagon> cartesWagon;
+    private ListeCartesWagon cartesWagon;
     /**
      * Liste temporaire de cartes wagon que le joueur est en train de jouer pour
      * payer la capture d'une route ou la construction d'une gare
      */
-    private List<CouleurWagon> cartesWagonPosees;
+    private ListeCartesWagon cartesWagonPosees;
     /**
      * Score courant du joueur (somme des valeurs des routes capturées)
      */
     private int score;
+    /**
+     * Routes et villes que le joueur peut prendre (créé à la première
+     * utilisation, le plateau n'existant pas encore à la création des joueurs)
+     */
+    private CoupsPossibles coupsPossibles;
 
     public Joueur(String nom, Jeu jeu, Joueur.Couleur couleur) {
         this.nom = nom;
@@ -56,8 +69,18 @@ public class Joueur {
         this.couleur = couleur;
         nbGares = 3;
         nbWagons = 45;
-        cartesWagon = new ArrayList<>();
-        cartesWagonPosees = new ArrayList<>();
+        cartesWagon = new ListeCartesWagon() {
+            @Override
+            protected void modifiee(CouleurWagon couleur) {
+                if (coupsPossibles != null) coupsPossibles.carteModifiee(couleur);
+            }
+
+            @Override
+            protected void videe() {
+                if (coupsPossibles != null) coupsPossibles.toutVerifier();
+            }
+        };
+        cartesWagonPosees = new ListeCartesWagon();
         destinations = new ArrayList<>();
         score = 12; // chaque gare non utilisée vaut 4 points
     }
@@ -94,10 +117,101 @@ public class Joueur {
         return cartesWagon;
     }
 
+    /**
+     * @return le nombre de cartes wagon de la couleur donnée que le joueur a en
+     * main
+     */
+    public int getNbCartesWagon(CouleurWagon couleur) {
+        return cartesWagon.compter(couleur);
+    }
+
+    /**
+     * Indique si le joueur peut payer {@code nbCartes} cartes wagon d'une même
+     * couleur (au choix), en complétant avec des locomotives
+     *
+     * @param nbCartes le nombre de cartes à payer
+     * @return vrai si, pour l'une des couleurs de la main du joueur, les cartes
+     * de cette couleur et les locomotives sont au moins {@code nbCartes}
+     */
+    public boolean peutPayerUneCouleur(int nbCartes) {
+        int nbLocomotives = cartesWagon.compter(CouleurWagon.LOCOMOTIVE);
+        for (CouleurWagon c : CouleurWagon.values()) {
+            int nb = cartesWagon.compter(c);
+            if (nb > 0 && nb + nbLocomotives >= nbCartes) return true;
+        }
+        return false;
+    }
+
+    /**
+     * @return vrai si le joueur a encore une gare et peut payer son prix (1, 2
+     * puis 3 cartes d'une même couleur)
+     */
+    public boolean peutConstruireGare() {
+        if (nbGares < 1) return false;
+        return peutPayerUneCouleur(prixGare());
+    }
+
+    /**
+     * @return le nombre de cartes à payer pour la prochaine gare
+     */
+    private int prixGare() {
+        return nbGares == 3 ? 1 : nbGares == 2 ? 2 : 3;
+    }
+
+    /**
+     * Liste les paiements possibles avec les cartes du joueur, du meilleur au
+     * moins bon (le moins de locomotives d'abord, voir {@code Paiement})
+     *
+     * @param couleur          la couleur demandée ({@code GRIS} pour n'importe
+     *                         quelle couleur)
+     * @param nbCartes         le nombre de cartes à payer
+     * @param nbLocomotivesMin le nombre minimal de locomotives
+     */
+    public List<Paiement> getPaiements(CouleurWagon couleur, int nbCartes, int nbLocomotivesMin) {
+        return Paiement.lister(cartesWagon, couleur, nbCartes, nbLocomotivesMin);
+    }
+
+    /**
+     * @return les paiements possibles pour la prochaine gare (aucun si le
+     * joueur n'a plus de gare)
+     */
+    public List<Paiement> getPaiementsGare() {
+        return nbGares < 1 ? new ArrayList<>() : getPaiements(CouleurWagon.GRIS, prixGare(), 0);
+    }
+
+    /**
+     * @return les routes et les villes que le joueur peut actuellement prendre
+     */
+    public CoupsPossibles getCoupsPossibles() {
+        if (coupsPossibles == null) {
+            coupsPossibles = new CoupsPossibles(this, jeu.getPlateau());
+        }
+        return coupsPossibles;
+    }
+
     public List<Destination> getDestinations() {
         return destinations;
     }
 
+    /**
+     * @return vrai si le joueur a relié les deux villes de la destination par
+     * ses routes (en temps quasi constant, voir {@code Plateau.estRealisee})
+     */
+    public boolean aRealise(Destination destination) {
+        return jeu.getPlateau().estRealisee(this, destination);
+    }
+
+    /**
+     * @return les destinations du joueur qu'il a déjà réalisées
+     */
+    public List<Destination> getDestinationsRealisees() {
+        List<Destination> realisees = new ArrayList<>();
+        for (Destination destination : destinations) {
+            if (aRealise(destination)) realisees.add(destination);
+        }
+        return realisees;
+    }
+
     /**
      * Attend une entrée de la part du joueur (au clavier ou sur la websocket) et
      * renvoie le choix du joueur.
@@ -148,29 +262,40 @@ public class Joueur {
      */
     public String choisir(String instruction, Collection<String> choix, Collection<String> boutons,
                           boolean peutPasser) {
-        // on retire les doublons de la liste des choix
-        HashSet<String> choixDistincts = new HashSet<>();
-        choixDistincts.addAll(choix);
-        choixDistincts.addAll(boutons);
+        return jeu.executer(suite -> choisir(instruction, choix, boutons, peutPasser, suite));
+    }
 
+    /**
+     * Version non bloquante de {@code choisir} : la réponse du joueur est passée
+     * à {@code suite}.
+     * <p>
+     * Si la réponse est imposée (aucun choix, ou un seul choix sans possibilité
+     * de passer), {@code suite} est exécutée immédiatement. Sinon le jeu publie
+     * l'invite et la suite sera exécutée lorsqu'une réponse valide sera donnée
+     * au jeu ({@code Jeu.appliquer}).
+     */
+    public void choisir(String instruction, Collection<String> choix, Collection<String> boutons,
+                        boolean peutPasser, Consumer<String> suite) {
+        choisir(instruction, choix, boutons, peutPasser, reponse -> false, suite);
+    }
+
+    /**
+     * Version de {@code choisir} acceptant en plus les réponses validées par
+     * {@code autresReponses}
+     */
+    private void choisir(String instruction, Collection<String> choix, Collection<String> boutons,
+                         boolean peutPasser, Predicate<String> autresReponses, Consumer<String> suite) {
+        Invite invite = new Invite(this, instruction, choix, boutons, peutPasser, autresReponses, suite);
+        Set<String> reponses = invite.getReponses();
         // Aucun choix disponible
-        if (choixDistincts.isEmpty()) {
-            return "";
+        if (reponses.isEmpty()) {
+            suite.accept("");
+        }
+        // Un seul choix possible (renvoyer cet unique élément)
+        else if (reponses.size() == 1 && !peutPasser) {
+            suite.accept(reponses.iterator().next());
         } else {
-            // Un seul choix possible (renvoyer cet unique élément)
-            if (choixDistincts.size() == 1 && !peutPasser)
-                return choixDistincts.iterator().next();
-            else {
-                String entree;
-                // Lit l'entrée de l'utilisateur jusqu'à obtenir un choix valide
-                while (true) {
-                    jeu.prompt(instruction, boutons, peutPasser);
-                    entree = jeu.lireLigne();
-                    // si une réponse valide est obtenue, elle est renvoyée
-                    if (choixDistincts.contains(entree) || (peutPasser && entree.equals("")))
-                        return entree;
-                }
-            }
+            jeu.attendre(invite);
         }
     }
 
@@ -241,24 +366,46 @@ public class Joueur {
      * @return liste des destinations qui n'ont pas été gardées par le joueur
      */
     public List<Destination> choisirDestinations(List<Destination> destinationsPossibles, int n) {
+        return jeu.executer(suite -> choisirDestinations(destinationsPossibles, n, suite));
+    }
+
+    /**
+     * Version non bloquante de {@code choisirDestinations} : les destinations
+     * écartées sont passées à {@code suite}
+     */
+    public void choisirDestinations(List<Destination> destinationsPossibles, int n,
+                                    Consumer<List<Destination>> suite) {
         ArrayList<String> choix = new ArrayList<>();
-        ArrayList<Destination> destinationsDefaussees = new ArrayList<>();
         for (Destination destinationsPossible : destinationsPossibles) {
             choix.add(destinationsPossible.toString());
         }
-        boolean stop = false;
-        while (n < destinationsPossibles.size() && !stop) {
-            String dest = choisir(String.format("Sélectionnez au maximum %d destinations que vous ne voulez pas garder: ", destinationsPossibles.size()-n), new ArrayList<>(), choix, true);
-            if (dest.equals("")) stop = true;
+        ecarterDestinations(destinationsPossibles, n, choix, new ArrayList<>(), suite);
+    }
+
+    private void ecarterDestinations(List<Destination> destinationsPossibles, int n, ArrayList<String> choix,
+                                     ArrayList<Destination> destinationsDefaussees,
+                                     Consumer<List<Destination>> suite) {
+        if (n >= destinationsPossibles.size()) {
+            conserverDestinations(destinationsPossibles, destinationsDefaussees, suite);
+            return;
+        }
+        choisir(String.format("Sélectionnez au maximum %d destinations que vous ne voulez pas garder: ", destinationsPossibles.size()-n), new ArrayList<>(), choix, true, dest -> {
+            if (dest.equals("")) conserverDestinations(destinationsPossibles, destinationsDefaussees, suite);
             else {
                 int indice = choix.indexOf(dest);
                 destinationsDefaussees.add(destinationsPossibles.remove(indice));
                 choix.remove(indice);
+                ecarterDestinations(destinationsPossibles, n, choix, destinationsDefaussees, suite);
             }
-        }
+        });
+    }
+
+    private void conserverDestinations(List<Destination> destinationsPossibles,
+                                       ArrayList<Destination> destinationsDefaussees,
+                                       Consumer<List<Destination>> suite) {
         for (Destination d : destinationsPossibles) log(String.format("%s: Vous avez conservé la destination %s.", toLog(), d.getNom()));
         destinations.addAll(destinationsPossibles);
-        return destinationsDefaussees;
+        suite.accept(destinationsDefaussees);
     }
 
     /**
@@ -281,55 +428,65 @@ public class Joueur {
      * "construire une gare", "choisir les destinations à défausser", etc.)
      */
     public void jouerTour() {
+        jeu.executer(fin -> jouerTour(() -> fin.accept(null)));
+    }
+
+    /**
+     * Version non bloquante de {@code jouerTour} : {@code suite} est exécutée à
+     * la fin du tour
+     */
+    public void jouerTour(Runnable suite) {
         ArrayList<String> choix = new ArrayList<>();
         for (CouleurWagon carteWagon : jeu.getCartesWagonVisibles()) {
             choix.add(carteWagon.name());
         }
-        for (Route route : jeu.getRoutes()) {
-            if (route.estCapturablePar(this)) {
-                choix.add(route.getNom());
-            }
+        for (Route route : getCoupsPossibles().getRoutesCapturables()) {
+            choix.add(route.getNom());
         }
-        for (Ville ville : jeu.getVilles()) {
-            if (ville.estCapturableParJoueur(this)) {
-                choix.add(ville.getNom());
-            }
+        for (Ville ville : getCoupsPossibles().getVillesCapturables()) {
+            choix.add(ville.getNom());
         }
         choix.add("GRIS");
         choix.add("destinations");
-        String choixJoueur = choisir("Que voulez-vous faire ?", choix, new ArrayList<>(), true);
-        if (!choixJoueur.equals("")) {
-            switch (choixJoueur) {
-                case "GRIS" -> prendreCarteWagon(CouleurWagon.GRIS);
-                case "destinations" -> prendreDestinations();
-                case "LOCOMOTIVE" -> prendreLocomotiveVisible();
-                default -> {
-                    //Choix d'une route
-                    for (Route route : jeu.getRoutes()) {
-                        if (route.getNom().equals(choixJoueur)) {
-                            route.capturerParJoueur(this);
+        choisir("Que voulez-vous faire ?", choix, new ArrayList<>(), true, choixJoueur -> {
+            if (!choixJoueur.equals("")) {
+                switch (choixJoueur) {
+                    case "GRIS" -> prendreCarteWagon(CouleurWagon.GRIS, suite);
+                    case "destinations" -> prendreDestinations(suite);
+                    case "LOCOMOTIVE" -> {
+                        prendreLocomotiveVisible();
+                        suite.run();
+                    }
+                    default -> {
+                        //Choix d'une route
+                        Route route = jeu.getPlateau().getRoute(choixJoueur);
+                        if (route != null) {
+                            route.capturerParJoueur(this, suite);
                             return;
                         }
-                    }
 
-                    //Choix d'une ville
-                    for (Ville ville : jeu.getVilles()) {
-                        if (ville.getNom().equals(choixJoueur)) {
-                            construireGare(ville);
+                        //Choix d'une ville
+                        Ville ville = jeu.getPlateau().getVille(choixJoueur);
+                        if (ville != null) {
+                            construireGare(ville, suite);
                             return;
                         }
-                    }
 
-                    //Choix d'une carte visible.
-                    for (CouleurWagon carte : jeu.getCartesWagonVisibles()) {
-                        if (carte.name().equals(choixJoueur)) {
-                            prendreCarteWagon(carte);
-                            return;
+                        //Choix d'une carte visible.
+                        for (CouleurWagon carte : jeu.getCartesWagonVisibles()) {
+                            if (carte.name().equals(choixJoueur)) {
+                                prendreCarteWagon(carte, suite);
+                                return;
+                            }
                         }
+                        suite.run();
                     }
                 }
+            } else {
+                log(String.format("%s: Vous avez passé votre tour.", toLog()));
+                suite.run();
             }
-        } else log(String.format("%s: Vous avez passé votre tour.", toLog()));
+        });
     }
 
     /**
@@ -337,16 +494,16 @@ public class Joueur {
      *
      * @param c - Une carte wagon parmi celles face visible ou CouleurWagon.GRIS pour piocher dans la pile.
      */
-    private void prendreCarteWagon(CouleurWagon c) {
+    private void prendreCarteWagon(CouleurWagon c, Runnable suite) {
         if (c == CouleurWagon.GRIS){
             this.piocherCarteWagon();
-            prendreCarteSupplementaire();
+            prendreCarteSupplementaire(suite);
         }
         else{
             log(String.format("%s: Vous avez pris une carte wagon visible %s.", toLog(), c.toLog()));
             cartesWagon.add(c);
             jeu.retirerCarteWagonVisible(c);
-            prendreCarteSupplementaire();
+            prendreCarteSupplementaire(suite);
         }
 
     }
@@ -354,7 +511,7 @@ public class Joueur {
     /**
      * Action de piocher une deuxième carte dans la pioche ou face visible lors d'un tour du joueur.
      */
-    private void prendreCarteSupplementaire() {
+    private void prendreCarteSupplementaire(Runnable suite) {
         ArrayList<String> choix = new ArrayList<>();
         for (CouleurWagon carte : jeu.getCartesWagonVisibles()) {
             if (carte != CouleurWagon.LOCOMOTIVE) {
@@ -362,17 +519,19 @@ public class Joueur {
             }
         }
         choix.add("GRIS");
-        String choixJoueur = choisir("Vous pouvez piocher une autre carte hors locomotive visible.", choix, new ArrayList<>(), true);
-        if (!choixJoueur.equals("")) {
-            if (choixJoueur.equals("GRIS")) {
-                this.piocherCarteWagon();
-            } else {
-                CouleurWagon carte = CouleurWagon.valueOf(choixJoueur);
-                log(String.format("%s: Vous avez pris une carte wagon visible %s.", toLog(), carte.toLog()));
-                cartesWagon.add(carte);
-                jeu.retirerCarteWagonVisible(carte);
+        choisir("Vous pouvez piocher une autre carte hors locomotive visible.", choix, new ArrayList<>(), true, choixJoueur -> {
+            if (!choixJoueur.equals("")) {
+                if (choixJoueur.equals("GRIS")) {
+                    this.piocherCarteWagon();
+                } else {
+                    CouleurWagon carte = CouleurWagon.valueOf(choixJoueur);
+                    log(String.format("%s: Vous avez pris une carte wagon visible %s.", toLog(), carte.toLog()));
+                    cartesWagon.add(carte);
+                    jeu.retirerCarteWagonVisible(carte);
+                }
             }
-        }
+            suite.run();
+        });
     }
 
     /**
@@ -387,15 +546,17 @@ public class Joueur {
     /**
      * Action de piocher des destinations lors d'un tour du joueur.
      */
-    private void prendreDestinations() {
+    private void prendreDestinations(Runnable suite) {
         ArrayList<Destination> choix = new ArrayList<>();
-        ArrayList<Destination> defausse = new ArrayList<>();
         for (int i=0; i<3;i++){
             choix.add(jeu.piocherDestination());
         }
-        for(Destination dest : choisirDestinations(choix, 1)){
-            jeu.defausserDestination(dest);
-        }
+        choisirDestinations(choix, 1, defausse -> {
+            for (Destination dest : defausse) {
+                jeu.defausserDestination(dest);
+            }
+            suite.run();
+        });
     }
 
     /**
@@ -403,30 +564,20 @@ public class Joueur {
      *
      * @param ville - Une ville qui n'a pas de propriétaire et surlaquelle on peut donc construire une gare.
      */
-    private void construireGare(Ville ville) {
-        switch (nbGares) {
-            case 3 -> {
-                for (CouleurWagon c : choisirCarteWagon(CouleurWagon.GRIS, 1, false)) jeu.defausserCarteWagon(c);
-                ville.setProprietaire(this);
-                nbGares--;
-                score -= 4;
-                jeu.log(String.format("%s a construit une gare dans la ville %s.", toLog(), ville.toLog()));
-            }
-            case 2 -> {
-                for (CouleurWagon c : choisirCarteWagon(CouleurWagon.GRIS, 2, false)) jeu.defausserCarteWagon(c);
-                ville.setProprietaire(this);
-                nbGares--;
-                score -= 4;
-                jeu.log(String.format("%s a construit une gare dans la ville %s.", toLog(), ville.toLog()));
-            }
-            case 1 -> {
-                for (CouleurWagon c : choisirCarteWagon(CouleurWagon.GRIS, 3, false)) jeu.defausserCarteWagon(c);
-                ville.setProprietaire(this);
-                nbGares--;
-                score -= 4;
-                jeu.log(String.format("%s a construit une gare dans la ville %s.", toLog(), ville.toLog()));
-            }
+    private void construireGare(Ville ville, Runnable suite) {
+        if (nbGares < 1 || nbGares > 3) {
+            suite.run();
+            return;
         }
+        choisirCarteWagon(CouleurWagon.GRIS, prixGare(), false, cartes -> {
+            for (CouleurWagon c : cartes) jeu.defausserCarteWagon(c);
+            ville.setProprietaire(this);
+            nbGares--;
+            if (coupsPossibles != null) coupsPossibles.garesModifiees();
+            score -= 4;
+            jeu.log(String.format("%s a construit une gare dans la ville %s.", toLog(), ville.toLog()));
+            suite.run();
+        });
     }
 
     /**
@@ -438,31 +589,100 @@ public class Joueur {
      * @return Une ArrayList de CouleurWagon qui ont été sélectionnées par le joueur.
      */
     public ArrayList<CouleurWagon> choisirCarteWagon(CouleurWagon couleur, int nbCarte, boolean passer) {
-        ArrayList<CouleurWagon> cartes = new ArrayList<>();
+        return jeu.executer(suite -> choisirCarteWagon(couleur, nbCarte, passer, suite));
+    }
+
+    /**
+     * Version non bloquante de {@code choisirCarteWagon} : les cartes
+     * sélectionnées sont passées à {@code suite}
+     */
+    public void choisirCarteWagon(CouleurWagon couleur, int nbCarte, boolean passer,
+                                  Consumer<ArrayList<CouleurWagon>> suite) {
+        choisirCarteWagon(couleur, nbCarte, passer, new ArrayList<>(), suite);
+    }
+
+    private void choisirCarteWagon(CouleurWagon couleur, int nbCarte, boolean passer, ArrayList<CouleurWagon> cartes,
+                                   Consumer<ArrayList<CouleurWagon>> suite) {
+        int i = cartes.size();
+        if (i >= nbCarte) {
+            suite.accept(cartes);
+            return;
+        }
         ArrayList<String> choix = new ArrayList<>();
-        for (int i = 0; i < nbCarte; i++) {
-            choix.clear();
-            if (couleur != CouleurWagon.GRIS) {
-                for (CouleurWagon c : cartesWagon) {
-                    if ((c == couleur && Collections.frequency(cartesWagon, c) + Collections.frequency(cartesWagon, CouleurWagon.LOCOMOTIVE) >= nbCarte-i) || c == CouleurWagon.LOCOMOTIVE) choix.add(c.name());
-                }
-            } else {
-                for (CouleurWagon c : cartesWagon) {
-                    if ((Collections.frequency(cartesWagon, c) + Collections.frequency(cartesWagon, CouleurWagon.LOCOMOTIVE) >= nbCarte-i) || c == CouleurWagon.LOCOMOTIVE) choix.add(c.name());
-                }
+        int nbLocomotives = cartesWagon.compter(CouleurWagon.LOCOMOTIVE);
+        for (CouleurWagon c : CouleurWagon.values()) {
+            int nb = cartesWagon.compter(c);
+            if (nb > 0 && ((couleur == CouleurWagon.GRIS || c == couleur) && nb + nbLocomotives >= nbCarte - i
+                    || c == CouleurWagon.LOCOMOTIVE)) choix.add(c.name());
+        }
+        int nbRestantes = nbCarte - i;
+        String instruction = String.format("Veuillez choisir une de vos cartes wagon %s ou une Locomotive.", couleur.toString());
+        // les meilleurs paiements complets sont proposés en boutons (paiement
+        // automatique en une réponse), sauf si le choix de carte est imposé
+        ArrayList<String> boutons = new ArrayList<>();
+        if (choix.size() > 1 || passer) {
+            for (Paiement paiement : getPaiements(couleur, nbRestantes, 0)) {
+                if (boutons.size() == NB_PAIEMENTS_PROPOSES) break;
+                boutons.add(paiement.toString());
             }
-            String carteChoisie = choisir(String.format("Veuillez choisir une de vos cartes wagon %s ou une Locomotive.", couleur.toString()), choix, new ArrayList<>(), passer);
-            if (!carteChoisie.equals("")) {
-                cartesWagon.remove(CouleurWagon.valueOf(carteChoisie));
-                cartes.add(CouleurWagon.valueOf(carteChoisie));
-                if (couleur == CouleurWagon.GRIS && CouleurWagon.valueOf(carteChoisie) != CouleurWagon.LOCOMOTIVE) couleur = CouleurWagon.valueOf(carteChoisie);
-            } else {
+        }
+        choisir(instruction, choix, boutons, passer,
+                reponse -> lirePaiement(reponse, couleur, nbRestantes) != null, carteChoisie -> {
+            if (carteChoisie.equals("")) {
                 cartesWagon.addAll(cartes);
                 cartes.clear();
-                return cartes;
+                suite.accept(cartes);
+                return;
+            }
+            int[] paiement = choix.contains(carteChoisie) ? null : lirePaiement(carteChoisie, couleur, nbRestantes);
+            if (paiement != null) {
+                // toutes les cartes restantes en une seule réponse
+                for (CouleurWagon c : CouleurWagon.values()) {
+                    for (int n = 0; n < paiement[c.ordinal()]; n++) {
+                        cartesWagon.remove(c);
+                        cartes.add(c);
+                    }
+                }
+                suite.accept(cartes);
+                return;
+            }
+            CouleurWagon carte = CouleurWagon.valueOf(carteChoisie);
+            cartesWagon.remove(carte);
+            cartes.add(carte);
+            CouleurWagon couleurSuivante = couleur == CouleurWagon.GRIS && carte != CouleurWagon.LOCOMOTIVE ? carte : couleur;
+            choisirCarteWagon(couleurSuivante, nbCarte, passer, cartes, suite);
+        });
+    }
+
+    /**
+     * Lit un paiement de plusieurs cartes donné en une seule réponse (voir
+     * {@code CouleurWagon.lirePaiement}) et vérifie qu'il est valide : le
+     * joueur possède les cartes, il y a exactement {@code nbCartes} cartes et
+     * elles sont toutes de la couleur demandée (une seule couleur pour
+     * {@code GRIS}) ou des locomotives.
+     *
+     * @return le nombre de cartes de chaque couleur, ou {@code null} si la
+     * réponse n'est pas un paiement valide
+     */
+    private int[] lirePaiement(String reponse, CouleurWagon couleur, int nbCartes) {
+        int[] paiement = CouleurWagon.lirePaiement(reponse);
+        if (paiement == null) {
+            return null;
+        }
+        int total = 0;
+        CouleurWagon couleurPayee = null;
+        for (CouleurWagon c : CouleurWagon.values()) {
+            int nb = paiement[c.ordinal()];
+            if (nb == 0) continue;
+            if (nb > cartesWagon.compter(c)) return null;
+            if (c != CouleurWagon.LOCOMOTIVE) {
+                if (couleurPayee != null || c == CouleurWagon.GRIS
+                        || (couleur != CouleurWagon.GRIS && c != couleur)) return null;
+                couleurPayee = c;
             }
+            total += nb;
         }
-        return cartes;
+        return total == nbCartes ? paiement : null;
     }
 
     /**
@@ -483,6 +703,7 @@ public class Joueur {
      */
     public void poserWagon(int n) {
         nbWagons -= n;
+        if (coupsPossibles != null) coupsPossibles.wagonsModifies();
     }
 
     /**
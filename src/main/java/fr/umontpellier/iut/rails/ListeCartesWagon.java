@@ -0,0 +1,159 @@
+package fr.umontpellier.iut.rails;
+
+import java.util.AbstractList;
+import java.util.Collection;
+
+/**
+ * Main de cartes wagon, représentée par le nombre de cartes de chaque couleur.
+ * <p>
+ * Le nombre de cartes d'une couleur ({@code compter}) est obtenu en temps
+ * constant. La main reste utilisable comme une liste modifiable de cartes
+ * (pour l'interface graphique et les tests) : les cartes y apparaissent triées
+ * selon l'ordre des couleurs, l'ordre d'insertion n'est donc pas conservé (une
+ * carte ajoutée avec {@code add(index, carte)} est rangée avec les cartes de sa
+ * couleur).
+ * <p>
+ * Comme pour {@code Pioche}, les sous-classes peuvent suivre les modifications
+ * de la main en redéfinissant {@code modifiee} et {@code videe}.
+ */
+public class ListeCartesWagon extends AbstractList<CouleurWagon> {
+    private static final CouleurWagon[] COULEURS = CouleurWagon.values();
+
+    /**
+     * Nombre de cartes de chaque couleur (indexé par l'ordinal de la couleur)
+     */
+    private final int[] nbCartes;
+    private int taille;
+
+    public ListeCartesWagon() {
+        nbCartes = new int[COULEURS.length];
+    }
+
+    public ListeCartesWagon(Collection<CouleurWagon> cartes) {
+        this();
+        addAll(cartes);
+    }
+
+    /**
+     * @return le nombre de cartes de la couleur donnée
+     */
+    public int compter(CouleurWagon couleur) {
+        return nbCartes[couleur.ordinal()];
+    }
+
+    /**
+     * Appelée lorsqu'une carte de la couleur donnée est ajoutée ou retirée
+     */
+    protected void modifiee(CouleurWagon couleur) {
+    }
+
+    /**
+     * Appelée lorsque la main est vidée
+     */
+    protected void videe() {
+    }
+
+    @Override
+    public int size() {
+        return taille;
+    }
+
+    @Override
+    public CouleurWagon get(int index) {
+        return COULEURS[couleurA(index)];
+    }
+
+    @Override
+    public boolean add(CouleurWagon carte) {
+        nbCartes[carte.ordinal()]++;
+        taille++;
+        modCount++;
+        modifiee(carte);
+        return true;
+    }
+
+    @Override
+    public void add(int index, CouleurWagon carte) {
+        if (index < 0 || index > taille) {
+            throw new IndexOutOfBoundsException(index);
+        }
+        add(carte);
+    }
+
+    @Override
+    public CouleurWagon set(int index, CouleurWagon carte) {
+        CouleurWagon ancienne = remove(index);
+        add(carte);
+        return ancienne;
+    }
+
+    @Override
+    public CouleurWagon remove(int index) {
+        int couleur = couleurA(index);
+        nbCartes[couleur]--;
+        taille--;
+        modCount++;
+        modifiee(COULEURS[couleur]);
+        return COULEURS[couleur];
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        if (!(o instanceof CouleurWagon carte) || nbCartes[carte.ordinal()] == 0) {
+            return false;
+        }
+        nbCartes[carte.ordinal()]--;
+        taille--;
+        modCount++;
+        modifiee(carte);
+        return true;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return o instanceof CouleurWagon carte && nbCartes[carte.ordinal()] > 0;
+    }
+
+    @Override
+    public int indexOf(Object o) {
+        if (!contains(o)) {
+            return -1;
+        }
+        int index = 0;
+        for (int c = 0; c < ((CouleurWagon) o).ordinal(); c++) {
+            index += nbCartes[c];
+        }
+        return index;
+    }
+
+    @Override
+    public int lastIndexOf(Object o) {
+        int index = indexOf(o);
+        return index < 0 ? -1 : index + nbCartes[((CouleurWagon) o).ordinal()] - 1;
+    }
+
+    @Override
+    public void clear() {
+        for (int c = 0; c < nbCartes.length; c++) {
+            nbCartes[c] = 0;
+        }
+        taille = 0;
+        modCount++;
+        videe();
+    }
+
+    /**
+     * @return l'ordinal de la couleur de la carte à la position donnée
+     */
+    private int couleurA(int index) {
+        if (index < 0 || index >= taille) {
+            throw new IndexOutOfBoundsException(index);
+        }
+        int c = 0;
+        while (index >= nbCartes[c]) {
+            index -= nbCartes[c];
+            c++;
+        }
+        return c;
+    }
+}
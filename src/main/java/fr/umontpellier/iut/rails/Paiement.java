@@ -0,0 +1,140 @@
+package fr.umontpellier.iut.rails;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.StringJoiner;
+
+/**
+ * Cartes wagon données pour payer une route, un ferry, un tunnel ou une gare :
+ * des cartes d'une seule couleur et des locomotives.
+ * <p>
+ * {@code toString} renvoie le paiement dans le format accepté en une seule
+ * réponse par {@code Joueur.choisirCarteWagon} (voir
+ * {@code CouleurWagon.lirePaiement}), par exemple {@code "ROUGE x4, LOCOMOTIVE x2"}.
+ */
+public class Paiement {
+    /**
+     * Ordre des paiements proposés : le moins de locomotives d'abord, puis celui
+     * qui laisse le moins de cartes de la couleur payée (les plus grosses
+     * séries de cartes restent dans la main pour les routes plus longues)
+     */
+    private static final Comparator<Paiement> ORDRE = Comparator
+            .comparingInt(Paiement::getNbLocomotives)
+            .thenComparingInt(p -> p.nbCartesRestantes)
+            .thenComparingInt(p -> p.couleur.ordinal());
+
+    /**
+     * Couleur des cartes qui ne sont pas des locomotives ({@code LOCOMOTIVE}
+     * si le paiement n'a que des locomotives)
+     */
+    private final CouleurWagon couleur;
+    private final int nbCartesCouleur;
+    private final int nbLocomotives;
+    /**
+     * Nombre de cartes de la couleur payée qui restent dans la main après le
+     * paiement
+     */
+    private final int nbCartesRestantes;
+
+    private Paiement(CouleurWagon couleur, int nbCartesCouleur, int nbLocomotives, int nbCartesRestantes) {
+        this.couleur = couleur;
+        this.nbCartesCouleur = nbCartesCouleur;
+        this.nbLocomotives = nbLocomotives;
+        this.nbCartesRestantes = nbCartesRestantes;
+    }
+
+    /**
+     * Liste les paiements possibles avec une main, du meilleur au moins bon
+     *
+     * @param main            les cartes du joueur
+     * @param couleur         la couleur demandée ({@code GRIS} pour n'importe
+     *                        quelle couleur, {@code LOCOMOTIVE} pour des
+     *                        locomotives uniquement)
+     * @param nbCartes        le nombre de cartes à payer
+     * @param nbLocomotivesMin le nombre minimal de locomotives (ferries)
+     * @return les paiements valides, chacun n'apparaissant qu'une fois
+     */
+    static List<Paiement> lister(ListeCartesWagon main, CouleurWagon couleur, int nbCartes, int nbLocomotivesMin) {
+        List<Paiement> paiements = new ArrayList<>();
+        if (nbCartes <= 0) {
+            return paiements;
+        }
+        int nbLocomotivesMain = main.compter(CouleurWagon.LOCOMOTIVE);
+        List<CouleurWagon> couleurs = couleur == CouleurWagon.GRIS ? CouleurWagon.getCouleursSimples()
+                : couleur == CouleurWagon.LOCOMOTIVE ? List.of() : List.of(couleur);
+        for (CouleurWagon c : couleurs) {
+            int nbMain = main.compter(c);
+            // au moins une carte de la couleur (sinon c'est le paiement tout en locomotives)
+            for (int l = Math.max(nbLocomotivesMin, nbCartes - nbMain); l <= Math.min(nbLocomotivesMain, nbCartes - 1); l++) {
+                paiements.add(new Paiement(c, nbCartes - l, l, nbMain - (nbCartes - l)));
+            }
+        }
+        if (nbLocomotivesMain >= nbCartes) {
+            paiements.add(new Paiement(CouleurWagon.LOCOMOTIVE, 0, nbCartes, 0));
+        }
+        paiements.sort(ORDRE);
+        return paiements;
+    }
+
+    public CouleurWagon getCouleur() {
+        return couleur;
+    }
+
+    public int getNbLocomotives() {
+        return nbLocomotives;
+    }
+
+    /**
+     * @return le nombre total de cartes du paiement
+     */
+    public int getNbCartes() {
+        return nbCartesCouleur + nbLocomotives;
+    }
+
+    /**
+     * @return les cartes du paiement (les cartes de couleur puis les
+     * locomotives)
+     */
+    public List<CouleurWagon> getCartes() {
+        List<CouleurWagon> cartes = new ArrayList<>(getNbCartes());
+        for (int i = 0; i < nbCartesCouleur; i++) cartes.add(couleur);
+        for (int i = 0; i < nbLocomotives; i++) cartes.add(CouleurWagon.LOCOMOTIVE);
+        return cartes;
+    }
+
+    /**
+     * @return le nombre de cartes de chaque couleur (indexé par
+     * {@code CouleurWagon.ordinal()}), comme {@code CouleurWagon.lirePaiement}
+     */
+    int[] getNbCartesParCouleur() {
+        int[] nbCartes = new int[CouleurWagon.values().length];
+        nbCartes[couleur.ordinal()] += nbCartesCouleur;
+        nbCartes[CouleurWagon.LOCOMOTIVE.ordinal()] += nbLocomotives;
+        return nbCartes;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof Paiement p
+                && Arrays.equals(getNbCartesParCouleur(), p.getNbCartesParCouleur());
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(getNbCartesParCouleur());
+    }
+
+    @Override
+    public String toString() {
+        StringJoiner joiner = new StringJoiner(", ");
+        if (nbCartesCouleur > 0) {
+            joiner.add(nbCartesCouleur == 1 ? couleur.name() : couleur.name() + " x" + nbCartesCouleur);
+        }
+        if (nbLocomotives > 0) {
+            joiner.add(nbLocomotives == 1 ? "LOCOMOTIVE" : "LOCOMOTIVE x" + nbLocomotives);
+        }
+        return joiner.toString();
+    }
+}
@@ -0,0 +1,194 @@
+package fr.umontpellier.iut.rails;
+
+import java.util.AbstractList;
+import java.util.Collection;
+import java.util.Random;
+import java.util.RandomAccess;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Pile de cartes, vue comme une liste dont l'élément d'indice 0 est la carte du
+ * dessus.
+ * <p>
+ * Les cartes sont rangées dans un tableau circulaire : piocher la carte du
+ * dessus ({@code piocher}, {@code remove(0)}), poser une carte dessus
+ * ({@code add(0, carte)}) ou dessous ({@code add(carte)}) et accéder à une
+ * carte par sa position se font en temps constant. La pile est mélangée sur
+ * place ({@code melanger}).
+ * <p>
+ * Les sous-classes peuvent suivre le contenu de la pile (par exemple pour
+ * compter certaines cartes) en redéfinissant {@code ajoute}, {@code retire} et
+ * {@code vide}, qui sont appelées à chaque modification.
+ *
+ * @param <E> le type des cartes
+ */
+public class Pioche<E> extends AbstractList<E> implements RandomAccess {
+    private static final int CAPACITE_INITIALE = 16;
+
+    /**
+     * Cartes de la pile (la capacité est une puissance de 2)
+     */
+    private Object[] elements;
+    /**
+     * Position dans {@code elements} de la carte du dessus
+     */
+    private int debut;
+    private int taille;
+
+    public Pioche() {
+        elements = new Object[CAPACITE_INITIALE];
+    }
+
+    public Pioche(Collection<? extends E> cartes) {
+        this();
+        addAll(cartes);
+    }
+
+    /**
+     * Retire et renvoie la carte du dessus de la pile
+     *
+     * @return la carte piochée (ou {@code null} si la pile est vide)
+     */
+    public E piocher() {
+        return taille == 0 ? null : remove(0);
+    }
+
+    /**
+     * Mélange la pile sur place
+     */
+    public void melanger() {
+        melanger(ThreadLocalRandom.current());
+    }
+
+    public void melanger(Random random) {
+        for (int i = taille - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int ci = position(i);
+            int cj = position(j);
+            Object carte = elements[ci];
+            elements[ci] = elements[cj];
+            elements[cj] = carte;
+        }
+    }
+
+    /**
+     * Appelée lorsqu'une carte est ajoutée à la pile
+     */
+    protected void ajoute(E carte) {
+    }
+
+    /**
+     * Appelée lorsqu'une carte est retirée de la pile
+     */
+    protected void retire(E carte) {
+    }
+
+    /**
+     * Appelée lorsque la pile est vidée
+     */
+    protected void vide() {
+    }
+
+    @Override
+    public int size() {
+        return taille;
+    }
+
+    @Override
+    public E get(int index) {
+        verifierIndice(index, taille);
+        return carte(position(index));
+    }
+
+    @Override
+    public E set(int index, E carte) {
+        verifierIndice(index, taille);
+        int position = position(index);
+        E ancienne = carte(position);
+        elements[position] = carte;
+        retire(ancienne);
+        ajoute(carte);
+        return ancienne;
+    }
+
+    @Override
+    public boolean add(E carte) {
+        add(taille, carte);
+        return true;
+    }
+
+    @Override
+    public void add(int index, E carte) {
+        verifierIndice(index, taille + 1);
+        if (taille == elements.length) {
+            agrandir();
+        }
+        if (index == 0) {
+            debut = (debut - 1) & (elements.length - 1);
+        } else {
+            // décale d'une case vers le dessous les cartes situées sous la position
+            for (int i = taille; i > index; i--) {
+                elements[position(i)] = elements[position(i - 1)];
+            }
+        }
+        elements[position(index)] = carte;
+        taille++;
+        modCount++;
+        ajoute(carte);
+    }
+
+    @Override
+    public E remove(int index) {
+        verifierIndice(index, taille);
+        E carte = carte(position(index));
+        if (index == 0) {
+            elements[debut] = null;
+            debut = (debut + 1) & (elements.length - 1);
+        } else {
+            // décale d'une case vers le dessus les cartes situées sous la position
+            for (int i = index; i < taille - 1; i++) {
+                elements[position(i)] = elements[position(i + 1)];
+            }
+            elements[position(taille - 1)] = null;
+        }
+        taille--;
+        modCount++;
+        retire(carte);
+        return carte;
+    }
+
+    @Override
+    public void clear() {
+        for (int i = 0; i < taille; i++) {
+            elements[position(i)] = null;
+        }
+        debut = 0;
+        taille = 0;
+        modCount++;
+        vide();
+    }
+
+    private int position(int index) {
+        return (debut + index) & (elements.length - 1);
+    }
+
+    @SuppressWarnings("unchecked")
+    private E carte(int position) {
+        return (E) elements[position];
+    }
+
+    private void agrandir() {
+        Object[] nouveaux = new Object[elements.length * 2];
+        for (int i = 0; i < taille; i++) {
+            nouveaux[i] = elements[position(i)];
+        }
+        elements = nouveaux;
+        debut = 0;
+    }
+
+    private static void verifierIndice(int index, int borne) {
+        if (index < 0 || index >= borne) {
+            throw new IndexOutOfBoundsException(index);
+        }
+    }
+}
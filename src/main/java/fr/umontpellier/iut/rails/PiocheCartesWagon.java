@@ -0,0 +1,48 @@
+package fr.umontpellier.iut.rails;
+
+import java.util.Collection;
+
+/**
+ * Pile de cartes wagon qui tient à jour le nombre de cartes de chaque couleur
+ * (le nombre de locomotives d'une pile est donc connu en temps constant)
+ */
+public class PiocheCartesWagon extends Pioche<CouleurWagon> {
+    private final int[] nbCartes = new int[CouleurWagon.values().length];
+
+    public PiocheCartesWagon() {
+    }
+
+    public PiocheCartesWagon(Collection<CouleurWagon> cartes) {
+        // les cartes sont ajoutées après l'initialisation des compteurs
+        addAll(cartes);
+    }
+
+    /**
+     * @return le nombre de cartes de la couleur donnée dans la pile
+     */
+    public int compter(CouleurWagon couleur) {
+        return nbCartes[couleur.ordinal()];
+    }
+
+    @Override
+    protected void ajoute(CouleurWagon carte) {
+        nbCartes[carte.ordinal()]++;
+    }
+
+    @Override
+    protected void retire(CouleurWagon carte) {
+        nbCartes[carte.ordinal()]--;
+    }
+
+    @Override
+    protected void vide() {
+        for (int c = 0; c < nbCartes.length; c++) {
+            nbCartes[c] = 0;
+        }
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return o instanceof CouleurWagon carte && nbCartes[carte.ordinal()] > 0;
+    }
+}
@@ -1,11 +1,38 @@
 package fr.umontpellier.iut.rails;
 
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
-import java.util.Map;
 
+/**
+ * Plateau d'une partie : la topologie (partagée entre les parties) et les
+ * propriétaires des villes et des routes (propres à la partie).
+ * <p>
+ * Les possessions sont rangées en masques de bits ({@code long[]}, le bit
+ * {@code i} du mot {@code i / 64} correspondant à l'identifiant {@code i}) :
+ * pour chaque joueur, les routes qu'il a capturées et les villes où il a une
+ * gare, ainsi que l'ensemble des routes et des villes prises. Le plateau
+ * Europe tient en deux mots pour les routes et un mot pour les villes. Les
+ * requêtes (routes d'un joueur, route double prise, routes libres entre deux
+ * villes) sont des opérations bit à bit, et l'état des possessions se copie
+ * et se compare en quelques mots ({@code instantane}, {@code restaurer}).
+ * <p>
+ * Les villes reliées par les routes de chaque joueur sont suivies par une
+ * structure union-find ({@code Connexions}) : savoir si une destination est
+ * réalisée ne demande pas de parcours du graphe. Le nombre de wagons qu'il
+ * manque à chaque joueur pour relier deux villes est suivi de la même façon
+ * ({@code Distances}, mis à jour à chaque capture).
+ * <p>
+ * Les objets {@code Ville} et {@code Route} ne sont que des vues (un plateau et
+ * un identifiant) sur la topologie et ces masques.
+ */
 public class Plateau {
+    private final Topologie topologie;
+    /**
+     * Joueurs de la partie (les masques des joueurs sont dans le même ordre)
+     */
+    private final List<Joueur> joueurs;
     /**
      * Liste des villes
      */
@@ -14,10 +41,87 @@ public class Plateau {
      * Liste des routes
      */
     private final List<Route> routes;
+    /**
+     * Routes capturées par chaque joueur
+     */
+    private final long[][] routesJoueurs;
+    /**
+     * Villes où chaque joueur a construit une gare
+     */
+    private final long[][] villesJoueurs;
+    /**
+     * Routes capturées (par n'importe quel joueur)
+     */
+    private final long[] routesPrises;
+    /**
+     * Villes ayant une gare
+     */
+    private final long[] villesPrises;
+    /**
+     * Villes reliées par les routes de chaque joueur
+     */
+    private final Connexions[] connexionsJoueurs;
+    /**
+     * Indique pour chaque joueur si ses connexions doivent être reconstruites
+     * (après la perte d'une route)
+     */
+    private final boolean[] connexionsAReconstruire;
+    /**
+     * Distances entre les villes pour chaque joueur
+     */
+    private final Distances[] distancesJoueurs;
+    /**
+     * Liste des villes sans gare (reconstruite après la construction d'une gare)
+     */
+    private List<Ville> listeVillesLibres;
+    /**
+     * Coups possibles des joueurs, prévenus lorsqu'une route ou une ville est
+     * prise
+     */
+    private final List<CoupsPossibles> coupsPossibles;
+
+    /**
+     * Construit le plateau d'une partie, dont aucune ville ni aucune route n'a
+     * de propriétaire
+     *
+     * @param topologie la topologie du plateau
+     * @param joueurs   les joueurs de la partie
+     */
+    public Plateau(Topologie topologie, List<Joueur> joueurs) {
+        this.topologie = topologie;
+        this.joueurs = joueurs;
+        Ville[] vues = new Ville[topologie.getNbVilles()];
+        for (int i = 0; i < vues.length; i++) {
+            vues[i] = new Ville(this, i);
+        }
+        villes = List.of(vues);
+        Route[] vuesRoutes = new Route[topologie.getNbRoutes()];
+        for (int i = 0; i < vuesRoutes.length; i++) {
+            vuesRoutes[i] = switch (topologie.getType(i)) {
+                case Topologie.TUNNEL -> new Tunnel(this, i);
+                case Topologie.FERRY -> new Ferry(this, i);
+                default -> new Route(this, i);
+            };
+        }
+        routes = List.of(vuesRoutes);
+        routesJoueurs = new long[joueurs.size()][nbMots(vuesRoutes.length)];
+        villesJoueurs = new long[joueurs.size()][nbMots(vues.length)];
+        routesPrises = new long[nbMots(vuesRoutes.length)];
+        villesPrises = new long[nbMots(vues.length)];
+        coupsPossibles = new ArrayList<>();
+        connexionsJoueurs = new Connexions[joueurs.size()];
+        for (int j = 0; j < connexionsJoueurs.length; j++) {
+            connexionsJoueurs[j] = new Connexions(vues.length);
+        }
+        connexionsAReconstruire = new boolean[joueurs.size()];
+        distancesJoueurs = new Distances[joueurs.size()];
+        for (int j = 0; j < distancesJoueurs.length; j++) {
+            distancesJoueurs[j] = new Distances(this, joueurs.get(j));
+        }
+    }
 
-    public Plateau(List<Ville> villes, List<Route> routes) {
-        this.villes = villes;
-        this.routes = routes;
+    public Topologie getTopologie() {
+        return topologie;
     }
 
     public List<Ville> getVilles() {
@@ -28,170 +132,325 @@ public class Plateau {
         return routes;
     }
 
-    static public Plateau makePlateauEurope() {
-        Map<String, Ville> villes = new HashMap<>();
-        villes.put("amsterdam", new Ville("Amsterdam"));
-        villes.put("angora", new Ville("Angora"));
-        villes.put("athina", new Ville("Athina"));
-        villes.put("barcelona", new Ville("Barcelona"));
-        villes.put("berlin", new Ville("Berlin"));
-        villes.put("brest", new Ville("Brest"));
-        villes.put("brindisi", new Ville("Brindisi"));
-        villes.put("bruxelles", new Ville("Bruxelles"));
-        villes.put("bucuresti", new Ville("Bucuresti"));
-        villes.put("budapest", new Ville("Budapest"));
-        villes.put("cadiz", new Ville("Cadiz"));
-        villes.put("constantinople", new Ville("Constantinople"));
-        villes.put("danzig", new Ville("Danzig"));
-        villes.put("dieppe", new Ville("Dieppe"));
-        villes.put("edinburgh", new Ville("Edinburgh"));
-        villes.put("erzurum", new Ville("Erzurum"));
-        villes.put("essen", new Ville("Essen"));
-        villes.put("frankfurt", new Ville("Frankfurt"));
-        villes.put("kharkov", new Ville("Kharkov"));
-        villes.put("kobenhavn", new Ville("Kobenhavn"));
-        villes.put("kyiv", new Ville("Kyiv"));
-        villes.put("lisboa", new Ville("Lisboa"));
-        villes.put("london", new Ville("London"));
-        villes.put("madrid", new Ville("Madrid"));
-        villes.put("marseille", new Ville("Marseille"));
-        villes.put("moskva", new Ville("Moskva"));
-        villes.put("munchen", new Ville("Munchen"));
-        villes.put("palermo", new Ville("Palermo"));
-        villes.put("pamplona", new Ville("Pamplona"));
-        villes.put("paris", new Ville("Paris"));
-        villes.put("petrograd", new Ville("Petrograd"));
-        villes.put("riga", new Ville("Riga"));
-        villes.put("roma", new Ville("Roma"));
-        villes.put("rostov", new Ville("Rostov"));
-        villes.put("sarajevo", new Ville("Sarajevo"));
-        villes.put("sevastopol", new Ville("Sevastopol"));
-        villes.put("smolensk", new Ville("Smolensk"));
-        villes.put("smyrna", new Ville("Smyrna"));
-        villes.put("sochi", new Ville("Sochi"));
-        villes.put("sofia", new Ville("Sofia"));
-        villes.put("stockholm", new Ville("Stockholm"));
-        villes.put("venezia", new Ville("Venezia"));
-        villes.put("warszawa", new Ville("Warszawa"));
-        villes.put("wien", new Ville("Wien"));
-        villes.put("wilno", new Ville("Wilno"));
-        villes.put("zagrab", new Ville("Zagrab"));
-        villes.put("zurich", new Ville("Zurich"));
-
-        ArrayList<Route> routes = new ArrayList<>();
-        routes.add(new Route(villes.get("amsterdam"), villes.get("bruxelles"), 1, CouleurWagon.NOIR));
-        routes.add(new Route(villes.get("amsterdam"), villes.get("essen"), 3, CouleurWagon.JAUNE));
-        routes.add(new Route(villes.get("amsterdam"), villes.get("frankfurt"), 2, CouleurWagon.BLANC));
-        routes.add(new Ferry(villes.get("amsterdam"), villes.get("london"), 2, CouleurWagon.GRIS, 2));
-        routes.add(new Tunnel(villes.get("angora"), villes.get("constantinople"), 2, CouleurWagon.GRIS));
-        routes.add(new Route(villes.get("angora"), villes.get("erzurum"), 3, CouleurWagon.NOIR));
-        routes.add(new Tunnel(villes.get("angora"), villes.get("smyrna"), 3, CouleurWagon.ORANGE));
-        routes.add(new Ferry(villes.get("athina"), villes.get("brindisi"), 4, CouleurWagon.GRIS, 1));
-        routes.add(new Route(villes.get("athina"), villes.get("sarajevo"), 4, CouleurWagon.VERT));
-        routes.add(new Ferry(villes.get("athina"), villes.get("smyrna"), 2, CouleurWagon.GRIS, 1));
-        routes.add(new Route(villes.get("athina"), villes.get("sofia"), 3, CouleurWagon.ROSE));
-        routes.add(new Route(villes.get("barcelona"), villes.get("madrid"), 2, CouleurWagon.JAUNE));
-        routes.add(new Route(villes.get("barcelona"), villes.get("marseille"), 4, CouleurWagon.GRIS));
-        routes.add(new Tunnel(villes.get("barcelona"), villes.get("pamplona"), 2, CouleurWagon.GRIS));
-        routes.add(new Route(villes.get("berlin"), villes.get("danzig"), 4, CouleurWagon.GRIS));
-        routes.add(new Route(villes.get("berlin"), villes.get("essen"), 2, CouleurWagon.BLEU));
-        routes.add(new Route(villes.get("berlin"), villes.get("frankfurt"), 3, CouleurWagon.ROUGE));
-        routes.add(new Route(villes.get("berlin"), villes.get("frankfurt"), 3, CouleurWagon.NOIR));
-        routes.add(new Route(villes.get("berlin"), villes.get("warszawa"), 4, CouleurWagon.JAUNE));
-        routes.add(new Route(villes.get("berlin"), villes.get("warszawa"), 4, CouleurWagon.ROSE));
-        routes.add(new Route(villes.get("berlin"), villes.get("wien"), 3, CouleurWagon.VERT));
-        routes.add(new Route(villes.get("brest"), villes.get("dieppe"), 2, CouleurWagon.ORANGE));
-        routes.add(new Route(villes.get("brest"), villes.get("pamplona"), 4, CouleurWagon.ROSE));
-        routes.add(new Route(villes.get("brest"), villes.get("paris"), 3, CouleurWagon.NOIR));
-        routes.add(new Ferry(villes.get("brindisi"), villes.get("palermo"), 3, CouleurWagon.GRIS, 1));
-        routes.add(new Route(villes.get("brindisi"), villes.get("roma"), 2, CouleurWagon.BLANC));
-        routes.add(new Route(villes.get("bruxelles"), villes.get("dieppe"), 2, CouleurWagon.VERT));
-        routes.add(new Route(villes.get("bruxelles"), villes.get("frankfurt"), 2, CouleurWagon.BLEU));
-        routes.add(new Route(villes.get("bruxelles"), villes.get("paris"), 2, CouleurWagon.JAUNE));
-        routes.add(new Route(villes.get("bruxelles"), villes.get("paris"), 2, CouleurWagon.ROUGE));
-        routes.add(new Tunnel(villes.get("bucuresti"), villes.get("budapest"), 4, CouleurWagon.GRIS));
-        routes.add(new Route(villes.get("bucuresti"), villes.get("constantinople"), 3, CouleurWagon.JAUNE));
-        routes.add(new Route(villes.get("bucuresti"), villes.get("kyiv"), 4, CouleurWagon.GRIS));
-        routes.add(new Route(villes.get("bucuresti"), villes.get("sevastopol"), 4, CouleurWagon.BLANC));
-        routes.add(new Tunnel(villes.get("bucuresti"), villes.get("sofia"), 2, CouleurWagon.GRIS));
-        routes.add(new Tunnel(villes.get("budapest"), villes.get("kyiv"), 6, CouleurWagon.GRIS));
-        routes.add(new Route(villes.get("budapest"), villes.get("sarajevo"), 3, CouleurWagon.ROSE));
-        routes.add(new Route(villes.get("budapest"), villes.get("wien"), 1, CouleurWagon.ROUGE));
-        routes.add(new Route(villes.get("budapest"), villes.get("wien"), 1, CouleurWagon.BLANC));
-        routes.add(new Route(villes.get("budapest"), villes.get("zagrab"), 2, CouleurWagon.ORANGE));
-        routes.add(new Route(villes.get("cadiz"), villes.get("lisboa"), 2, CouleurWagon.BLEU));
-        routes.add(new Route(villes.get("cadiz"), villes.get("madrid"), 3, CouleurWagon.ORANGE));
-        routes.add(new Ferry(villes.get("constantinople"), villes.get("sevastopol"), 4, CouleurWagon.GRIS, 2));
-        routes.add(new Tunnel(villes.get("constantinople"), villes.get("smyrna"), 2, CouleurWagon.GRIS));
-        routes.add(new Route(villes.get("constantinople"), villes.get("sofia"), 3, CouleurWagon.BLEU));
-        routes.add(new Route(villes.get("danzig"), villes.get("riga"), 3, CouleurWagon.NOIR));
-        routes.add(new Route(villes.get("danzig"), villes.get("warszawa"), 2, CouleurWagon.GRIS));
-        routes.add(new Ferry(villes.get("dieppe"), villes.get("london"), 2, CouleurWagon.GRIS, 1));
-        routes.add(new Ferry(villes.get("dieppe"), villes.get("london"), 2, CouleurWagon.GRIS, 1));
-        routes.add(new Route(villes.get("dieppe"), villes.get("paris"), 1, CouleurWagon.ROSE));
-        routes.add(new Route(villes.get("edinburgh"), villes.get("london"), 4, CouleurWagon.ORANGE));
-        routes.add(new Route(villes.get("edinburgh"), villes.get("london"), 4, CouleurWagon.NOIR));
-        routes.add(new Ferry(villes.get("erzurum"), villes.get("sevastopol"), 4, CouleurWagon.GRIS, 2));
-        routes.add(new Tunnel(villes.get("erzurum"), villes.get("sochi"), 3, CouleurWagon.ROUGE));
-        routes.add(new Route(villes.get("essen"), villes.get("frankfurt"), 2, CouleurWagon.VERT));
-        routes.add(new Ferry(villes.get("essen"), villes.get("kobenhavn"), 3, CouleurWagon.GRIS, 1));
-        routes.add(new Ferry(villes.get("essen"), villes.get("kobenhavn"), 3, CouleurWagon.GRIS, 1));
-        routes.add(new Route(villes.get("frankfurt"), villes.get("munchen"), 2, CouleurWagon.ROSE));
-        routes.add(new Route(villes.get("frankfurt"), villes.get("paris"), 3, CouleurWagon.ORANGE));
-        routes.add(new Route(villes.get("frankfurt"), villes.get("paris"), 3, CouleurWagon.BLANC));
-        routes.add(new Route(villes.get("kharkov"), villes.get("kyiv"), 4, CouleurWagon.GRIS));
-        routes.add(new Route(villes.get("kharkov"), villes.get("moskva"), 4, CouleurWagon.GRIS));
-        routes.add(new Route(villes.get("kharkov"), villes.get("rostov"), 2, CouleurWagon.VERT));
-        routes.add(new Route(villes.get("kobenhavn"), villes.get("stockholm"), 3, CouleurWagon.JAUNE));
-        routes.add(new Route(villes.get("kobenhavn"), villes.get("stockholm"), 3, CouleurWagon.BLANC));
-        routes.add(new Route(villes.get("kyiv"), villes.get("smolensk"), 3, CouleurWagon.ROUGE));
-        routes.add(new Route(villes.get("kyiv"), villes.get("warszawa"), 4, CouleurWagon.GRIS));
-        routes.add(new Route(villes.get("kyiv"), villes.get("wilno"), 2, CouleurWagon.GRIS));
-        routes.add(new Route(villes.get("lisboa"), villes.get("madrid"), 3, CouleurWagon.ROSE));
-        routes.add(new Tunnel(villes.get("madrid"), villes.get("pamplona"), 3, CouleurWagon.BLANC));
-        routes.add(new Tunnel(villes.get("madrid"), villes.get("pamplona"), 3, CouleurWagon.NOIR));
-        routes.add(new Route(villes.get("marseille"), villes.get("pamplona"), 4, CouleurWagon.ROUGE));
-        routes.add(new Route(villes.get("marseille"), villes.get("paris"), 4, CouleurWagon.GRIS));
-        routes.add(new Tunnel(villes.get("marseille"), villes.get("roma"), 4, CouleurWagon.GRIS));
-        routes.add(new Tunnel(villes.get("marseille"), villes.get("zurich"), 2, CouleurWagon.ROSE));
-        routes.add(new Route(villes.get("moskva"), villes.get("petrograd"), 4, CouleurWagon.BLANC));
-        routes.add(new Route(villes.get("moskva"), villes.get("smolensk"), 2, CouleurWagon.ORANGE));
-        routes.add(new Tunnel(villes.get("munchen"), villes.get("venezia"), 2, CouleurWagon.BLEU));
-        routes.add(new Route(villes.get("munchen"), villes.get("wien"), 3, CouleurWagon.ORANGE));
-        routes.add(new Tunnel(villes.get("munchen"), villes.get("zurich"), 2, CouleurWagon.JAUNE));
-        routes.add(new Ferry(villes.get("palermo"), villes.get("roma"), 4, CouleurWagon.GRIS, 1));
-        routes.add(new Ferry(villes.get("palermo"), villes.get("smyrna"), 6, CouleurWagon.GRIS, 2));
-        routes.add(new Route(villes.get("pamplona"), villes.get("paris"), 4, CouleurWagon.BLEU));
-        routes.add(new Route(villes.get("pamplona"), villes.get("paris"), 4, CouleurWagon.VERT));
-        routes.add(new Tunnel(villes.get("paris"), villes.get("zurich"), 3, CouleurWagon.GRIS));
-        routes.add(new Route(villes.get("petrograd"), villes.get("riga"), 4, CouleurWagon.GRIS));
-        routes.add(new Tunnel(villes.get("petrograd"), villes.get("stockholm"), 8, CouleurWagon.GRIS));
-        routes.add(new Route(villes.get("petrograd"), villes.get("wilno"), 4, CouleurWagon.BLEU));
-        routes.add(new Route(villes.get("riga"), villes.get("wilno"), 4, CouleurWagon.VERT));
-        routes.add(new Route(villes.get("roma"), villes.get("venezia"), 2, CouleurWagon.NOIR));
-        routes.add(new Route(villes.get("rostov"), villes.get("sevastopol"), 4, CouleurWagon.GRIS));
-        routes.add(new Route(villes.get("rostov"), villes.get("sochi"), 2, CouleurWagon.GRIS));
-        routes.add(new Tunnel(villes.get("sarajevo"), villes.get("sofia"), 2, CouleurWagon.GRIS));
-        routes.add(new Route(villes.get("sarajevo"), villes.get("zagrab"), 3, CouleurWagon.ROUGE));
-        routes.add(new Ferry(villes.get("sevastopol"), villes.get("sochi"), 2, CouleurWagon.GRIS, 1));
-        routes.add(new Route(villes.get("smolensk"), villes.get("wilno"), 3, CouleurWagon.JAUNE));
-        routes.add(new Route(villes.get("venezia"), villes.get("zagrab"), 2, CouleurWagon.GRIS));
-        routes.add(new Tunnel(villes.get("venezia"), villes.get("zurich"), 2, CouleurWagon.VERT));
-        routes.add(new Route(villes.get("warszawa"), villes.get("wien"), 4, CouleurWagon.BLEU));
-        routes.add(new Route(villes.get("warszawa"), villes.get("wilno"), 3, CouleurWagon.ROUGE));
-        routes.add(new Route(villes.get("wien"), villes.get("zagrab"), 2, CouleurWagon.GRIS));
-
-        // Correction du nom pour les routes doubles
-        for (int i = 0; i < routes.size(); i++) {
-            Route r1 = routes.get(i);
-            if (i < routes.size() - 1) {
-                Route r2 = routes.get(i + 1);
-                if (r1.getNom().equals(r2.getNom())) {
-                    r1.setNom(r1.getNom() + "(1)");
-                    r2.setNom(r2.getNom() + "(2)");
+    /**
+     * @return les routes dont la ville est une extrémité
+     */
+    public List<Route> getRoutesAdjacentes(Ville ville) {
+        int[] ids = topologie.getRoutesAdjacentes(ville.getId());
+        List<Route> adjacentes = new ArrayList<>(ids.length);
+        for (int id : ids) {
+            adjacentes.add(routes.get(id));
+        }
+        return adjacentes;
+    }
+
+    /**
+     * @return la ville portant ce nom (ou {@code null} s'il n'y en a pas)
+     */
+    public Ville getVille(String nom) {
+        int id = topologie.getIdVille(nom);
+        return id == Topologie.AUCUNE ? null : villes.get(id);
+    }
+
+    /**
+     * @return la route portant ce nom (ou {@code null} s'il n'y en a pas)
+     */
+    public Route getRoute(String nom) {
+        int id = topologie.getIdRoute(nom);
+        return id == Topologie.AUCUNE ? null : routes.get(id);
+    }
+
+    /**
+     * @return les villes sans gare (dans l'ordre de la liste des villes)
+     */
+    public List<Ville> getVillesLibres() {
+        if (listeVillesLibres == null) {
+            List<Ville> libres = new ArrayList<>(villes.size() - nbBits(villesPrises));
+            for (int i = 0; i < villes.size(); i++) {
+                if (!contient(villesPrises, i)) libres.add(villes.get(i));
+            }
+            listeVillesLibres = Collections.unmodifiableList(libres);
+        }
+        return listeVillesLibres;
+    }
+
+    /**
+     * Enregistre les coups possibles d'un joueur, qui seront prévenus des
+     * changements de propriétaire des routes
+     */
+    void ajouterCoupsPossibles(CoupsPossibles coups) {
+        coupsPossibles.add(coups);
+    }
+
+    /**
+     * @return les routes capturées par le joueur (dans l'ordre de la liste des
+     * routes)
+     */
+    public List<Route> getRoutesCapturees(Joueur joueur) {
+        List<Route> capturees = new ArrayList<>();
+        long[] masque = routesJoueurs[indice(joueur)];
+        for (int mot = 0; mot < masque.length; mot++) {
+            for (long bits = masque[mot]; bits != 0; bits &= bits - 1) {
+                capturees.add(routes.get((mot << 6) + Long.numberOfTrailingZeros(bits)));
+            }
+        }
+        return capturees;
+    }
+
+    /**
+     * @return vrai si le joueur a capturé la route
+     */
+    public boolean aCapture(Joueur joueur, Route route) {
+        int indice = joueurs.indexOf(joueur);
+        return indice >= 0 && contient(routesJoueurs[indice], route.getId());
+    }
+
+    /**
+     * @return vrai si les deux villes sont reliées par des routes capturées par
+     * le joueur
+     */
+    public boolean sontReliees(Joueur joueur, Ville ville1, Ville ville2) {
+        return ville1 == ville2 || getConnexions(indice(joueur)).sontReliees(ville1.getId(), ville2.getId());
+    }
+
+    /**
+     * @return vrai si le joueur a relié les deux villes de la destination par
+     * ses routes
+     */
+    public boolean estRealisee(Joueur joueur, Destination destination) {
+        int ville1 = destination.getIdVille1();
+        int ville2 = destination.getIdVille2();
+        return ville1 == ville2 || getConnexions(indice(joueur)).sontReliees(ville1, ville2);
+    }
+
+    /**
+     * @return une copie des villes reliées par les routes du joueur
+     */
+    Connexions copierConnexions(Joueur joueur) {
+        return new Connexions(getConnexions(indice(joueur)));
+    }
+
+    /**
+     * @return les villes où le joueur a construit une gare (dans l'ordre de la
+     * liste des villes)
+     */
+    public List<Ville> getGares(Joueur joueur) {
+        List<Ville> gares = new ArrayList<>(3);
+        long[] masque = villesJoueurs[indice(joueur)];
+        for (int mot = 0; mot < masque.length; mot++) {
+            for (long bits = masque[mot]; bits != 0; bits &= bits - 1) {
+                gares.add(villes.get((mot << 6) + Long.numberOfTrailingZeros(bits)));
+            }
+        }
+        return gares;
+    }
+
+    /**
+     * @return les distances entre les villes pour le joueur (le nombre de
+     * wagons qu'il lui manque pour les relier), tenues à jour au fil de la
+     * partie
+     */
+    public Distances getDistances(Joueur joueur) {
+        return distancesJoueurs[indice(joueur)];
+    }
+
+    /**
+     * @return le coût d'une route pour le joueur : sa longueur si elle est
+     * libre, 0 s'il l'a capturée, {@code Distances.INFINI} si un autre joueur
+     * l'a capturée
+     */
+    int getCoutRoute(Joueur joueur, int route) {
+        return cout(route, getProprietaireRoute(route), joueur);
+    }
+
+    /**
+     * @return le plus petit coût pour le joueur des routes reliant directement
+     * les deux villes ({@code Distances.INFINI} s'il n'y en a pas)
+     */
+    int getCoutArete(Joueur joueur, int ville1, int ville2) {
+        long[] adjacentes1 = topologie.getMasqueRoutesAdjacentes(ville1);
+        long[] adjacentes2 = topologie.getMasqueRoutesAdjacentes(ville2);
+        int cout = Distances.INFINI;
+        for (int mot = 0; mot < adjacentes1.length; mot++) {
+            for (long bits = adjacentes1[mot] & adjacentes2[mot]; bits != 0; bits &= bits - 1) {
+                cout = Math.min(cout, getCoutRoute(joueur, (mot << 6) + Long.numberOfTrailingZeros(bits)));
+            }
+        }
+        return cout;
+    }
+
+    private int cout(int route, Joueur proprietaire, Joueur joueur) {
+        if (proprietaire == null) return topologie.getLongueur(route);
+        return proprietaire == joueur ? 0 : Distances.INFINI;
+    }
+
+    /**
+     * @return les connexions du joueur d'indice donné, reconstruites si le
+     * joueur a perdu une route
+     */
+    private Connexions getConnexions(int indice) {
+        Connexions connexions = connexionsJoueurs[indice];
+        if (connexionsAReconstruire[indice]) {
+            connexions.vider();
+            long[] masque = routesJoueurs[indice];
+            for (int mot = 0; mot < masque.length; mot++) {
+                for (long bits = masque[mot]; bits != 0; bits &= bits - 1) {
+                    int route = (mot << 6) + Long.numberOfTrailingZeros(bits);
+                    connexions.relier(topologie.getVille1(route), topologie.getVille2(route));
                 }
             }
+            connexionsAReconstruire[indice] = false;
+        }
+        return connexions;
+    }
+
+    /**
+     * @return les routes reliant directement les deux villes qui n'ont pas
+     * encore été capturées
+     */
+    public List<Route> getRoutesLibresEntre(Ville ville1, Ville ville2) {
+        long[] adjacentes1 = topologie.getMasqueRoutesAdjacentes(ville1.getId());
+        long[] adjacentes2 = topologie.getMasqueRoutesAdjacentes(ville2.getId());
+        List<Route> libres = new ArrayList<>(2);
+        for (int mot = 0; mot < routesPrises.length; mot++) {
+            for (long bits = adjacentes1[mot] & adjacentes2[mot] & ~routesPrises[mot]; bits != 0; bits &= bits - 1) {
+                libres.add(routes.get((mot << 6) + Long.numberOfTrailingZeros(bits)));
+            }
+        }
+        return libres;
+    }
+
+    /**
+     * @return une copie des possessions de tous les joueurs (routes puis villes
+     * de chaque joueur), à passer à {@code restaurer}. Deux plateaux ont les
+     * mêmes possessions si leurs instantanés sont égaux
+     * ({@code Arrays.equals}).
+     */
+    public long[] instantane() {
+        int nbMotsRoutes = routesPrises.length;
+        int nbMotsVilles = villesPrises.length;
+        long[] instantane = new long[joueurs.size() * (nbMotsRoutes + nbMotsVilles)];
+        int position = 0;
+        for (int j = 0; j < joueurs.size(); j++) {
+            System.arraycopy(routesJoueurs[j], 0, instantane, position, nbMotsRoutes);
+            position += nbMotsRoutes;
+            System.arraycopy(villesJoueurs[j], 0, instantane, position, nbMotsVilles);
+            position += nbMotsVilles;
+        }
+        return instantane;
+    }
+
+    /**
+     * Remet les possessions des joueurs dans l'état d'un instantané (obtenu par
+     * {@code instantane} sur ce plateau ou un plateau de même topologie et
+     * ayant le même nombre de joueurs)
+     */
+    public void restaurer(long[] instantane) {
+        int nbMotsRoutes = routesPrises.length;
+        int nbMotsVilles = villesPrises.length;
+        if (instantane.length != joueurs.size() * (nbMotsRoutes + nbMotsVilles)) {
+            throw new IllegalArgumentException("instantané d'un autre plateau");
+        }
+        Arrays.fill(routesPrises, 0);
+        Arrays.fill(villesPrises, 0);
+        int position = 0;
+        for (int j = 0; j < joueurs.size(); j++) {
+            System.arraycopy(instantane, position, routesJoueurs[j], 0, nbMotsRoutes);
+            position += nbMotsRoutes;
+            System.arraycopy(instantane, position, villesJoueurs[j], 0, nbMotsVilles);
+            position += nbMotsVilles;
+            for (int mot = 0; mot < nbMotsRoutes; mot++) routesPrises[mot] |= routesJoueurs[j][mot];
+            for (int mot = 0; mot < nbMotsVilles; mot++) villesPrises[mot] |= villesJoueurs[j][mot];
+        }
+        listeVillesLibres = null;
+        Arrays.fill(connexionsAReconstruire, true);
+        for (Distances distances : distancesJoueurs) {
+            distances.invalider();
+        }
+        for (CoupsPossibles coups : coupsPossibles) {
+            coups.toutVerifier();
+        }
+    }
+
+    Joueur getProprietaireVille(int ville) {
+        return proprietaire(villesPrises, villesJoueurs, ville);
+    }
+
+    void setProprietaireVille(int ville, Joueur proprietaire) {
+        changerProprietaire(villesPrises, villesJoueurs, ville, proprietaire);
+        listeVillesLibres = null;
+    }
+
+    Joueur getProprietaireRoute(int route) {
+        return proprietaire(routesPrises, routesJoueurs, route);
+    }
+
+    void setProprietaireRoute(int route, Joueur proprietaire) {
+        Joueur ancien = getProprietaireRoute(route);
+        changerProprietaire(routesPrises, routesJoueurs, route, proprietaire);
+        if (ancien != null && ancien != proprietaire) {
+            connexionsAReconstruire[joueurs.indexOf(ancien)] = true;
+        }
+        if (proprietaire != null && ancien != proprietaire) {
+            connexionsJoueurs[indice(proprietaire)].relier(topologie.getVille1(route), topologie.getVille2(route));
+        }
+        if (ancien != proprietaire) {
+            for (int j = 0; j < distancesJoueurs.length; j++) {
+                Joueur joueur = joueurs.get(j);
+                distancesJoueurs[j].routeModifiee(route, cout(route, ancien, joueur), cout(route, proprietaire, joueur));
+            }
+        }
+        for (CoupsPossibles coups : coupsPossibles) {
+            coups.routeModifiee(route);
+        }
+    }
+
+    private Joueur proprietaire(long[] prises, long[][] masquesJoueurs, int id) {
+        if (!contient(prises, id)) {
+            return null;
+        }
+        for (int j = 0; j < masquesJoueurs.length; j++) {
+            if (contient(masquesJoueurs[j], id)) return joueurs.get(j);
+        }
+        return null;
+    }
+
+    private void changerProprietaire(long[] prises, long[][] masquesJoueurs, int id, Joueur proprietaire) {
+        // l'indice est vérifié avant toute modification
+        int indice = proprietaire == null ? -1 : indice(proprietaire);
+        long bit = 1L << id;
+        for (long[] masque : masquesJoueurs) {
+            masque[id >>> 6] &= ~bit;
+        }
+        if (indice < 0) {
+            prises[id >>> 6] &= ~bit;
+        } else {
+            prises[id >>> 6] |= bit;
+            masquesJoueurs[indice][id >>> 6] |= bit;
+        }
+    }
+
+    private int indice(Joueur joueur) {
+        int indice = joueurs.indexOf(joueur);
+        if (indice < 0) {
+            throw new IllegalArgumentException(joueur.getNom() + " ne joue pas sur ce plateau");
+        }
+        return indice;
+    }
+
+    private static int nbMots(int nbBits) {
+        return (nbBits + 63) >>> 6;
+    }
+
+    private static boolean contient(long[] masque, int id) {
+        return (masque[id >>> 6] & (1L << id)) != 0;
+    }
+
+    private static int nbBits(long[] masque) {
+        int nb = 0;
+        for (long mot : masque) {
+            nb += Long.bitCount(mot);
         }
-        return new Plateau(new ArrayList<>(villes.values()), routes);
+        return nb;
     }
 }
@@ -1,85 +1,95 @@
 package fr.umontpellier.iut.rails;
 
-import java.util.ArrayList;
-import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 
+/**
+ * Route d'une partie : vue sur une route de la topologie (partagée entre les
+ * parties) et sur son propriétaire dans le plateau de la partie
+ */
 public class Route {
     /**
-     * Première extrémité
+     * Plateau de la partie
      */
-    private Ville ville1;
+    private final Plateau plateau;
     /**
-     * Deuxième extrémité
+     * Identifiant de la route dans la topologie (et position dans la liste des
+     * routes du plateau)
      */
-    private Ville ville2;
-    /**
-     * Nombre de segments
-     */
-    private int longueur;
-    /**
-     * CouleurWagon pour capturer la route (éventuellement GRIS, mais pas LOCOMOTIVE)
-     */
-    private CouleurWagon couleur;
-    /**
-     * Joueur qui a capturé la route (`null` si la route est encore à prendre)
-     */
-    private Joueur proprietaire;
-    /**
-     * Nom unique de la route. Ce nom est nécessaire pour résoudre l'ambiguïté entre les routes doubles
-     * (voir la classe Plateau pour plus de clarté)
-     */
-    private String nom;
+    private final int id;
 
-    public Route(Ville ville1, Ville ville2, int longueur, CouleurWagon couleur) {
-        this.ville1 = ville1;
-        this.ville2 = ville2;
-        this.longueur = longueur;
-        this.couleur = couleur;
-        nom = ville1.getNom() + " - " + ville2.getNom();
-        proprietaire = null;
+    Route(Plateau plateau, int id) {
+        this.plateau = plateau;
+        this.id = id;
     }
 
     public Ville getVille1() {
-        return ville1;
+        return plateau.getVilles().get(plateau.getTopologie().getVille1(id));
     }
 
     public Ville getVille2() {
-        return ville2;
+        return plateau.getVilles().get(plateau.getTopologie().getVille2(id));
     }
 
+    /**
+     * @return le nombre de segments
+     */
     public int getLongueur() {
-        return longueur;
+        return plateau.getTopologie().getLongueur(id);
     }
 
+    /**
+     * @return la couleur des cartes pour capturer la route (éventuellement GRIS,
+     * mais pas LOCOMOTIVE)
+     */
     public CouleurWagon getCouleur() {
-        return couleur;
+        return plateau.getTopologie().getCouleur(id);
     }
 
+    /**
+     * @return le joueur qui a capturé la route (`null` si la route est encore à
+     * prendre)
+     */
     public Joueur getProprietaire() {
-        return proprietaire;
+        return plateau.getProprietaireRoute(id);
     }
 
     public void setProprietaire(Joueur proprietaire) {
-        this.proprietaire = proprietaire;
+        plateau.setProprietaireRoute(id, proprietaire);
     }
 
+    /**
+     * @return le nom unique de la route. Ce nom est nécessaire pour résoudre
+     * l'ambiguïté entre les routes doubles (voir la classe Topologie)
+     */
     public String getNom() {
-        return nom;
+        return plateau.getTopologie().getNomRoute(id);
     }
 
-    public void setNom(String nom) {
-        this.nom = nom;
+    public int getId() {
+        return id;
+    }
+
+    protected Plateau getPlateau() {
+        return plateau;
+    }
+
+    /**
+     * @return l'autre route reliant les mêmes villes si la route est double
+     * (`null` sinon)
+     */
+    public Route getRouteDouble() {
+        int routeDouble = plateau.getTopologie().getRouteDouble(id);
+        return routeDouble == Topologie.AUCUNE ? null : plateau.getRoutes().get(routeDouble);
     }
 
     public String toLog() {
-        return String.format("<span class=\"route\">%s - %s</span>", ville1.getNom(), ville2.getNom());
+        return String.format("<span class=\"route\">%s - %s</span>", getVille1().getNom(), getVille2().getNom());
     }
 
     @Override
     public String toString() {
-        return String.format("[%s - %s (%d, %s)]", ville1, ville2, longueur, couleur);
+        return String.format("[%s - %s (%d, %s)]", getVille1(), getVille2(), getLongueur(), getCouleur());
     }
 
     /**
@@ -88,6 +98,7 @@ public class Route {
     public Object asPOJO() {
         HashMap<String, Object> data = new HashMap<>();
         data.put("nom", getNom());
+        Joueur proprietaire = getProprietaire();
         if (proprietaire != null) {
             data.put("proprietaire", proprietaire.getCouleur());
         }
@@ -95,43 +106,31 @@ public class Route {
     }
 
     public boolean estCapturablePar(Joueur j) {
-        if (proprietaire == null && j.getNbWagons() >= longueur) {
-            int i = 0;
-            ArrayList<Route> routesJoueurs = routesCaptureesParJoueur(j);
-            while (i < routesJoueurs.size() && !routesJoueurs.get(i).estDouble(this)) i++;
-            if (i < routesJoueurs.size()) return false;
-            if (couleur != CouleurWagon.GRIS) {
-                int nbCartesBonneCouleur = Collections.frequency(j.getCartesWagon(), couleur);
-                if (nbCartesBonneCouleur >= longueur) return true;
-                else return Collections.frequency(j.getCartesWagon(), CouleurWagon.LOCOMOTIVE) >= longueur - nbCartesBonneCouleur;
-            }
-            else {
-                int k = 0;
-                boolean cartesSuffisantes = false;
-                List<CouleurWagon> cartesJoueur = j.getCartesWagon();
-                while (k < cartesJoueur.size() && !cartesSuffisantes) {
-                    if (Collections.frequency(cartesJoueur, cartesJoueur.get(k)) >= longueur) cartesSuffisantes = true;
-                    else if(Collections.frequency(cartesJoueur, CouleurWagon.LOCOMOTIVE) >= longueur - Collections.frequency(cartesJoueur, cartesJoueur.get(k))) cartesSuffisantes = true;
-                    else k++;
-                }
-                return cartesSuffisantes;
-            }
+        int longueur = getLongueur();
+        CouleurWagon couleur = getCouleur();
+        if (getProprietaire() == null && j.getNbWagons() >= longueur) {
+            boolean cartesSuffisantes = couleur != CouleurWagon.GRIS
+                    ? j.getNbCartesWagon(couleur) + j.getNbCartesWagon(CouleurWagon.LOCOMOTIVE) >= longueur
+                    : j.peutPayerUneCouleur(longueur);
+            return cartesSuffisantes && !aUneRouteDoubleCaptureePar(j);
         }
         return false;
     }
 
-    protected boolean estDouble(Route r) {
-        return ((this.ville1.equals(r.ville1) || this.ville1.equals(r.ville2))
-                && (this.ville2.equals(r.ville2) || this.ville2.equals(r.ville1))
-                && !this.nom.equals(r.nom));
+    /**
+     * @return vrai si le joueur a déjà capturé la route double de cette route
+     */
+    protected boolean aUneRouteDoubleCaptureePar(Joueur j) {
+        Route routeDouble = getRouteDouble();
+        return routeDouble != null && plateau.aCapture(j, routeDouble);
     }
 
-    protected ArrayList<Route> routesCaptureesParJoueur(Joueur j) {
-        ArrayList<Route> routes = new ArrayList<>();
-        for (Route route : j.getJeu().getRoutes()) {
-            if (route.proprietaire != null && route.proprietaire.equals(j)) routes.add(route);
-        }
-        return routes;
+    /**
+     * @return les paiements possibles de la route avec les cartes du joueur, du
+     * meilleur au moins bon (pour un tunnel, sans les cartes supplémentaires)
+     */
+    public List<Paiement> getPaiements(Joueur j) {
+        return j.getPaiements(getCouleur(), getLongueur(), 0);
     }
 
     /**
@@ -140,17 +139,51 @@ public class Route {
      * @param j - Le joueur qui capture la route.
      */
     public void capturerParJoueur(Joueur j) {
-        for (CouleurWagon c : j.choisirCarteWagon(couleur, longueur, false)) j.getJeu().defausserCarteWagon(c);
-        j.poserWagon(longueur);
-        switch (longueur) {
-            case 1 -> j.mettreAJourScore(1);
-            case 2 -> j.mettreAJourScore(2);
-            case 3 -> j.mettreAJourScore(4);
-            case 4 -> j.mettreAJourScore(7);
-            case 6 -> j.mettreAJourScore(15);
-            case 8 -> j.mettreAJourScore(21);
-        }
-        proprietaire = j;
-        j.log(String.format("%s a capturé la route %s.", j.toLog(), toLog()));
+        j.getJeu().executer(fin -> capturerParJoueur(j, () -> fin.accept(null)));
+    }
+
+    /**
+     * Version non bloquante de {@code capturerParJoueur} : {@code suite} est
+     * exécutée une fois la capture terminée (ou abandonnée)
+     */
+    public void capturerParJoueur(Joueur j, Runnable suite) {
+        int longueur = getLongueur();
+        j.choisirCarteWagon(getCouleur(), longueur, false, cartes -> {
+            for (CouleurWagon c : cartes) j.getJeu().defausserCarteWagon(c);
+            j.poserWagon(longueur);
+            marquerPoints(j, longueur);
+            setProprietaire(j);
+            j.log(String.format("%s a capturé la route %s.", j.toLog(), toLog()));
+            suite.run();
+        });
+    }
+
+    /**
+     * @return les points rapportés par la capture de la route
+     */
+    public int getPoints() {
+        return points(getLongueur());
+    }
+
+    /**
+     * @return les points rapportés par une route de la longueur donnée
+     */
+    protected static int points(int longueur) {
+        return switch (longueur) {
+            case 1 -> 1;
+            case 2 -> 2;
+            case 3 -> 4;
+            case 4 -> 7;
+            case 6 -> 15;
+            case 8 -> 21;
+            default -> 0;
+        };
+    }
+
+    /**
+     * Ajoute au score du joueur les points d'une route de la longueur donnée
+     */
+    protected static void marquerPoints(Joueur j, int longueur) {
+        j.mettreAJourScore(points(longueur));
     }
 }
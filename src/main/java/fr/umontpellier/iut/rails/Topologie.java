@@ -0,0 +1,438 @@
+package fr.umontpellier.iut.rails;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Topologie d'un plateau de jeu : villes, routes et leurs caractéristiques
+ * (extrémités, longueur, couleur, type, locomotives des ferries).
+ * <p>
+ * La topologie est immuable et partagée par toutes les parties jouées sur le
+ * même plateau ({@code Topologie.EUROPE}) : une partie ne contient que l'état
+ * qui lui est propre (les propriétaires des villes et des routes, voir
+ * {@code Plateau}). Les villes et les routes sont désignées par leur
+ * identifiant (leur position dans l'ordre de création), les index (routes
+ * partant d'une ville, routes doubles, routes par couleur, recherche par nom)
+ * sont construits une seule fois.
+ */
+public final class Topologie {
+    public static final int ROUTE = 0;
+    public static final int TUNNEL = 1;
+    public static final int FERRY = 2;
+    /**
+     * Identifiant désignant l'absence de ville ou de route
+     */
+    public static final int AUCUNE = -1;
+
+    /**
+     * Plateau "Europe"
+     */
+    public static final Topologie EUROPE = creerEurope();
+
+    private final String[] nomsVilles;
+    private final String[] nomsRoutes;
+    private final int[] villes1;
+    private final int[] villes2;
+    private final int[] longueurs;
+    private final CouleurWagon[] couleurs;
+    private final int[] types;
+    private final int[] nbLocomotives;
+    /**
+     * Identifiant de l'autre route d'une route double (AUCUNE sinon)
+     */
+    private final int[] routesDoubles;
+    /**
+     * Identifiants des routes partant de chaque ville
+     */
+    private final int[][] routesAdjacentes;
+    /**
+     * Identifiants des routes de chaque couleur
+     */
+    private final Map<CouleurWagon, int[]> routesParCouleur;
+    /**
+     * Routes partant de chaque ville, sous forme de masque de bits sur les
+     * identifiants des routes (voir {@code Plateau})
+     */
+    private final long[][] masquesRoutesAdjacentes;
+    private final Map<String, Integer> idsVilles;
+    private final Map<String, Integer> idsRoutes;
+    private final int longueurMax;
+
+    private Topologie(Constructeur c) {
+        int nbVilles = c.nomsVilles.size();
+        int nbRoutes = c.nomsRoutes.size();
+        nomsVilles = c.nomsVilles.toArray(new String[0]);
+        nomsRoutes = c.nomsRoutes.toArray(new String[0]);
+        villes1 = toArray(c.villes1);
+        villes2 = toArray(c.villes2);
+        longueurs = toArray(c.longueurs);
+        couleurs = c.couleurs.toArray(new CouleurWagon[0]);
+        types = toArray(c.types);
+        nbLocomotives = toArray(c.nbLocomotives);
+
+        idsVilles = new HashMap<>();
+        for (int i = 0; i < nbVilles; i++) {
+            idsVilles.put(nomsVilles[i], i);
+        }
+        idsRoutes = new HashMap<>();
+        routesDoubles = new int[nbRoutes];
+        int[] degres = new int[nbVilles];
+        int[] nbParCouleur = new int[CouleurWagon.values().length];
+        // première route trouvée entre deux villes (clé : identifiants des deux villes)
+        Map<Long, Integer> routesEntreVilles = new HashMap<>();
+        int longueurMax = 0;
+        for (int i = 0; i < nbRoutes; i++) {
+            idsRoutes.put(nomsRoutes[i], i);
+            degres[villes1[i]]++;
+            degres[villes2[i]]++;
+            nbParCouleur[couleurs[i].ordinal()]++;
+            longueurMax = Math.max(longueurMax, longueurs[i]);
+            routesDoubles[i] = AUCUNE;
+            long cle = ((long) Math.min(villes1[i], villes2[i]) << 32) | Math.max(villes1[i], villes2[i]);
+            Integer autre = routesEntreVilles.putIfAbsent(cle, i);
+            if (autre != null) {
+                routesDoubles[autre] = i;
+                routesDoubles[i] = autre;
+            }
+        }
+        this.longueurMax = longueurMax;
+
+        routesAdjacentes = new int[nbVilles][];
+        for (int v = 0; v < nbVilles; v++) {
+            routesAdjacentes[v] = new int[degres[v]];
+            degres[v] = 0;
+        }
+        masquesRoutesAdjacentes = new long[nbVilles][(nbRoutes + 63) >>> 6];
+        routesParCouleur = new EnumMap<>(CouleurWagon.class);
+        for (CouleurWagon couleur : CouleurWagon.values()) {
+            routesParCouleur.put(couleur, new int[nbParCouleur[couleur.ordinal()]]);
+            nbParCouleur[couleur.ordinal()] = 0;
+        }
+        for (int i = 0; i < nbRoutes; i++) {
+            routesAdjacentes[villes1[i]][degres[villes1[i]]++] = i;
+            routesAdjacentes[villes2[i]][degres[villes2[i]]++] = i;
+            masquesRoutesAdjacentes[villes1[i]][i >>> 6] |= 1L << i;
+            masquesRoutesAdjacentes[villes2[i]][i >>> 6] |= 1L << i;
+            routesParCouleur.get(couleurs[i])[nbParCouleur[couleurs[i].ordinal()]++] = i;
+        }
+    }
+
+    public int getNbVilles() {
+        return nomsVilles.length;
+    }
+
+    public int getNbRoutes() {
+        return nomsRoutes.length;
+    }
+
+    public String getNomVille(int ville) {
+        return nomsVilles[ville];
+    }
+
+    public String getNomRoute(int route) {
+        return nomsRoutes[route];
+    }
+
+    public int getVille1(int route) {
+        return villes1[route];
+    }
+
+    public int getVille2(int route) {
+        return villes2[route];
+    }
+
+    public int getLongueur(int route) {
+        return longueurs[route];
+    }
+
+    public CouleurWagon getCouleur(int route) {
+        return couleurs[route];
+    }
+
+    /**
+     * @return le type de la route (ROUTE, TUNNEL ou FERRY)
+     */
+    public int getType(int route) {
+        return types[route];
+    }
+
+    /**
+     * @return le nombre de locomotives à payer pour capturer la route (0 si ce
+     * n'est pas un ferry)
+     */
+    public int getNbLocomotives(int route) {
+        return nbLocomotives[route];
+    }
+
+    /**
+     * @return l'identifiant de l'autre route d'une route double (AUCUNE si la
+     * route est simple)
+     */
+    public int getRouteDouble(int route) {
+        return routesDoubles[route];
+    }
+
+    public int getLongueurMax() {
+        return longueurMax;
+    }
+
+    /**
+     * @return l'identifiant de la ville portant ce nom (AUCUNE s'il n'y en a pas)
+     */
+    public int getIdVille(String nom) {
+        return idsVilles.getOrDefault(nom, AUCUNE);
+    }
+
+    /**
+     * @return l'identifiant de la route portant ce nom (AUCUNE s'il n'y en a pas)
+     */
+    public int getIdRoute(String nom) {
+        return idsRoutes.getOrDefault(nom, AUCUNE);
+    }
+
+    /**
+     * @return les identifiants des routes partant de la ville (le tableau est
+     * partagé et ne doit pas être modifié)
+     */
+    int[] getRoutesAdjacentes(int ville) {
+        return routesAdjacentes[ville];
+    }
+
+    /**
+     * @return le masque des routes partant de la ville (le tableau est partagé
+     * et ne doit pas être modifié)
+     */
+    long[] getMasqueRoutesAdjacentes(int ville) {
+        return masquesRoutesAdjacentes[ville];
+    }
+
+    /**
+     * @return les identifiants des routes de la couleur donnée (le tableau est
+     * partagé et ne doit pas être modifié)
+     */
+    int[] getRoutesDeCouleur(CouleurWagon couleur) {
+        return routesParCouleur.get(couleur);
+    }
+
+    private static int[] toArray(List<Integer> valeurs) {
+        int[] tableau = new int[valeurs.size()];
+        for (int i = 0; i < tableau.length; i++) {
+            tableau[i] = valeurs.get(i);
+        }
+        return tableau;
+    }
+
+    /**
+     * Description d'un plateau, ville par ville et route par route
+     */
+    private static class Constructeur {
+        private final Map<String, Integer> cles = new HashMap<>();
+        private final List<String> nomsVilles = new ArrayList<>();
+        private final List<String> nomsRoutes = new ArrayList<>();
+        private final List<Integer> villes1 = new ArrayList<>();
+        private final List<Integer> villes2 = new ArrayList<>();
+        private final List<Integer> longueurs = new ArrayList<>();
+        private final List<CouleurWagon> couleurs = new ArrayList<>();
+        private final List<Integer> types = new ArrayList<>();
+        private final List<Integer> nbLocomotives = new ArrayList<>();
+
+        void ville(String cle, String nom) {
+            cles.put(cle, nomsVilles.size());
+            nomsVilles.add(nom);
+        }
+
+        void route(String ville1, String ville2, int longueur, CouleurWagon couleur) {
+            ajouter(ville1, ville2, longueur, couleur, ROUTE, 0);
+        }
+
+        void tunnel(String ville1, String ville2, int longueur, CouleurWagon couleur) {
+            ajouter(ville1, ville2, longueur, couleur, TUNNEL, 0);
+        }
+
+        void ferry(String ville1, String ville2, int longueur, CouleurWagon couleur, int nbLocomotives) {
+            ajouter(ville1, ville2, longueur, couleur, FERRY, nbLocomotives);
+        }
+
+        private void ajouter(String ville1, String ville2, int longueur, CouleurWagon couleur, int type, int nbLoco) {
+            int id1 = cles.get(ville1);
+            int id2 = cles.get(ville2);
+            nomsRoutes.add(nomsVilles.get(id1) + " - " + nomsVilles.get(id2));
+            villes1.add(id1);
+            villes2.add(id2);
+            longueurs.add(longueur);
+            couleurs.add(couleur);
+            types.add(type);
+            nbLocomotives.add(nbLoco);
+        }
+
+        Topologie construire() {
+            // Correction du nom pour les routes doubles
+            for (int i = 0; i < nomsRoutes.size() - 1; i++) {
+                String nom = nomsRoutes.get(i);
+                if (nom.equals(nomsRoutes.get(i + 1))) {
+                    nomsRoutes.set(i, nom + "(1)");
+                    nomsRoutes.set(i + 1, nom + "(2)");
+                }
+            }
+            return new Topologie(this);
+        }
+    }
+
+    private static Topologie creerEurope() {
+        Constructeur europe = new Constructeur();
+        europe.ville("amsterdam", "Amsterdam");
+        europe.ville("angora", "Angora");
+        europe.ville("athina", "Athina");
+        europe.ville("barcelona", "Barcelona");
+        europe.ville("berlin", "Berlin");
+        europe.ville("brest", "Brest");
+        europe.ville("brindisi", "Brindisi");
+        europe.ville("bruxelles", "Bruxelles");
+        europe.ville("bucuresti", "Bucuresti");
+        europe.ville("budapest", "Budapest");
+        europe.ville("cadiz", "Cadiz");
+        europe.ville("constantinople", "Constantinople");
+        europe.ville("danzig", "Danzig");
+        europe.ville("dieppe", "Dieppe");
+        europe.ville("edinburgh", "Edinburgh");
+        europe.ville("erzurum", "Erzurum");
+        europe.ville("essen", "Essen");
+        europe.ville("frankfurt", "Frankfurt");
+        europe.ville("kharkov", "Kharkov");
+        europe.ville("kobenhavn", "Kobenhavn");
+        europe.ville("kyiv", "Kyiv");
+        europe.ville("lisboa", "Lisboa");
+        europe.ville("london", "London");
+        europe.ville("madrid", "Madrid");
+        europe.ville("marseille", "Marseille");
+        europe.ville("moskva", "Moskva");
+        europe.ville("munchen", "Munchen");
+        europe.ville("palermo", "Palermo");
+        europe.ville("pamplona", "Pamplona");
+        europe.ville("paris", "Paris");
+        europe.ville("petrograd", "Petrograd");
+        europe.ville("riga", "Riga");
+        europe.ville("roma", "Roma");
+        europe.ville("rostov", "Rostov");
+        europe.ville("sarajevo", "Sarajevo");
+        europe.ville("sevastopol", "Sevastopol");
+        europe.ville("smolensk", "Smolensk");
+        europe.ville("smyrna", "Smyrna");
+        europe.ville("sochi", "Sochi");
+        europe.ville("sofia", "Sofia");
+        europe.ville("stockholm", "Stockholm");
+        europe.ville("venezia", "Venezia");
+        europe.ville("warszawa", "Warszawa");
+        europe.ville("wien", "Wien");
+        europe.ville("wilno", "Wilno");
+        europe.ville("zagrab", "Zagrab");
+        europe.ville("zurich", "Zurich");
+
+        europe.route("amsterdam", "bruxelles", 1, CouleurWagon.NOIR);
+        europe.route("amsterdam", "essen", 3, CouleurWagon.JAUNE);
+        europe.route("amsterdam", "frankfurt", 2, CouleurWagon.BLANC);
+        europe.ferry("amsterdam", "london", 2, CouleurWagon.GRIS, 2);
+        europe.tunnel("angora", "constantinople", 2, CouleurWagon.GRIS);
+        europe.route("angora", "erzurum", 3, CouleurWagon.NOIR);
+        europe.tunnel("angora", "smyrna", 3, CouleurWagon.ORANGE);
+        europe.ferry("athina", "brindisi", 4, CouleurWagon.GRIS, 1);
+        europe.route("athina", "sarajevo", 4, CouleurWagon.VERT);
+        europe.ferry("athina", "smyrna", 2, CouleurWagon.GRIS, 1);
+        europe.route("athina", "sofia", 3, CouleurWagon.ROSE);
+        europe.route("barcelona", "madrid", 2, CouleurWagon.JAUNE);
+        europe.route("barcelona", "marseille", 4, CouleurWagon.GRIS);
+        europe.tunnel("barcelona", "pamplona", 2, CouleurWagon.GRIS);
+        europe.route("berlin", "danzig", 4, CouleurWagon.GRIS);
+        europe.route("berlin", "essen", 2, CouleurWagon.BLEU);
+        europe.route("berlin", "frankfurt", 3, CouleurWagon.ROUGE);
+        europe.route("berlin", "frankfurt", 3, CouleurWagon.NOIR);
+        europe.route("berlin", "warszawa", 4, CouleurWagon.JAUNE);
+        europe.route("berlin", "warszawa", 4, CouleurWagon.ROSE);
+        europe.route("berlin", "wien", 3, CouleurWagon.VERT);
+        europe.route("brest", "dieppe", 2, CouleurWagon.ORANGE);
+        europe.route("brest", "pamplona", 4, CouleurWagon.ROSE);
+        europe.route("brest", "paris", 3, CouleurWagon.NOIR);
+        europe.ferry("brindisi", "palermo", 3, CouleurWagon.GRIS, 1);
+        europe.route("brindisi", "roma", 2, CouleurWagon.BLANC);
+        europe.route("bruxelles", "dieppe", 2, CouleurWagon.VERT);
+        europe.route("bruxelles", "frankfurt", 2, CouleurWagon.BLEU);
+        europe.route("bruxelles", "paris", 2, CouleurWagon.JAUNE);
+        europe.route("bruxelles", "paris", 2, CouleurWagon.ROUGE);
+        europe.tunnel("bucuresti", "budapest", 4, CouleurWagon.GRIS);
+        europe.route("bucuresti", "constantinople", 3, CouleurWagon.JAUNE);
+        europe.route("bucuresti", "kyiv", 4, CouleurWagon.GRIS);
+        europe.route("bucuresti", "sevastopol", 4, CouleurWagon.BLANC);
+        europe.tunnel("bucuresti", "sofia", 2, CouleurWagon.GRIS);
+        europe.tunnel("budapest", "kyiv", 6, CouleurWagon.GRIS);
+        europe.route("budapest", "sarajevo", 3, CouleurWagon.ROSE);
+        europe.route("budapest", "wien", 1, CouleurWagon.ROUGE);
+        europe.route("budapest", "wien", 1, CouleurWagon.BLANC);
+        europe.route("budapest", "zagrab", 2, CouleurWagon.ORANGE);
+        europe.route("cadiz", "lisboa", 2, CouleurWagon.BLEU);
+        europe.route("cadiz", "madrid", 3, CouleurWagon.ORANGE);
+        europe.ferry("constantinople", "sevastopol", 4, CouleurWagon.GRIS, 2);
+        europe.tunnel("constantinople", "smyrna", 2, CouleurWagon.GRIS);
+        europe.route("constantinople", "sofia", 3, CouleurWagon.BLEU);
+        europe.route("danzig", "riga", 3, CouleurWagon.NOIR);
+        europe.route("danzig", "warszawa", 2, CouleurWagon.GRIS);
+        europe.ferry("dieppe", "london", 2, CouleurWagon.GRIS, 1);
+        europe.ferry("dieppe", "london", 2, CouleurWagon.GRIS, 1);
+        europe.route("dieppe", "paris", 1, CouleurWagon.ROSE);
+        europe.route("edinburgh", "london", 4, CouleurWagon.ORANGE);
+        europe.route("edinburgh", "london", 4, CouleurWagon.NOIR);
+        europe.ferry("erzurum", "sevastopol", 4, CouleurWagon.GRIS, 2);
+        europe.tunnel("erzurum", "sochi", 3, CouleurWagon.ROUGE);
+        europe.route("essen", "frankfurt", 2, CouleurWagon.VERT);
+        europe.ferry("essen", "kobenhavn", 3, CouleurWagon.GRIS, 1);
+        europe.ferry("essen", "kobenhavn", 3, CouleurWagon.GRIS, 1);
+        europe.route("frankfurt", "munchen", 2, CouleurWagon.ROSE);
+        europe.route("frankfurt", "paris", 3, CouleurWagon.ORANGE);
+        europe.route("frankfurt", "paris", 3, CouleurWagon.BLANC);
+        europe.route("kharkov", "kyiv", 4, CouleurWagon.GRIS);
+        europe.route("kharkov", "moskva", 4, CouleurWagon.GRIS);
+        europe.route("kharkov", "rostov", 2, CouleurWagon.VERT);
+        europe.route("kobenhavn", "stockholm", 3, CouleurWagon.JAUNE);
+        europe.route("kobenhavn", "stockholm", 3, CouleurWagon.BLANC);
+        europe.route("kyiv", "smolensk", 3, CouleurWagon.ROUGE);
+        europe.route("kyiv", "warszawa", 4, CouleurWagon.GRIS);
+        europe.route("kyiv", "wilno", 2, CouleurWagon.GRIS);
+        europe.route("lisboa", "madrid", 3, CouleurWagon.ROSE);
+        europe.tunnel("madrid", "pamplona", 3, CouleurWagon.BLANC);
+        europe.tunnel("madrid", "pamplona", 3, CouleurWagon.NOIR);
+        europe.route("marseille", "pamplona", 4, CouleurWagon.ROUGE);
+        europe.route("marseille", "paris", 4, CouleurWagon.GRIS);
+        europe.tunnel("marseille", "roma", 4, CouleurWagon.GRIS);
+        europe.tunnel("marseille", "zurich", 2, CouleurWagon.ROSE);
+        europe.route("moskva", "petrograd", 4, CouleurWagon.BLANC);
+        europe.route("moskva", "smolensk", 2, CouleurWagon.ORANGE);
+        europe.tunnel("munchen", "venezia", 2, CouleurWagon.BLEU);
+        europe.route("munchen", "wien", 3, CouleurWagon.ORANGE);
+        europe.tunnel("munchen", "zurich", 2, CouleurWagon.JAUNE);
+        europe.ferry("palermo", "roma", 4, CouleurWagon.GRIS, 1);
+        europe.ferry("palermo", "smyrna", 6, CouleurWagon.GRIS, 2);
+        europe.route("pamplona", "paris", 4, CouleurWagon.BLEU);
+        europe.route("pamplona", "paris", 4, CouleurWagon.VERT);
+        europe.tunnel("paris", "zurich", 3, CouleurWagon.GRIS);
+        europe.route("petrograd", "riga", 4, CouleurWagon.GRIS);
+        europe.tunnel("petrograd", "stockholm", 8, CouleurWagon.GRIS);
+        europe.route("petrograd", "wilno", 4, CouleurWagon.BLEU);
+        europe.route("riga", "wilno", 4, CouleurWagon.VERT);
+        europe.route("roma", "venezia", 2, CouleurWagon.NOIR);
+        europe.route("rostov", "sevastopol", 4, CouleurWagon.GRIS);
+        europe.route("rostov", "sochi", 2, CouleurWagon.GRIS);
+        europe.tunnel("sarajevo", "sofia", 2, CouleurWagon.GRIS);
+        europe.route("sarajevo", "zagrab", 3, CouleurWagon.ROUGE);
+        europe.ferry("sevastopol", "sochi", 2, CouleurWagon.GRIS, 1);
+        europe.route("smolensk", "wilno", 3, CouleurWagon.JAUNE);
+        europe.route("venezia", "zagrab", 2, CouleurWagon.GRIS);
+        europe.tunnel("venezia", "zurich", 2, CouleurWagon.VERT);
+        europe.route("warszawa", "wien", 4, CouleurWagon.BLEU);
+        europe.route("warszawa", "wilno", 3, CouleurWagon.ROUGE);
+        europe.route("wien", "zagrab", 2, CouleurWagon.GRIS);
+
+        return europe.construire();
+    }
+}
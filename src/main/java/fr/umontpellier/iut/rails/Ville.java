@@ -1,47 +1,63 @@
 package fr.umontpellier.iut.rails;
 
-import java.util.Collections;
 import java.util.HashMap;
-import java.util.List;
 
+/**
+ * Ville d'une partie : vue sur une ville de la topologie (partagée entre les
+ * parties) et sur son propriétaire dans le plateau de la partie
+ */
 public class Ville {
     /**
-     * Nom complet de la ville
+     * Plateau de la partie
      */
-    private String nom;
+    private final Plateau plateau;
     /**
-     * Joueur qui a construit une gare sur la ville (ou `null` si pas de gare)
+     * Identifiant de la ville dans la topologie (et position dans la liste des
+     * villes du plateau)
      */
-    private Joueur proprietaire;
+    private final int id;
 
-    public Ville(String nom) {
-        this.nom = nom;
+    Ville(Plateau plateau, int id) {
+        this.plateau = plateau;
+        this.id = id;
     }
 
+    /**
+     * @return le nom complet de la ville
+     */
     public String getNom() {
-        return nom;
+        return plateau.getTopologie().getNomVille(id);
     }
-    
+
+    public int getId() {
+        return id;
+    }
+
+    /**
+     * @return le joueur qui a construit une gare sur la ville (ou `null` si pas
+     * de gare)
+     */
     public Joueur getProprietaire() {
-        return proprietaire;
+        return plateau.getProprietaireVille(id);
     }
     
     public void setProprietaire(Joueur proprietaire) {
-        this.proprietaire = proprietaire;
+        plateau.setProprietaireVille(id, proprietaire);
     }
     
     @Override
     public String toString() {
-        return nom;
+        return getNom();
     }
 
     public String toLog() {
-        return String.format("<span class=\"ville\">%s</span>", nom);
+        return String.format("<span class=\"ville\">%s</span>", getNom());
     }
 
     public Object asPOJO() {
         HashMap<String, Object> data = new HashMap<>();
-        data.put("nom", nom);
+        data.put("nom", getNom());
+        Joueur proprietaire = getProprietaire();
         if (proprietaire != null) {
             data.put("proprietaire", proprietaire.getCouleur());
         }    
@@ -49,13 +65,6 @@ public class Ville {
     }
 
     public boolean estCapturableParJoueur(Joueur j) {
-        if (proprietaire != null || j.getNbGares() < 1) return false;
-        else {
-            int prix = j.getNbGares() == 3 ? 1 : j.getNbGares() == 2 ? 2 : 3;
-            for (CouleurWagon c : j.getCartesWagon()) {
-                if (Collections.frequency(j.getCartesWagon(), c) + Collections.frequency(j.getCartesWagon(), CouleurWagon.LOCOMOTIVE) >= prix) return true;
-            }
-            return false;
-        }
+        return getProprietaire() == null && j.peutConstruireGare();
     }
 }
@@ -0,0 +1,130 @@
+package fr.umontpellier.iut.gui;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.websocket.CloseReason;
+import javax.websocket.RemoteEndpoint;
+import javax.websocket.SendHandler;
+import javax.websocket.SendResult;
+import javax.websocket.Session;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+public class ClientTest {
+    /**
+     * Messages transmis à la session et fonctions de fin d'envoi associées
+     */
+    private List<String> messages;
+    private List<SendHandler> finsEnvoi;
+    private Session session;
+    private Client client;
+
+    private static EtatPartie etat(long version) {
+        return new EtatPartie(version, "{}", new String[]{}, new String[]{"{\"v\":" + version + "}"},
+                new String[]{}, "{}", "[]");
+    }
+
+    @BeforeEach
+    void init() {
+        messages = new ArrayList<>();
+        finsEnvoi = new ArrayList<>();
+        RemoteEndpoint.Async async = mock(RemoteEndpoint.Async.class);
+        doAnswer(invocation -> {
+            messages.add(invocation.getArgument(0));
+            finsEnvoi.add(invocation.getArgument(1));
+            return null;
+        }).when(async).sendText(anyString(), any(SendHandler.class));
+        session = mock(Session.class);
+        when(session.getAsyncRemote()).thenReturn(async);
+        when(session.getRequestParameterMap()).thenReturn(Map.of(Client.PARAMETRE_DELTA, List.of("1")));
+        client = new Client(session);
+    }
+
+    private JsonObject message(int i) {
+        return JsonParser.parseString(messages.get(i)).getAsJsonObject();
+    }
+
+    @Test
+    void testUnSeulEnvoiEnCoursEtSeulLeDernierEtatEstConserve() {
+        client.envoyer(etat(1));
+        client.envoyer(etat(2));
+        client.envoyer(etat(3));
+        client.envoyer(etat(4));
+        assertEquals(1, messages.size());
+        assertEquals("etat", message(0).get("type").getAsString());
+
+        finsEnvoi.get(0).onResult(new SendResult());
+        assertEquals(2, messages.size());
+        assertEquals("patch", message(1).get("type").getAsString());
+        assertEquals(1, message(1).get("base").getAsLong());
+        assertEquals(4, message(1).get("version").getAsLong());
+        assertEquals(2, client.getNbEtatsFusionnes());
+    }
+
+    @Test
+    void testEchecEnvoiProvoqueEtatComplet() {
+        client.envoyer(etat(1));
+        finsEnvoi.get(0).onResult(new SendResult(new Exception("déconnecté")));
+        client.envoyer(etat(2));
+        assertEquals(2, messages.size());
+        assertEquals("etat", message(1).get("type").getAsString());
+    }
+
+    @Test
+    void testRepriseEnvoieSeulementLePatchManquant() {
+        client.reprendre(etat(3), etat(7));
+        assertEquals(1, messages.size());
+        assertEquals("patch", message(0).get("type").getAsString());
+        assertEquals(3, message(0).get("base").getAsLong());
+        assertEquals(7, message(0).get("version").getAsLong());
+    }
+
+    @Test
+    void testRepriseAJourNEnvoieRien() {
+        EtatPartie etat = etat(5);
+        client.reprendre(etat, etat);
+        assertTrue(messages.isEmpty());
+    }
+
+    @Test
+    void testRejetEnvoyeEntreLesEtats() {
+        client.envoyer(etat(1));
+        client.rejeter("ROUGE x9", 1);
+        client.envoyer(etat(2));
+        assertEquals(1, messages.size());
+
+        // le rejet passe avant l'état en attente
+        finsEnvoi.get(0).onResult(new SendResult());
+        assertEquals(2, messages.size());
+        assertEquals("rejet", message(1).get("type").getAsString());
+        assertEquals("ROUGE x9", message(1).get("reponse").getAsString());
+        assertEquals(1, message(1).get("version").getAsLong());
+
+        finsEnvoi.get(1).onResult(new SendResult());
+        assertEquals(3, messages.size());
+        assertEquals("patch", message(2).get("type").getAsString());
+        assertEquals(2, message(2).get("version").getAsLong());
+    }
+
+    @Test
+    void testClientBloqueExpulseSansNouvelEtat() throws Exception {
+        long debut = System.currentTimeMillis();
+        assertFalse(client.verifierDelai(debut + Client.DELAI_MAX_ENVOI + 1));
+        client.envoyer(etat(1));
+        assertFalse(client.verifierDelai(debut));
+
+        // l'envoi ne se termine jamais : la vérification périodique ferme la connexion
+        assertTrue(client.verifierDelai(debut + Client.DELAI_MAX_ENVOI + 1000));
+        verify(session, timeout(1000)).close(any(CloseReason.class));
+        client.rejeter("ROUGE x9", 1);
+        client.envoyerEtatComplet(etat(2));
+        assertEquals(1, messages.size());
+    }
+}
@@ -0,0 +1,119 @@
+package fr.umontpellier.iut.gui;
+
+import fr.umontpellier.iut.rails.CouleurWagon;
+import fr.umontpellier.iut.rails.EcrivainEtat;
+import fr.umontpellier.iut.rails.Joueur;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import javax.websocket.RemoteEndpoint;
+import javax.websocket.SendHandler;
+import javax.websocket.SendResult;
+import javax.websocket.Session;
+import java.lang.reflect.Proxy;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Mesure le coût de la diffusion d'un nouvel état (complet) d'une partie à 1, 50
+ * et 500 clients, selon l'encodage des messages.
+ * <p>
+ * Les sessions sont simulées : un envoi texte encode la chaîne en UTF-8 (comme
+ * le fait le serveur websocket pour chaque session), puis chaque envoi copie
+ * les octets à envoyer et se termine immédiatement. Avec les encodages
+ * {@code UTF8} et {@code DEFLATE}, la trame est encodée (et compressée) une
+ * seule fois par état, quel que soit le nombre de clients.
+ * <p>
+ * Chaque opération comprend aussi l'écriture du nouvel état par
+ * {@code EcrivainEtat}, dont le coût ne dépend pas du nombre de clients.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class DiffusionBenchmark {
+    private static final List<String> BOUTONS = List.of();
+
+    @Param({"1", "50", "500"})
+    private int nbSessions;
+
+    @Param({"TEXTE", "UTF8", "DEFLATE"})
+    private Encodage encodage;
+
+    private Partie partie;
+    private EcrivainEtat ecrivain;
+    private long version;
+    /**
+     * Tampon dans lequel les sessions simulées copient les octets envoyés
+     */
+    private byte[] reseau;
+
+    @Setup
+    public void setUp() {
+        partie = new Partie("bench", new String[]{"Guybrush", "Largo", "LeChuck", "Elaine"});
+        ecrivain = new EcrivainEtat(partie.getJeu());
+        reseau = new byte[1 << 16];
+        partie.setEtat(ecrivain.ecrire(++version, "Que voulez-vous faire ?", BOUTONS, true));
+        for (int i = 0; i < nbSessions; i++) {
+            partie.addClient(new Client(session()));
+        }
+    }
+
+    /**
+     * @return une session simulée dont les envois se terminent immédiatement
+     */
+    private Session session() {
+        RemoteEndpoint.Async async = (RemoteEndpoint.Async) Proxy.newProxyInstance(
+                getClass().getClassLoader(), new Class<?>[]{RemoteEndpoint.Async.class},
+                (proxy, methode, args) -> {
+                    ByteBuffer octets = switch (methode.getName()) {
+                        case "sendText" -> ByteBuffer.wrap(((String) args[0]).getBytes(StandardCharsets.UTF_8));
+                        case "sendBinary" -> (ByteBuffer) args[0];
+                        default -> throw new UnsupportedOperationException(methode.getName());
+                    };
+                    octets.get(reseau, 0, octets.remaining());
+                    ((SendHandler) args[1]).onResult(new SendResult());
+                    return null;
+                });
+        Map<String, List<String>> parametres = Map.of(Encodage.PARAMETRE_ENCODAGE, List.of(encodage.name()));
+        return (Session) Proxy.newProxyInstance(
+                getClass().getClassLoader(), new Class<?>[]{Session.class},
+                (proxy, methode, args) -> switch (methode.getName()) {
+                    case "getAsyncRemote" -> async;
+                    case "getRequestParameterMap" -> parametres;
+                    case "hashCode" -> System.identityHashCode(proxy);
+                    case "equals" -> proxy == args[0];
+                    default -> throw new UnsupportedOperationException(methode.getName());
+                });
+    }
+
+    @Benchmark
+    public EtatPartie diffuser() {
+        version++;
+        List<Joueur> joueurs = partie.getJeu().getJoueurs();
+        Joueur joueur = joueurs.get((int) (version % joueurs.size()));
+        if (version % 2 == 0) {
+            joueur.ajouterCarteWagon(CouleurWagon.ROUGE);
+        } else {
+            joueur.retirerCarteWagon(CouleurWagon.ROUGE);
+        }
+        EtatPartie etat = ecrivain.ecrire(version, "Que voulez-vous faire ?", BOUTONS, true);
+        partie.setEtat(etat);
+        return etat;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(DiffusionBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}
@@ -0,0 +1,51 @@
+package fr.umontpellier.iut.gui;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class EtatPartieTest {
+
+    private static EtatPartie etat(long version, String route2, String piles) {
+        return new EtatPartie(version,
+                "{\"instruction\":\"Que voulez-vous faire ?\"}",
+                new String[]{"{\"nom\":\"Paris\"}", "{\"nom\":\"Roma\"}"},
+                new String[]{"{\"nom\":\"Paris - Roma\"}", route2, "{\"nom\":\"Roma - Paris\"}"},
+                new String[]{"{\"nom\":\"Guybrush\"}"},
+                piles,
+                "[]");
+    }
+
+    @Test
+    void testEtatCompletContientToutesLesSections() {
+        JsonObject json = JsonParser.parseString(etat(3, "{\"nom\":\"Roma - Paris(1)\"}", "{}").toJson()).getAsJsonObject();
+        assertEquals("etat", json.get("type").getAsString());
+        assertEquals(3, json.get("version").getAsLong());
+        assertEquals(2, json.getAsJsonArray("villes").size());
+        assertEquals(3, json.getAsJsonArray("routes").size());
+        assertEquals(1, json.getAsJsonArray("joueurs").size());
+        assertTrue(json.has("prompt"));
+        assertTrue(json.has("piles"));
+        assertTrue(json.has("log"));
+    }
+
+    @Test
+    void testPatchNeContientQueLesElementsModifies() {
+        EtatPartie avant = etat(3, "{\"nom\":\"Roma - Paris(1)\"}", "{\"pileCartesWagon\":40}");
+        EtatPartie apres = etat(4, "{\"nom\":\"Roma - Paris(1)\",\"proprietaire\":\"ROUGE\"}", "{\"pileCartesWagon\":40}");
+
+        JsonObject patch = JsonParser.parseString(apres.patchDepuis(avant)).getAsJsonObject();
+        assertEquals("patch", patch.get("type").getAsString());
+        assertEquals(4, patch.get("version").getAsLong());
+        assertEquals(3, patch.get("base").getAsLong());
+        assertEquals(1, patch.getAsJsonObject("routes").size());
+        assertEquals("ROUGE", patch.getAsJsonObject("routes").getAsJsonObject("1").get("proprietaire").getAsString());
+        assertFalse(patch.has("villes"));
+        assertFalse(patch.has("joueurs"));
+        assertFalse(patch.has("prompt"));
+        assertFalse(patch.has("piles"));
+        assertFalse(patch.has("log"));
+    }
+}
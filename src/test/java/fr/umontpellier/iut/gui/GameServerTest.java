@@ -0,0 +1,41 @@
+package fr.umontpellier.iut.gui;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import javax.websocket.RemoteEndpoint;
+import javax.websocket.Session;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+public class GameServerTest {
+    private static final String ID_PARTIE = "test-abandon";
+
+    @AfterEach
+    void fin() {
+        GameServer.supprimerPartie(ID_PARTIE);
+    }
+
+    @Test
+    void testPartieAbandonneeRetireeApresLeDelai() {
+        Partie partie = GameServer.creerPartie(ID_PARTIE, new String[]{"Guybrush", "Largo"});
+        long maintenant = System.currentTimeMillis();
+        GameServer.supprimerPartiesInactives(maintenant);
+        assertSame(partie, GameServer.getPartie(ID_PARTIE));
+
+        // une partie qui a encore un client est gardée
+        Session session = mock(Session.class);
+        when(session.getRequestParameterMap()).thenReturn(Map.of());
+        when(session.getAsyncRemote()).thenReturn(mock(RemoteEndpoint.Async.class));
+        Client client = new Client(session);
+        partie.addClient(client);
+        GameServer.supprimerPartiesInactives(maintenant + GameServer.DELAI_INACTIVITE + 1);
+        assertSame(partie, GameServer.getPartie(ID_PARTIE));
+
+        partie.removeClient(client);
+        GameServer.supprimerPartiesInactives(System.currentTimeMillis() + GameServer.DELAI_INACTIVITE + 1);
+        assertNull(GameServer.getPartie(ID_PARTIE));
+    }
+}
@@ -0,0 +1,26 @@
+package fr.umontpellier.iut.gui;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class HistoriqueEtatsTest {
+
+    private static EtatPartie etat(long version) {
+        return new EtatPartie(version, "{}", new String[]{}, new String[]{}, new String[]{}, "{}", "[]");
+    }
+
+    @Test
+    void testSeulsLesDerniersEtatsSontConserves() {
+        HistoriqueEtats historique = new HistoriqueEtats(4);
+        for (long version = 1; version <= 10; version++) {
+            historique.ajouter(etat(version));
+        }
+        assertNull(historique.get(6));
+        for (long version = 7; version <= 10; version++) {
+            assertEquals(version, historique.get(version).getVersion());
+        }
+        assertNull(historique.get(11));
+        assertNull(historique.get(-1));
+    }
+}
@@ -0,0 +1,38 @@
+package fr.umontpellier.iut.gui;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LimiteurDebitTest {
+    private static final long SECONDE = 1_000_000_000L;
+
+    @Test
+    void testRafaleLimiteeParLaCapacite() {
+        LimiteurDebit limiteur = new LimiteurDebit(10, 5);
+        long maintenant = System.nanoTime();
+        for (int i = 0; i < 5; i++) {
+            assertTrue(limiteur.autoriser(maintenant));
+        }
+        assertFalse(limiteur.autoriser(maintenant));
+    }
+
+    @Test
+    void testJetonsRechargesAvecLeTemps() {
+        LimiteurDebit limiteur = new LimiteurDebit(10, 5);
+        long maintenant = System.nanoTime();
+        while (limiteur.autoriser(maintenant)) ;
+
+        // 10 messages par seconde : un nouveau jeton toutes les 100 ms
+        assertFalse(limiteur.autoriser(maintenant + SECONDE / 20));
+        assertTrue(limiteur.autoriser(maintenant + SECONDE / 10));
+        assertFalse(limiteur.autoriser(maintenant + SECONDE / 10));
+
+        // le seau ne dépasse pas sa capacité
+        long tard = maintenant + 60 * SECONDE;
+        for (int i = 0; i < 5; i++) {
+            assertTrue(limiteur.autoriser(tard));
+        }
+        assertFalse(limiteur.autoriser(tard));
+    }
+}
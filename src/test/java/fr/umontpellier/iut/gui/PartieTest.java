@@ -0,0 +1,198 @@
+package fr.umontpellier.iut.gui;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import fr.umontpellier.iut.rails.EcrivainBinaire;
+import fr.umontpellier.iut.rails.Joueur;
+import org.junit.jupiter.api.Test;
+
+import javax.websocket.RemoteEndpoint;
+import javax.websocket.SendHandler;
+import javax.websocket.SendResult;
+import javax.websocket.Session;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+public class PartieTest {
+    private static final String[] NOMS_JOUEURS = {"Guybrush", "Largo"};
+
+    private static EtatPartie etat(long epoque, long version) {
+        return new EtatPartie(epoque, version, "{}", new String[]{}, new String[]{"{\"v\":" + version + "}"},
+                new String[]{}, "{}", "[]", null, null);
+    }
+
+    /**
+     * @return un client dont les messages reçus (envois terminés aussitôt) sont
+     * ajoutés à la liste
+     */
+    private static Client client(Map<String, List<String>> parametres, List<String> messages) {
+        RemoteEndpoint.Async async = mock(RemoteEndpoint.Async.class);
+        doAnswer(invocation -> {
+            messages.add(invocation.getArgument(0));
+            return null;
+        }).when(async).sendText(anyString(), any(SendHandler.class));
+        Session session = mock(Session.class);
+        when(session.getAsyncRemote()).thenReturn(async);
+        when(session.getRequestParameterMap()).thenReturn(parametres);
+        return new Client(session);
+    }
+
+    /**
+     * @return un spectateur dont les envois se terminent aussitôt (les messages
+     * reçus sont ajoutés à la liste)
+     */
+    private static Client spectateur(List<String> messages) {
+        RemoteEndpoint.Async async = mock(RemoteEndpoint.Async.class);
+        doAnswer(invocation -> {
+            messages.add(invocation.getArgument(0));
+            invocation.<SendHandler>getArgument(1).onResult(new SendResult());
+            return null;
+        }).when(async).sendText(anyString(), any(SendHandler.class));
+        Session session = mock(Session.class);
+        when(session.getAsyncRemote()).thenReturn(async);
+        when(session.getRequestParameterMap()).thenReturn(
+                Map.of(Client.PARAMETRE_ROLE, List.of(Client.ROLE_SPECTATEUR)));
+        return new Client(session);
+    }
+
+    private static String type(String message) {
+        return JsonParser.parseString(message).getAsJsonObject().get("type").getAsString();
+    }
+
+    @Test
+    void testEntreesRecuesAvantLeDemarrage() {
+        Partie partie = new Partie("test-entrees", NOMS_JOUEURS);
+        for (int i = 0; i < Partie.TAILLE_MAX_FILE_ENTREES; i++) {
+            assertTrue(partie.addInput(""));
+        }
+        // file pleine : l'instruction est ignorée et comptée
+        assertFalse(partie.addInput(""));
+        assertEquals(1, partie.getNbEntreesRejetees());
+
+        // aucune entrée n'est consommée avant le démarrage de la partie
+        partie.executer();
+        Joueur joueur1 = partie.getJeu().getJoueurs().get(0);
+        Joueur joueur2 = partie.getJeu().getJoueurs().get(1);
+        assertEquals(4, joueur1.getDestinations().size());
+        assertEquals(4, joueur2.getDestinations().size());
+    }
+
+    @Test
+    void testRepriseSeulementDansLaMemeEpoque() {
+        Partie partie = new Partie("test-reprise", NOMS_JOUEURS);
+        partie.setEtat(etat(77, 3));
+        partie.setEtat(etat(77, 4));
+
+        List<String> messages = new ArrayList<>();
+        partie.addClient(client(Map.of(Client.PARAMETRE_DELTA, List.of("1"),
+                Client.PARAMETRE_EPOQUE, List.of("77"), Client.PARAMETRE_DEPUIS, List.of("3")), messages));
+        assertEquals(1, messages.size());
+        JsonObject patch = JsonParser.parseString(messages.get(0)).getAsJsonObject();
+        assertEquals("patch", patch.get("type").getAsString());
+        assertEquals(3, patch.get("base").getAsLong());
+
+        // même version, mais d'une partie précédente de même identifiant
+        messages.clear();
+        partie.addClient(client(Map.of(Client.PARAMETRE_DELTA, List.of("1"),
+                Client.PARAMETRE_EPOQUE, List.of("12"), Client.PARAMETRE_DEPUIS, List.of("3")), messages));
+        assertEquals("etat", type(messages.get(0)));
+        assertEquals(77, JsonParser.parseString(messages.get(0)).getAsJsonObject().get("epoque").getAsLong());
+
+        // sans époque, la version n'est pas reprise
+        messages.clear();
+        partie.addClient(client(Map.of(Client.PARAMETRE_DELTA, List.of("1"),
+                Client.PARAMETRE_DEPUIS, List.of("3")), messages));
+        assertEquals("etat", type(messages.get(0)));
+    }
+
+    @Test
+    void testFormeBinaireEcriteSeulementPourLesClientsBinaires() throws Exception {
+        Partie partie = GameServer.creerPartie("test-binaire", NOMS_JOUEURS);
+        try {
+            EtatPartie premier = partie.attendreEtatApres(-1).get(5, TimeUnit.SECONDS);
+            assertFalse(premier.aFormeBinaire());
+
+            List<ByteBuffer> trames = new ArrayList<>();
+            RemoteEndpoint.Async async = mock(RemoteEndpoint.Async.class);
+            doAnswer(invocation -> {
+                trames.add(invocation.getArgument(0));
+                return null;
+            }).when(async).sendBinary(any(ByteBuffer.class), any(SendHandler.class));
+            Session session = mock(Session.class);
+            when(session.getAsyncRemote()).thenReturn(async);
+            when(session.getRequestParameterMap()).thenReturn(
+                    Map.of(Encodage.PARAMETRE_ENCODAGE, List.of(Encodage.BINAIRE.name())));
+            Client client = new Client(session);
+
+            // l'état est publié à nouveau, avec sa forme binaire
+            partie.addClient(client);
+            EtatPartie binaire = partie.attendreEtatApres(premier.getVersion()).get(5, TimeUnit.SECONDS);
+            assertTrue(binaire.aFormeBinaire());
+            assertTrue(partie.veutEtatBinaire());
+            verify(async, timeout(5000)).sendBinary(any(ByteBuffer.class), any(SendHandler.class));
+            assertEquals(EcrivainBinaire.TRAME_DICTIONNAIRE, trames.get(0).get(0));
+
+            partie.removeClient(client);
+            assertFalse(partie.veutEtatBinaire());
+        } finally {
+            GameServer.supprimerPartie("test-binaire");
+        }
+    }
+
+    @Test
+    void testNombreMaximalDeSpectateurs() {
+        Partie partie = new Partie("test-spectateurs", NOMS_JOUEURS);
+        Session session = mock(Session.class);
+        when(session.getRequestParameterMap()).thenReturn(
+                Map.of(Client.PARAMETRE_ROLE, List.of(Client.ROLE_SPECTATEUR)));
+        Client premier = new Client(session);
+        assertTrue(partie.addSpectateur(premier));
+        for (int i = 1; i < Partie.NB_MAX_SPECTATEURS; i++) {
+            assertTrue(partie.addSpectateur(new Client(session)));
+        }
+        assertFalse(partie.addSpectateur(new Client(session)));
+        assertEquals(Partie.NB_MAX_SPECTATEURS, partie.getNbSpectateurs());
+
+        // une place libérée peut être reprise
+        partie.removeClient(premier);
+        assertTrue(partie.addSpectateur(new Client(session)));
+        assertEquals(0, partie.getNbClients());
+    }
+
+    @Test
+    void testDiffusionAuxSpectateursRegroupee() throws Exception {
+        Partie partie = new Partie("test-diffusion", NOMS_JOUEURS);
+        List<String> messages = new CopyOnWriteArrayList<>();
+        Client spectateur = spectateur(messages);
+        partie.addSpectateur(spectateur);
+        partie.setEtat(etat(5, 1));
+        long limite = System.currentTimeMillis() + 5000;
+        while (messages.isEmpty() && System.currentTimeMillis() < limite) {
+            Thread.sleep(10);
+        }
+        assertEquals(1, messages.size());
+
+        // publiés avant la diffusion suivante : seul le dernier état est envoyé
+        partie.setEtat(etat(5, 2));
+        partie.setEtat(etat(5, 3));
+        partie.setEtat(etat(5, 4));
+        assertEquals(1, messages.size());
+        limite = System.currentTimeMillis() + 5000;
+        while (messages.size() < 2 && System.currentTimeMillis() < limite) {
+            Thread.sleep(10);
+        }
+        Thread.sleep(2 * 1000 / Partie.FREQUENCE_MAX_SPECTATEURS);
+        assertEquals(2, messages.size());
+        JsonObject etat = JsonParser.parseString(messages.get(1)).getAsJsonObject();
+        assertEquals("etat", etat.get("type").getAsString());
+        assertEquals(4, etat.get("version").getAsLong());
+        assertEquals(0, spectateur.getNbEtatsFusionnes());
+    }
+}
@@ -0,0 +1,72 @@
+package fr.umontpellier.iut.gui;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * Mesure la mémoire et le nombre de threads utilisés par le serveur lorsqu'il
+ * héberge un grand nombre de parties inactives (toutes les parties attendent le
+ * choix des destinations initiales du premier joueur).
+ * <p>
+ * Exécution : {@code mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=fr.umontpellier.iut.gui.PartiesInactivesBenchmark}
+ * (en augmentant éventuellement la taille du tas avec {@code -Xmx})
+ */
+public class PartiesInactivesBenchmark {
+    private static final String[] NOMS_JOUEURS = {"Guybrush", "Largo", "LeChuck", "Elaine"};
+
+    public static void main(String[] args) throws InterruptedException {
+        int[] paliers = args.length > 0 ? new int[args.length] : new int[]{1_000, 10_000};
+        for (int i = 0; i < args.length; i++) {
+            paliers[i] = Integer.parseInt(args[i]);
+        }
+
+        // les parties affichent leur état sur la sortie standard à chaque prompt
+        PrintStream sortie = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+
+        MemoryMXBean memoire = ManagementFactory.getMemoryMXBean();
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        long memoireInitiale = memoireUtilisee(memoire);
+        int threadsInitiaux = threads.getThreadCount();
+        sortie.printf("%-10s %-12s %-14s %-10s%n", "parties", "tas (Mo)", "Ko / partie", "threads");
+
+        int nbParties = 0;
+        for (int palier : paliers) {
+            for (; nbParties < palier; nbParties++) {
+                GameServer.creerPartie("bench-" + nbParties, NOMS_JOUEURS);
+            }
+            attendreParties();
+            long memoireParties = memoireUtilisee(memoire) - memoireInitiale;
+            sortie.printf("%-10d %-12.1f %-14.1f %-10d%n",
+                    nbParties,
+                    memoireParties / (1024.0 * 1024.0),
+                    memoireParties / 1024.0 / nbParties,
+                    threads.getThreadCount() - threadsInitiaux);
+        }
+        System.setOut(sortie);
+    }
+
+    /**
+     * Attend que toutes les parties aient publié leur premier état (elles sont
+     * alors bloquées en attente d'une instruction)
+     */
+    private static void attendreParties() throws InterruptedException {
+        for (Partie partie : GameServer.getParties()) {
+            while (partie.getEtat() == null) {
+                Thread.sleep(1);
+            }
+        }
+    }
+
+    private static long memoireUtilisee(MemoryMXBean memoire) throws InterruptedException {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            Thread.sleep(50);
+        }
+        return memoire.getHeapMemoryUsage().getUsed();
+    }
+}
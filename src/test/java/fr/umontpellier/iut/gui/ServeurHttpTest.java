@@ -0,0 +1,96 @@
+package fr.umontpellier.iut.gui;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ServeurHttpTest {
+    private static final String ID_PARTIE = "test-http";
+
+    private ServeurHttp serveur;
+    private HttpClient client;
+    private Partie partie;
+
+    @BeforeEach
+    void init() throws Exception {
+        partie = GameServer.creerPartie(ID_PARTIE, new String[]{"Guybrush", "Largo"});
+        // attend que la partie publie son premier état
+        partie.attendreEtatApres(-1).get();
+        serveur = new ServeurHttp("localhost", 0);
+        serveur.start();
+        client = HttpClient.newHttpClient();
+    }
+
+    @AfterEach
+    void fin() {
+        serveur.stop();
+        GameServer.supprimerPartie(ID_PARTIE);
+    }
+
+    private HttpRequest.Builder requete(String parametres) {
+        return HttpRequest.newBuilder(URI.create("http://localhost:" + serveur.getPort()
+                + ServeurHttp.CHEMIN_ETAT + "?partie=" + ID_PARTIE + parametres));
+    }
+
+    @Test
+    void testEtatAvecETagPuis304() throws Exception {
+        HttpResponse<String> reponse = client.send(requete("").build(), HttpResponse.BodyHandlers.ofString());
+        assertEquals(200, reponse.statusCode());
+        String etag = reponse.headers().firstValue("ETag").orElseThrow();
+        assertEquals(ServeurHttp.etag(partie.getEtat()), etag);
+        assertEquals(partie.getEtat().toJson(), reponse.body());
+
+        HttpResponse<String> inchange = client.send(requete("").header("If-None-Match", etag).build(),
+                HttpResponse.BodyHandlers.ofString());
+        assertEquals(304, inchange.statusCode());
+    }
+
+    @Test
+    void testAttenteJusquALaVersionSuivante() throws Exception {
+        long version = partie.getEtat().getVersion();
+        CompletableFuture<HttpResponse<String>> reponse = client.sendAsync(
+                requete("&attente=10000").header("If-None-Match", ServeurHttp.etag(partie.getEtat())).build(),
+                HttpResponse.BodyHandlers.ofString());
+        Thread.sleep(100);
+        assertFalse(reponse.isDone());
+
+        // une instruction invalide ne publie pas de nouvel état
+        partie.addInput("instruction invalide");
+        Thread.sleep(100);
+        assertFalse(reponse.isDone());
+        assertEquals(version, partie.getEtat().getVersion());
+
+        // le premier joueur passe le choix de ses destinations initiales
+        partie.addInput("");
+        assertEquals(200, reponse.get().statusCode());
+        assertEquals(ServeurHttp.etag(partie.getEtat()), reponse.get().headers().firstValue("ETag").orElseThrow());
+        assertTrue(partie.getEtat().getVersion() > version);
+    }
+
+    @Test
+    void testAttenteExpireeRenvoie304() throws Exception {
+        HttpResponse<String> reponse = client.send(
+                requete("&attente=50").header("If-None-Match", ServeurHttp.etag(partie.getEtat())).build(),
+                HttpResponse.BodyHandlers.ofString());
+        assertEquals(304, reponse.statusCode());
+    }
+
+    @Test
+    void testTagDUneAutrePartieRenvoieLEtat() throws Exception {
+        EtatPartie etat = partie.getEtat();
+        // version plus récente d'une partie précédente de même identifiant
+        String ancien = "\"" + (etat.getEpoque() + 1) + "-" + (etat.getVersion() + 100) + "\"";
+        HttpResponse<String> reponse = client.send(requete("&attente=10000").header("If-None-Match", ancien).build(),
+                HttpResponse.BodyHandlers.ofString());
+        assertEquals(200, reponse.statusCode());
+        assertEquals(ServeurHttp.etag(etat), reponse.headers().firstValue("ETag").orElseThrow());
+    }
+}
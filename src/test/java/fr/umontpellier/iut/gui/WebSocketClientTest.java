@@ -0,0 +1,46 @@
+package fr.umontpellier.iut.gui;
+
+import org.junit.jupiter.api.Test;
+
+import javax.websocket.Session;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.mockito.Mockito.*;
+
+public class WebSocketClientTest {
+
+    /**
+     * @return une session déjà ouverte sur la partie, avec les paramètres de
+     * connexion donnés
+     */
+    private static Session session(Partie partie, Map<String, List<String>> parametres) {
+        Session session = mock(Session.class);
+        when(session.getRequestParameterMap()).thenReturn(parametres);
+        Map<String, Object> proprietes = new HashMap<>();
+        when(session.getUserProperties()).thenReturn(proprietes);
+        proprietes.put(WebSocketClient.PROPRIETE_PARTIE, partie);
+        proprietes.put(WebSocketClient.PROPRIETE_CLIENT, new Client(session));
+        return session;
+    }
+
+    @Test
+    void testInstructionsDesSpectateursIgnorees() {
+        Partie partie = mock(Partie.class);
+        when(partie.addInput(any(Client.class), anyString())).thenReturn(true);
+        WebSocketClient serveur = new WebSocketClient();
+
+        Session spectateur = session(partie, Map.of(Client.PARAMETRE_ROLE, List.of(Client.ROLE_SPECTATEUR)));
+        serveur.onMessage("ROUGE", spectateur);
+        verify(partie, never()).addInput(any(Client.class), anyString());
+
+        // les commandes restent acceptées (un spectateur peut redemander l'état)
+        serveur.onMessage(Partie.PREFIXE_COMMANDE + "etat", spectateur);
+        verify(partie).executerCommande(any(Client.class), eq(Partie.PREFIXE_COMMANDE + "etat"));
+
+        Session joueur = session(partie, Map.of());
+        serveur.onMessage("ROUGE", joueur);
+        verify(partie).addInput((Client) joueur.getUserProperties().get(WebSocketClient.PROPRIETE_CLIENT), "ROUGE");
+    }
+}
@@ -0,0 +1,142 @@
+package fr.umontpellier.iut.rails;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AffectationGaresTest {
+
+    @Test
+    void testGaresEmpruntentLesRoutesUtiles() {
+        Jeu jeu = new Jeu(new String[]{"Guybrush", "Largo"});
+        Plateau plateau = jeu.getPlateau();
+        Joueur joueur1 = jeu.getJoueurs().get(0);
+        Joueur joueur2 = jeu.getJoueurs().get(1);
+        Destination frankfurt = new Destination("Amsterdam", "Frankfurt", 8);
+        Destination berlin = new Destination("Amsterdam", "Berlin", 5);
+        joueur1.getDestinations().clear();
+        joueur1.getDestinations().addAll(List.of(frankfurt, berlin));
+        plateau.getRoute("Amsterdam - Essen").setProprietaire(joueur1);
+        plateau.getRoute("Essen - Frankfurt").setProprietaire(joueur2);
+        plateau.getRoute("Berlin - Essen").setProprietaire(joueur2);
+
+        // une seule gare à Essen : la destination la plus chère
+        plateau.getVille("Essen").setProprietaire(joueur1);
+        AffectationGares affectation = AffectationGares.calculer(plateau, joueur1);
+        assertEquals(List.of(plateau.getRoute("Essen - Frankfurt")), affectation.getRoutesEmpruntees());
+        assertTrue(affectation.estRealisee(frankfurt));
+        assertFalse(affectation.estRealisee(berlin));
+        assertFalse(plateau.estRealisee(joueur1, frankfurt));
+
+        // une deuxième gare à Frankfurt emprunte la même route : Essen prend l'autre
+        plateau.getVille("Frankfurt").setProprietaire(joueur1);
+        affectation = AffectationGares.calculer(plateau, joueur1);
+        assertEquals(2, affectation.getRoutesEmpruntees().size());
+        assertTrue(affectation.estRealisee(frankfurt));
+        assertTrue(affectation.estRealisee(berlin));
+    }
+
+    @Test
+    void testGareRealiseDestinationVersVenezia() {
+        Jeu jeu = new Jeu(new String[]{"Guybrush", "Largo"});
+        Plateau plateau = jeu.getPlateau();
+        Joueur joueur1 = jeu.getJoueurs().get(0);
+        Joueur joueur2 = jeu.getJoueurs().get(1);
+        Destination venezia = Destination.makeDestinationsEurope().stream()
+                .filter(d -> d.getVille1().equals("Venezia"))
+                .findFirst().orElseThrow();
+        Destination zagrab = new Destination("Roma", "Zagrab", 4);
+        joueur1.getDestinations().clear();
+        joueur1.getDestinations().addAll(List.of(venezia, zagrab));
+        // le joueur relie Roma à Constantinople, mais pas Venezia
+        for (String route : List.of("Brindisi - Roma", "Athina - Brindisi", "Athina - Smyrna",
+                "Constantinople - Smyrna")) {
+            plateau.getRoute(route).setProprietaire(joueur1);
+        }
+        plateau.getRoute("Roma - Venezia").setProprietaire(joueur2);
+        plateau.getRoute("Venezia - Zagrab").setProprietaire(joueur2);
+
+        // une gare à Venezia réalise la destination la plus chère
+        plateau.getVille("Venezia").setProprietaire(joueur1);
+        AffectationGares affectation = AffectationGares.calculer(plateau, joueur1);
+        assertEquals(List.of(plateau.getRoute("Roma - Venezia")), affectation.getRoutesEmpruntees());
+        assertTrue(affectation.estRealisee(venezia));
+        assertFalse(affectation.estRealisee(zagrab));
+    }
+
+    /**
+     * @return le plus de points de destinations obtenus en essayant tous les
+     * choix de routes des gares
+     */
+    private static int parcoursExhaustif(Plateau plateau, Joueur joueur, List<Ville> gares, int gare,
+                                         List<Route> empruntees) {
+        if (gare == gares.size()) {
+            Topologie topologie = plateau.getTopologie();
+            Connexions connexions = new Connexions(topologie.getNbVilles());
+            for (Route route : plateau.getRoutesCapturees(joueur)) {
+                connexions.relier(route.getVille1().getId(), route.getVille2().getId());
+            }
+            for (Route route : empruntees) {
+                connexions.relier(route.getVille1().getId(), route.getVille2().getId());
+            }
+            int points = 0;
+            for (Destination destination : joueur.getDestinations()) {
+                if (connexions.sontReliees(destination.getIdVille1(), destination.getIdVille2())) {
+                    points += destination.getValeur();
+                }
+            }
+            return points;
+        }
+        int meilleur = parcoursExhaustif(plateau, joueur, gares, gare + 1, empruntees);
+        for (Route route : plateau.getRoutesAdjacentes(gares.get(gare))) {
+            if (route.getProprietaire() != null && route.getProprietaire() != joueur) {
+                empruntees.add(route);
+                meilleur = Math.max(meilleur, parcoursExhaustif(plateau, joueur, gares, gare + 1, empruntees));
+                empruntees.remove(empruntees.size() - 1);
+            }
+        }
+        return meilleur;
+    }
+
+    @Test
+    void testAffectationsAleatoiresOptimales() {
+        Random random = new Random(11);
+        for (int essai = 0; essai < 40; essai++) {
+            Jeu jeu = new Jeu(new String[]{"Guybrush", "Largo", "LeChuck"});
+            Plateau plateau = jeu.getPlateau();
+            Joueur joueur = jeu.getJoueurs().get(0);
+            List<Route> routes = plateau.getRoutes();
+            List<Ville> villes = plateau.getVilles();
+            for (int i = 0; i < 60; i++) {
+                Route route = routes.get(random.nextInt(routes.size()));
+                route.setProprietaire(jeu.getJoueurs().get(random.nextInt(jeu.getJoueurs().size())));
+            }
+            for (int i = 0; i < 3; i++) {
+                villes.get(random.nextInt(villes.size())).setProprietaire(joueur);
+            }
+            joueur.getDestinations().clear();
+            for (int i = 0; i < 6; i++) {
+                Ville ville1 = villes.get(random.nextInt(villes.size()));
+                Ville ville2 = villes.get(random.nextInt(villes.size()));
+                joueur.getDestinations().add(new Destination(ville1.getNom(), ville2.getNom(), 1 + random.nextInt(20)));
+            }
+
+            AffectationGares affectation = AffectationGares.calculer(plateau, joueur);
+            int points = 0;
+            for (Destination destination : joueur.getDestinations()) {
+                if (affectation.estRealisee(destination)) points += destination.getValeur();
+            }
+            List<Ville> gares = plateau.getGares(joueur);
+            assertEquals(parcoursExhaustif(plateau, joueur, gares, 0, new ArrayList<>()), points);
+            assertTrue(affectation.getRoutesEmpruntees().size() <= gares.size());
+            for (Route route : affectation.getRoutesEmpruntees()) {
+                assertNotSame(joueur, route.getProprietaire());
+                assertNotNull(route.getProprietaire());
+            }
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package fr.umontpellier.iut.rails;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Mesure le calcul du plus long chemin continu (bonus European Express) sur des
+ * réseaux de 45 wagons, le pire cas d'une fin de partie : des réseaux denses
+ * formés des routes les plus courtes autour d'une ville (beaucoup de villes de
+ * degré impair et de cycles).
+ * <p>
+ * {@code parcoursExhaustif} reprend l'ancien calcul (parcours en profondeur de
+ * toutes les routes depuis toutes les villes) ; {@code solveur} utilise
+ * {@code CheminLePlusLong} (composantes, départs de degré impair, masques de
+ * bits et mémorisation).
+ * <p>
+ * Exécution : lancer la méthode {@code main} depuis l'IDE (ou avec le classpath
+ * de test après {@code mvn test-compile}).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class CheminBenchmark {
+    /**
+     * Graines des réseaux : 141, 181 et 188 donnent les réseaux les plus lents
+     * pour le parcours exhaustif parmi les 300 premières graines
+     */
+    @Param({"2", "141", "181", "188"})
+    private int graine;
+
+    private int[] routes;
+
+    @Setup
+    public void setUp() {
+        routes = CheminLePlusLongTest.reseauDense(new Random(graine), 45);
+    }
+
+    @Benchmark
+    public int solveur() {
+        return CheminLePlusLong.calculer(Topologie.EUROPE, routes);
+    }
+
+    @Benchmark
+    public int parcoursExhaustif() {
+        return CheminLePlusLongTest.parcoursExhaustif(routes);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(CheminBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
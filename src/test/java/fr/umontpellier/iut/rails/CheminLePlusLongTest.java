@@ -0,0 +1,99 @@
+package fr.umontpellier.iut.rails;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class CheminLePlusLongTest {
+    private static final Topologie TOPOLOGIE = Topologie.EUROPE;
+
+    /**
+     * Réseau dense d'au plus {@code nbWagons} wagons : à partir d'une ville au
+     * hasard, ajoute à chaque étape la route la plus courte touchant le réseau
+     * (sans prendre les deux routes d'une route double)
+     */
+    static int[] reseauDense(Random random, int nbWagons) {
+        boolean[] villes = new boolean[TOPOLOGIE.getNbVilles()];
+        boolean[] routes = new boolean[TOPOLOGIE.getNbRoutes()];
+        villes[random.nextInt(villes.length)] = true;
+        List<Integer> reseau = new ArrayList<>();
+        int wagons = 0;
+        while (true) {
+            int choisie = -1;
+            for (int route = 0; route < routes.length; route++) {
+                int routeDouble = TOPOLOGIE.getRouteDouble(route);
+                if (routes[route] || (routeDouble != Topologie.AUCUNE && routes[routeDouble])
+                        || wagons + TOPOLOGIE.getLongueur(route) > nbWagons
+                        || !(villes[TOPOLOGIE.getVille1(route)] || villes[TOPOLOGIE.getVille2(route)])) {
+                    continue;
+                }
+                if (choisie < 0 || TOPOLOGIE.getLongueur(route) < TOPOLOGIE.getLongueur(choisie)
+                        || (TOPOLOGIE.getLongueur(route) == TOPOLOGIE.getLongueur(choisie) && random.nextBoolean())) {
+                    choisie = route;
+                }
+            }
+            if (choisie < 0) break;
+            routes[choisie] = true;
+            villes[TOPOLOGIE.getVille1(choisie)] = true;
+            villes[TOPOLOGIE.getVille2(choisie)] = true;
+            wagons += TOPOLOGIE.getLongueur(choisie);
+            reseau.add(choisie);
+        }
+        return reseau.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    /**
+     * Plus long chemin par parcours exhaustif de toutes les routes depuis toutes
+     * les villes
+     */
+    static int parcoursExhaustif(int[] routes) {
+        boolean[] disponibles = new boolean[TOPOLOGIE.getNbRoutes()];
+        for (int route : routes) disponibles[route] = true;
+        int meilleur = 0;
+        for (int ville = 0; ville < TOPOLOGIE.getNbVilles(); ville++) {
+            meilleur = Math.max(meilleur, explorer(disponibles, ville));
+        }
+        return meilleur;
+    }
+
+    private static int explorer(boolean[] disponibles, int ville) {
+        int meilleur = 0;
+        for (int route : TOPOLOGIE.getRoutesAdjacentes(ville)) {
+            if (disponibles[route]) {
+                disponibles[route] = false;
+                int suivante = TOPOLOGIE.getVille1(route) == ville ? TOPOLOGIE.getVille2(route) : TOPOLOGIE.getVille1(route);
+                meilleur = Math.max(meilleur, TOPOLOGIE.getLongueur(route) + explorer(disponibles, suivante));
+                disponibles[route] = true;
+            }
+        }
+        return meilleur;
+    }
+
+    @Test
+    void testReseauxDenses() {
+        Random random = new Random(11);
+        for (int i = 0; i < 20; i++) {
+            int[] routes = reseauDense(random, 10 + random.nextInt(16));
+            assertEquals(parcoursExhaustif(routes), CheminLePlusLong.calculer(TOPOLOGIE, routes));
+        }
+    }
+
+    @Test
+    void testPlusieursComposantes() {
+        Random random = new Random(5);
+        for (int i = 0; i < 20; i++) {
+            int[] routes = new int[4 + random.nextInt(12)];
+            for (int k = 0; k < routes.length; k++) {
+                routes[k] = random.nextInt(TOPOLOGIE.getNbRoutes());
+            }
+            routes = Arrays.stream(routes).distinct().toArray();
+            assertEquals(parcoursExhaustif(routes), CheminLePlusLong.calculer(TOPOLOGIE, routes));
+        }
+        assertEquals(0, CheminLePlusLong.calculer(TOPOLOGIE, new int[0]));
+    }
+}
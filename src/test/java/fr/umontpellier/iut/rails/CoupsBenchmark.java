@@ -0,0 +1,148 @@
+package fr.umontpellier.iut.rails;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Mesure la génération des coups d'un joueur (les routes qu'il peut capturer et
+ * les villes où il peut construire une gare, comme au début de
+ * {@code Joueur.jouerTour}), selon le nombre de cartes en main.
+ * <p>
+ * {@code frequences} reprend l'ancien calcul, qui compte les cartes avec
+ * {@code Collections.frequency} sur la liste des cartes pour chaque carte de la
+ * main et parcourt toutes les routes pour trouver les routes doubles ; {@code histogramme} utilise les méthodes actuelles, qui lisent le
+ * nombre de cartes de chaque couleur en temps constant ; {@code incremental}
+ * utilise les coups possibles tenus à jour par le joueur ({@code CoupsPossibles})
+ * après le gain puis la dépense d'une carte (seules les routes de cette couleur
+ * et les routes grises sont re-testées).
+ * <p>
+ * Exécution : lancer la méthode {@code main} depuis l'IDE (ou avec le classpath
+ * de test après {@code mvn test-compile}).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class CoupsBenchmark {
+    @Param({"8", "20", "40"})
+    private int nbCartes;
+
+    private Jeu jeu;
+    private Joueur joueur;
+    /**
+     * Main du joueur sous forme de liste (pour l'ancien calcul)
+     */
+    private List<CouleurWagon> main;
+
+    @Setup
+    public void setUp() {
+        jeu = new Jeu(new String[]{"Guybrush", "Largo", "LeChuck", "Elaine"});
+        joueur = jeu.getJoueurs().get(0);
+        joueur.getCartesWagon().clear();
+        Random random = new Random(42);
+        CouleurWagon[] couleurs = CouleurWagon.values();
+        for (int i = 0; i < nbCartes; i++) {
+            CouleurWagon couleur = couleurs[random.nextInt(couleurs.length)];
+            joueur.getCartesWagon().add(couleur == CouleurWagon.GRIS ? CouleurWagon.LOCOMOTIVE : couleur);
+        }
+        main = new ArrayList<>(joueur.getCartesWagon());
+        Collections.shuffle(main, random);
+        // quelques routes capturées, pour la recherche des routes doubles
+        for (int i = 0; i < 10; i++) {
+            jeu.getRoutes().get(i * 7).setProprietaire(joueur);
+        }
+    }
+
+    @Benchmark
+    public int histogramme() {
+        int nbCoups = 0;
+        for (Route route : jeu.getRoutes()) {
+            if (route.estCapturablePar(joueur)) nbCoups++;
+        }
+        for (Ville ville : jeu.getVilles()) {
+            if (ville.estCapturableParJoueur(joueur)) nbCoups++;
+        }
+        return nbCoups;
+    }
+
+    @Benchmark
+    public int incremental() {
+        joueur.getCartesWagon().add(CouleurWagon.ROUGE);
+        joueur.getCartesWagon().remove(CouleurWagon.ROUGE);
+        CoupsPossibles coups = joueur.getCoupsPossibles();
+        return coups.getRoutesCapturables().size() + coups.getVillesCapturables().size();
+    }
+
+    @Benchmark
+    public int frequences() {
+        int nbCoups = 0;
+        for (Route route : jeu.getRoutes()) {
+            if (estCapturableAvecFrequences(route)) nbCoups++;
+        }
+        for (Ville ville : jeu.getVilles()) {
+            if (ville.getProprietaire() == null && joueur.getNbGares() >= 1) {
+                int prix = joueur.getNbGares() == 3 ? 1 : joueur.getNbGares() == 2 ? 2 : 3;
+                for (CouleurWagon c : main) {
+                    if (Collections.frequency(main, c) + Collections.frequency(main, CouleurWagon.LOCOMOTIVE) >= prix) {
+                        nbCoups++;
+                        break;
+                    }
+                }
+            }
+        }
+        return nbCoups;
+    }
+
+    /**
+     * Ancienne version de {@code Route.estCapturablePar} (et
+     * {@code Ferry.estCapturablePar})
+     */
+    private boolean estCapturableAvecFrequences(Route route) {
+        int nbLocomotives = route instanceof Ferry ferry ? ferry.getNbLocomotives() : 0;
+        if (route.getProprietaire() != null || joueur.getNbWagons() < route.getLongueur()
+                || Collections.frequency(main, CouleurWagon.LOCOMOTIVE) < nbLocomotives) {
+            return false;
+        }
+        for (Route routeJoueur : jeu.getRoutes()) {
+            if (joueur.equals(routeJoueur.getProprietaire()) && estDouble(routeJoueur, route)) return false;
+        }
+        int longueur = route.getLongueur() - nbLocomotives;
+        if (route.getCouleur() != CouleurWagon.GRIS && nbLocomotives == 0) {
+            int nbCartesBonneCouleur = Collections.frequency(main, route.getCouleur());
+            return nbCartesBonneCouleur >= longueur
+                    || Collections.frequency(main, CouleurWagon.LOCOMOTIVE) >= longueur - nbCartesBonneCouleur;
+        }
+        for (CouleurWagon c : main) {
+            if (Collections.frequency(main, c) >= longueur
+                    || Collections.frequency(main, CouleurWagon.LOCOMOTIVE) >= longueur - Collections.frequency(main, c)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Ancienne version de {@code Route.estDouble} (comparaison des noms)
+     */
+    private static boolean estDouble(Route r1, Route r2) {
+        return ((r1.getVille1().equals(r2.getVille1()) || r1.getVille1().equals(r2.getVille2()))
+                && (r1.getVille2().equals(r2.getVille2()) || r1.getVille2().equals(r2.getVille1()))
+                && !r1.getNom().equals(r2.getNom()));
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(CoupsBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,103 @@
+package fr.umontpellier.iut.rails;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class CoupsPossiblesTest {
+    private IOJeu jeu;
+    private Joueur joueur1;
+    private Joueur joueur2;
+
+    @BeforeEach
+    void init() {
+        jeu = new IOJeu(new String[]{"Guybrush", "Largo", "LeChuck", "Elaine"});
+        joueur1 = jeu.getJoueurs().get(0);
+        joueur2 = jeu.getJoueurs().get(1);
+        joueur1.getCartesWagon().clear();
+        joueur2.getCartesWagon().clear();
+    }
+
+    /**
+     * @return les routes capturables, calculées en testant toutes les routes
+     */
+    private List<Route> routesCapturables(Joueur joueur) {
+        List<Route> routes = new ArrayList<>();
+        for (Route route : jeu.getRoutes()) {
+            if (route.estCapturablePar(joueur)) routes.add(route);
+        }
+        return routes;
+    }
+
+    private List<Ville> villesCapturables(Joueur joueur) {
+        List<Ville> villes = new ArrayList<>();
+        for (Ville ville : jeu.getVilles()) {
+            if (ville.estCapturableParJoueur(joueur)) villes.add(ville);
+        }
+        return villes;
+    }
+
+    @Test
+    void testRouteDoubleEtCartes() {
+        CoupsPossibles coups = joueur1.getCoupsPossibles();
+        assertTrue(coups.getRoutesCapturables().isEmpty());
+        assertTrue(coups.getVillesCapturables().isEmpty());
+
+        joueur1.getCartesWagon().addAll(List.of(CouleurWagon.ROUGE, CouleurWagon.ROUGE, CouleurWagon.LOCOMOTIVE));
+        Route route1 = jeu.getPlateau().getRoute("Berlin - Frankfurt(1)");
+        Route route2 = jeu.getPlateau().getRoute("Berlin - Frankfurt(2)");
+        assertTrue(coups.getRoutesCapturables().contains(route1));
+        assertEquals(routesCapturables(joueur1), coups.getRoutesCapturables());
+        assertEquals(jeu.getVilles().size(), coups.getVillesCapturables().size());
+
+        route2.setProprietaire(joueur1);
+        assertTrue(!coups.getRoutesCapturables().contains(route1));
+        assertEquals(routesCapturables(joueur1), coups.getRoutesCapturables());
+
+        jeu.getVilles().get(3).setProprietaire(joueur2);
+        assertEquals(villesCapturables(joueur1), coups.getVillesCapturables());
+    }
+
+    @Test
+    void testEvenementsAleatoires() {
+        Random random = new Random(7);
+        CouleurWagon[] couleurs = CouleurWagon.values();
+        List<Joueur> joueurs = List.of(joueur1, joueur2);
+        for (int i = 0; i < 2000; i++) {
+            Joueur joueur = joueurs.get(random.nextInt(2));
+            switch (random.nextInt(5)) {
+                case 0, 1 -> {
+                    CouleurWagon couleur = couleurs[random.nextInt(couleurs.length)];
+                    if (couleur != CouleurWagon.GRIS) joueur.getCartesWagon().add(couleur);
+                }
+                case 2 -> {
+                    if (!joueur.getCartesWagon().isEmpty()) {
+                        joueur.getCartesWagon().remove(random.nextInt(joueur.getCartesWagon().size()));
+                    }
+                }
+                case 3 -> {
+                    Route route = jeu.getRoutes().get(random.nextInt(jeu.getRoutes().size()));
+                    if (route.getProprietaire() == null && random.nextInt(4) == 0) route.setProprietaire(joueur);
+                }
+                default -> {
+                    if (joueur.getNbWagons() > 0 && random.nextInt(3) == 0) joueur.poserWagon(1);
+                    Ville ville = jeu.getVilles().get(random.nextInt(jeu.getVilles().size()));
+                    if (ville.getProprietaire() == null && random.nextInt(6) == 0) ville.setProprietaire(joueur);
+                }
+            }
+            if (i % 50 == 0 && random.nextBoolean()) {
+                joueur.getCartesWagon().clear();
+            }
+            for (Joueur j : joueurs) {
+                assertEquals(routesCapturables(j), j.getCoupsPossibles().getRoutesCapturables());
+                assertEquals(villesCapturables(j), j.getCoupsPossibles().getVillesCapturables());
+            }
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package fr.umontpellier.iut.rails;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DestinationTest {
+
+    @Test
+    void testToutesLesDestinationsRelientDesVillesDuPlateau() {
+        List<Destination> destinations = new ArrayList<>(Destination.makeDestinationsEurope());
+        destinations.addAll(Destination.makeDestinationsLonguesEurope());
+        Topologie topologie = Topologie.EUROPE;
+        for (Destination destination : destinations) {
+            assertEquals(destination.getVille1(), topologie.getNomVille(destination.getIdVille1()));
+            assertEquals(destination.getVille2(), topologie.getNomVille(destination.getIdVille2()));
+        }
+    }
+
+    @Test
+    void testVilleInconnueRefusee() {
+        assertThrows(IllegalArgumentException.class, () -> new Destination("Paris", "Zagreb", 7));
+    }
+
+    @Test
+    void testDestinationVersDanzigRealisable() {
+        Jeu jeu = new Jeu(new String[]{"Guybrush", "Largo"});
+        Plateau plateau = jeu.getPlateau();
+        Joueur joueur = jeu.getJoueurs().get(0);
+        Destination destination = new Destination("Berlin", "Danzig", 4);
+        assertFalse(plateau.estRealisee(joueur, destination));
+        plateau.getRoute("Berlin - Danzig").setProprietaire(joueur);
+        assertTrue(plateau.estRealisee(joueur, destination));
+    }
+}
@@ -0,0 +1,98 @@
+package fr.umontpellier.iut.rails;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class EcrivainBinaireTest {
+    private IOJeu jeu;
+    private EcrivainBinaire ecrivain;
+
+    @BeforeEach
+    void init() {
+        jeu = new IOJeu(new String[]{"Guybrush", "Largo", "LeChuck", "Elaine"});
+        ecrivain = new EcrivainBinaire(jeu);
+    }
+
+    @Test
+    void testDictionnaireContientLesNoms() throws IOException {
+        DataInputStream entree = new DataInputStream(new ByteArrayInputStream(ecrivain.getDictionnaire()));
+        assertEquals(EcrivainBinaire.TRAME_DICTIONNAIRE, entree.readByte());
+        int nbCouleurs = entree.readUnsignedByte();
+        assertEquals(CouleurWagon.values().length, nbCouleurs);
+        for (int i = 0; i < nbCouleurs; i++) {
+            assertEquals(CouleurWagon.values()[i].name(), entree.readUTF());
+        }
+        assertEquals(jeu.getVilles().size(), entree.readUnsignedShort());
+        for (Ville ville : jeu.getVilles()) {
+            assertEquals(ville.getNom(), entree.readUTF());
+        }
+        assertEquals(jeu.getRoutes().size(), entree.readUnsignedShort());
+        Route route = jeu.getRoutes().get(0);
+        assertEquals(route.getNom(), entree.readUTF());
+        assertEquals(route.getVille1(), jeu.getVilles().get(entree.readUnsignedShort()));
+        assertEquals(route.getVille2(), jeu.getVilles().get(entree.readUnsignedShort()));
+        assertEquals(route.getLongueur(), entree.readUnsignedByte());
+    }
+
+    @Test
+    void testEtatUtiliseDesIndices() throws IOException {
+        Joueur joueur = jeu.getJoueurs().get(2);
+        jeu.getRoutes().get(5).setProprietaire(joueur);
+        joueur.getCartesWagon().clear();
+        joueur.getCartesWagon().addAll(List.of(CouleurWagon.ROUGE, CouleurWagon.LOCOMOTIVE, CouleurWagon.ROUGE));
+
+        byte[] trame = ecrivain.ecrire(7, "Que voulez-vous faire ?", List.of("oui", "non"), true);
+        DataInputStream entree = new DataInputStream(new ByteArrayInputStream(trame));
+        assertEquals(EcrivainBinaire.TRAME_ETAT, entree.readByte());
+        assertEquals(7, entree.readLong());
+        assertEquals("Que voulez-vous faire ?", entree.readUTF());
+        assertEquals(2, entree.readUnsignedByte());
+        assertEquals("oui", entree.readUTF());
+        assertEquals("non", entree.readUTF());
+        assertEquals(0, entree.readUnsignedByte());
+        assertTrue(entree.readBoolean());
+
+        int nbVilles = entree.readUnsignedShort();
+        for (int i = 0; i < nbVilles; i++) {
+            assertEquals(EcrivainBinaire.AUCUN, entree.readUnsignedByte());
+        }
+        int nbRoutes = entree.readUnsignedShort();
+        for (int i = 0; i < nbRoutes; i++) {
+            assertEquals(i == 5 ? 2 : EcrivainBinaire.AUCUN, entree.readUnsignedByte());
+        }
+
+        assertEquals(4, entree.readUnsignedByte());
+        // joueurs précédents
+        for (int i = 0; i < 2; i++) {
+            entree.readShort();
+            entree.readUnsignedByte();
+            entree.readUnsignedByte();
+            entree.skipBytes(entree.readUnsignedByte() * 5);
+            entree.skipBytes(2 * CouleurWagon.values().length);
+        }
+        assertEquals(joueur.getScore(), entree.readShort());
+        assertEquals(joueur.getNbGares(), entree.readUnsignedByte());
+        assertEquals(joueur.getNbWagons(), entree.readUnsignedByte());
+        entree.skipBytes(entree.readUnsignedByte() * 5);
+        for (CouleurWagon couleur : CouleurWagon.values()) {
+            int attendu = couleur == CouleurWagon.ROUGE ? 2 : couleur == CouleurWagon.LOCOMOTIVE ? 1 : 0;
+            assertEquals(attendu, entree.readUnsignedByte());
+        }
+    }
+
+    @Test
+    void testEtatBinairePlusPetitQueLeJson() {
+        EcrivainEtat ecrivainJson = new EcrivainEtat(jeu);
+        String json = ecrivainJson.ecrire(1, "Que voulez-vous faire ?", List.of(), true).toJson();
+        byte[] trame = ecrivain.ecrire(1, "Que voulez-vous faire ?", List.of(), true);
+        assertTrue(trame.length * 3 < json.getBytes(StandardCharsets.UTF_8).length);
+    }
+}
@@ -0,0 +1,118 @@
+package fr.umontpellier.iut.rails;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class JeuTest {
+
+    @Test
+    void testPartieAvanceeParEtapes() {
+        Jeu jeu = new Jeu(new String[]{"Guybrush", "Largo"});
+        assertNull(jeu.getInviteCourante());
+        assertFalse(jeu.appliquer(""));
+
+        jeu.demarrer();
+        Joueur joueur1 = jeu.getJoueurs().get(0);
+        Joueur joueur2 = jeu.getJoueurs().get(1);
+
+        // destinations initiales du premier joueur
+        Invite invite = jeu.getInviteCourante();
+        assertSame(joueur1, invite.getJoueur());
+        assertTrue(invite.peutPasser());
+        assertEquals(4, invite.getBoutons().size());
+        assertFalse(jeu.appliquer("Montpellier"));
+        assertSame(invite, jeu.getInviteCourante());
+        assertTrue(jeu.appliquer(invite.getBoutons().get(0)));
+        assertSame(joueur1, jeu.getInviteCourante().getJoueur());
+        assertEquals(3, jeu.getInviteCourante().getBoutons().size());
+        assertTrue(jeu.appliquer(""));
+        assertEquals(3, joueur1.getDestinations().size());
+
+        // destinations initiales du second joueur
+        assertSame(joueur2, jeu.getInviteCourante().getJoueur());
+        assertTrue(jeu.appliquer(""));
+        assertEquals(4, joueur2.getDestinations().size());
+
+        // premier tour : le joueur 1 pioche deux cartes wagon de la pile
+        assertSame(joueur1, jeu.getInviteCourante().getJoueur());
+        int nbCartes = joueur1.getCartesWagon().size();
+        assertTrue(jeu.appliquer("GRIS"));
+        if (jeu.getInviteCourante().getJoueur() == joueur1) {
+            assertTrue(jeu.appliquer("GRIS"));
+        }
+        assertEquals(nbCartes + 2, joueur1.getCartesWagon().size());
+        assertSame(joueur2, jeu.getInviteCourante().getJoueur());
+        assertFalse(jeu.estTerminee());
+    }
+
+    @Test
+    void testDecompteFinDePartie() {
+        Jeu jeu = new Jeu(new String[]{"Guybrush", "Largo", "LeChuck"});
+        Plateau plateau = jeu.getPlateau();
+        Joueur joueur1 = jeu.getJoueurs().get(0);
+        Joueur joueur2 = jeu.getJoueurs().get(1);
+        Joueur joueur3 = jeu.getJoueurs().get(2);
+        for (Joueur joueur : jeu.getJoueurs()) joueur.getDestinations().clear();
+        // joueur 1 : Amsterdam - Essen (3) - Frankfurt (2), destination réalisée
+        plateau.getRoute("Amsterdam - Essen").setProprietaire(joueur1);
+        plateau.getRoute("Essen - Frankfurt").setProprietaire(joueur1);
+        joueur1.getDestinations().add(new Destination("Amsterdam", "Frankfurt", 8));
+        // joueur 2 : une route de 3 et une route de 2 séparées, destination manquée
+        plateau.getRoute("Angora - Erzurum").setProprietaire(joueur2);
+        plateau.getRoute("Barcelona - Madrid").setProprietaire(joueur2);
+        joueur2.getDestinations().add(new Destination("Madrid", "Erzurum", 21));
+        // joueur 3 : une seule route de 3, aucune destination
+        plateau.getRoute("Athina - Sofia").setProprietaire(joueur3);
+
+        jeu.decompter();
+        List<Decompte> decomptes = jeu.getDecomptes();
+        Decompte decompte1 = decomptes.get(0);
+        assertEquals(4 + 2, decompte1.getPointsRoutes());
+        assertEquals(8, decompte1.getPointsDestinationsRealisees());
+        assertEquals(0, decompte1.getPointsDestinationsManquees());
+        assertEquals(12, decompte1.getPointsGares());
+        assertEquals(5, decompte1.getLongueurCheminLePlusLong());
+        assertEquals(Decompte.BONUS_EUROPE_EXPRESS, decompte1.getBonusEuropeExpress());
+        assertEquals(6 + 8 + 12 + 10, decompte1.getTotal());
+        assertEquals(decompte1.getTotal(), joueur1.getScore());
+
+        Decompte decompte2 = decomptes.get(1);
+        assertEquals(4 + 2, decompte2.getPointsRoutes());
+        assertEquals(21, decompte2.getPointsDestinationsManquees());
+        assertEquals(3, decompte2.getLongueurCheminLePlusLong());
+        assertEquals(0, decompte2.getBonusEuropeExpress());
+        assertEquals(6 - 21 + 12, joueur2.getScore());
+
+        assertEquals(4, decomptes.get(2).getPointsRoutes());
+        assertEquals(3, decomptes.get(2).getLongueurCheminLePlusLong());
+    }
+
+    @Test
+    void testDecompteDestinationVersDanzig() {
+        Jeu jeu = new Jeu(new String[]{"Guybrush", "Largo"});
+        Plateau plateau = jeu.getPlateau();
+        Joueur joueur = jeu.getJoueurs().get(0);
+        for (Joueur j : jeu.getJoueurs()) j.getDestinations().clear();
+        Destination danzig = Destination.makeDestinationsEurope().stream()
+                .filter(d -> d.getVille2().equals("Danzig"))
+                .findFirst().orElseThrow();
+        assertEquals("Bruxelles - Danzig (9)", danzig.getNom());
+        joueur.getDestinations().add(danzig);
+        // Bruxelles - Amsterdam (1) - Essen (3) - Berlin (2) - Danzig (4)
+        plateau.getRoute("Amsterdam - Bruxelles").setProprietaire(joueur);
+        plateau.getRoute("Amsterdam - Essen").setProprietaire(joueur);
+        plateau.getRoute("Berlin - Essen").setProprietaire(joueur);
+        plateau.getRoute("Berlin - Danzig").setProprietaire(joueur);
+
+        jeu.decompter();
+        Decompte decompte = jeu.getDecomptes().get(0);
+        assertEquals(1 + 4 + 2 + 7, decompte.getPointsRoutes());
+        assertEquals(9, decompte.getPointsDestinationsRealisees());
+        assertEquals(0, decompte.getPointsDestinationsManquees());
+        assertEquals(10, decompte.getLongueurCheminLePlusLong());
+        assertEquals(14 + 9 + 12 + Decompte.BONUS_EUROPE_EXPRESS, joueur.getScore());
+    }
+}
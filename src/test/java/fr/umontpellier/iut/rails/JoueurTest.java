@@ -89,4 +89,33 @@ public class JoueurTest {
                 CouleurWagon.ROUGE));
         assertEquals(nbCartesWagon - 2, pileCartesWagon.size());
     }
+
+    @Test
+    void testChoisirCarteWagonPaiementEnUneReponse() {
+        jeu.setInput("ROUGE x2, BLEU", "ROUGE x4", "ROUGE x3, LOCOMOTIVE");
+        joueur1.getCartesWagon().addAll(List.of(CouleurWagon.ROUGE, CouleurWagon.BLEU, CouleurWagon.ROUGE,
+                CouleurWagon.LOCOMOTIVE, CouleurWagon.ROUGE, CouleurWagon.LOCOMOTIVE));
+
+        // paiement invalide : deux couleurs, puis trop de cartes rouges
+        List<CouleurWagon> cartes = joueur1.choisirCarteWagon(CouleurWagon.GRIS, 4, false);
+        assertTrue(TestUtils.contientExactement(cartes,
+                CouleurWagon.ROUGE, CouleurWagon.ROUGE, CouleurWagon.ROUGE, CouleurWagon.LOCOMOTIVE));
+        assertTrue(TestUtils.contientExactement(joueur1.getCartesWagon(),
+                CouleurWagon.BLEU, CouleurWagon.LOCOMOTIVE));
+    }
+
+    @Test
+    void testCapturerRoutePaiementEnUneReponse() {
+        jeu.setInput("Amsterdam - Essen", "JAUNE x2, ROUGE", "JAUNE x2, LOCOMOTIVE");
+        joueur1.getCartesWagon().addAll(List.of(CouleurWagon.JAUNE, CouleurWagon.ROUGE, CouleurWagon.JAUNE,
+                CouleurWagon.LOCOMOTIVE));
+        int score = joueur1.getScore();
+
+        joueur1.jouerTour();
+        assertEquals(joueur1, jeu.getPlateau().getRoute("Amsterdam - Essen").getProprietaire());
+        assertTrue(TestUtils.contientExactement(joueur1.getCartesWagon(), CouleurWagon.ROUGE));
+        assertEquals(score + 4, joueur1.getScore());
+        assertTrue(TestUtils.contientExactement(jeu.getDefausseCartesWagon(),
+                CouleurWagon.JAUNE, CouleurWagon.JAUNE, CouleurWagon.LOCOMOTIVE));
+    }
 }
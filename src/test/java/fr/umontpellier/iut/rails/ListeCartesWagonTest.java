@@ -0,0 +1,45 @@
+package fr.umontpellier.iut.rails;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Iterator;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ListeCartesWagonTest {
+
+    @Test
+    void testCartesTrieesEtCompteesParCouleur() {
+        ListeCartesWagon cartes = new ListeCartesWagon(List.of(CouleurWagon.LOCOMOTIVE, CouleurWagon.ROUGE,
+                CouleurWagon.NOIR, CouleurWagon.ROUGE));
+        assertEquals(List.of(CouleurWagon.NOIR, CouleurWagon.ROUGE, CouleurWagon.ROUGE, CouleurWagon.LOCOMOTIVE), cartes);
+        assertEquals(2, cartes.compter(CouleurWagon.ROUGE));
+        assertEquals(0, cartes.compter(CouleurWagon.BLEU));
+        assertEquals(1, cartes.indexOf(CouleurWagon.ROUGE));
+        assertEquals(2, cartes.lastIndexOf(CouleurWagon.ROUGE));
+        assertEquals(-1, cartes.indexOf(CouleurWagon.BLEU));
+    }
+
+    @Test
+    void testModificationsDeLaListe() {
+        ListeCartesWagon cartes = new ListeCartesWagon(List.of(CouleurWagon.ROUGE, CouleurWagon.NOIR));
+        assertEquals(CouleurWagon.NOIR, cartes.remove(0));
+        assertFalse(cartes.remove(CouleurWagon.NOIR));
+        assertTrue(cartes.remove(CouleurWagon.ROUGE));
+        assertTrue(cartes.isEmpty());
+
+        cartes.addAll(List.of(CouleurWagon.BLEU, CouleurWagon.BLEU, CouleurWagon.VERT));
+        Iterator<CouleurWagon> iterateur = cartes.iterator();
+        while (iterateur.hasNext()) {
+            if (iterateur.next() == CouleurWagon.BLEU) iterateur.remove();
+        }
+        assertEquals(List.of(CouleurWagon.VERT), cartes);
+        assertEquals(1, cartes.compter(CouleurWagon.VERT));
+        assertEquals(0, cartes.compter(CouleurWagon.BLEU));
+
+        cartes.clear();
+        assertEquals(0, cartes.size());
+        assertThrows(IndexOutOfBoundsException.class, () -> cartes.get(0));
+    }
+}
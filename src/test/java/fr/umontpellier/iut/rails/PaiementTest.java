@@ -0,0 +1,50 @@
+package fr.umontpellier.iut.rails;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PaiementTest {
+
+    private static List<String> lister(ListeCartesWagon main, CouleurWagon couleur, int nbCartes, int nbLocomotivesMin) {
+        return Paiement.lister(main, couleur, nbCartes, nbLocomotivesMin).stream().map(Paiement::toString).toList();
+    }
+
+    @Test
+    void testPaiementsClasses() {
+        ListeCartesWagon main = new ListeCartesWagon(List.of(CouleurWagon.ROUGE, CouleurWagon.ROUGE,
+                CouleurWagon.ROUGE, CouleurWagon.BLEU, CouleurWagon.BLEU, CouleurWagon.LOCOMOTIVE,
+                CouleurWagon.LOCOMOTIVE));
+        // le moins de locomotives d'abord, puis en gardant les séries les plus longues
+        assertEquals(List.of("BLEU x2", "ROUGE x2", "BLEU, LOCOMOTIVE", "ROUGE, LOCOMOTIVE", "LOCOMOTIVE x2"),
+                lister(main, CouleurWagon.GRIS, 2, 0));
+        assertEquals(List.of("ROUGE x3", "ROUGE x2, LOCOMOTIVE", "ROUGE, LOCOMOTIVE x2"),
+                lister(main, CouleurWagon.ROUGE, 3, 0));
+        // ferry avec au moins une locomotive
+        assertEquals(List.of("BLEU x2, LOCOMOTIVE", "ROUGE x2, LOCOMOTIVE", "BLEU, LOCOMOTIVE x2",
+                "ROUGE, LOCOMOTIVE x2"), lister(main, CouleurWagon.GRIS, 3, 1));
+        assertEquals(List.of("LOCOMOTIVE x2"), lister(main, CouleurWagon.LOCOMOTIVE, 2, 0));
+        assertTrue(lister(main, CouleurWagon.VERT, 3, 0).isEmpty());
+        assertTrue(lister(main, CouleurWagon.GRIS, 6, 0).isEmpty());
+    }
+
+    @Test
+    void testPaiementAutomatique() {
+        IOJeu jeu = new IOJeu(new String[]{"Guybrush", "Largo"});
+        Joueur joueur = jeu.getJoueurs().get(0);
+        joueur.getCartesWagon().clear();
+        joueur.getCartesWagon().addAll(List.of(CouleurWagon.JAUNE, CouleurWagon.LOCOMOTIVE, CouleurWagon.JAUNE,
+                CouleurWagon.VERT));
+        Route route = jeu.getPlateau().getRoute("Amsterdam - Essen");
+        Paiement meilleur = route.getPaiements(joueur).get(0);
+        assertEquals("JAUNE x2, LOCOMOTIVE", meilleur.toString());
+
+        jeu.setInput(meilleur.toString());
+        route.capturerParJoueur(joueur);
+        assertSame(joueur, route.getProprietaire());
+        assertTrue(TestUtils.contientExactement(joueur.getCartesWagon(), CouleurWagon.VERT));
+        assertTrue(TestUtils.contientExactement(jeu.getDefausseCartesWagon(), meilleur.getCartes().toArray(new CouleurWagon[0])));
+    }
+}
@@ -0,0 +1,76 @@
+package fr.umontpellier.iut.rails;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PiocheTest {
+
+    @Test
+    void testIndiceZeroEstLeDessusDeLaPile() {
+        Pioche<Integer> pioche = new Pioche<>(List.of(1, 2, 3));
+        pioche.add(0, 0);
+        pioche.add(4);
+        assertEquals(List.of(0, 1, 2, 3, 4), pioche);
+        assertEquals(0, pioche.piocher());
+        assertEquals(1, pioche.remove(0));
+        pioche.add(1, 7);
+        assertEquals(List.of(2, 7, 3, 4), pioche);
+        assertEquals(3, pioche.remove(2));
+        assertEquals(List.of(2, 7, 4), pioche);
+        pioche.clear();
+        assertNull(pioche.piocher());
+    }
+
+    @Test
+    void testPileCirculaireAgrandie() {
+        Pioche<Integer> pioche = new Pioche<>();
+        List<Integer> attendu = new ArrayList<>();
+        // alterne les ajouts dessus et dessous pour faire tourner le tableau
+        for (int i = 0; i < 100; i++) {
+            if (i % 2 == 0) {
+                pioche.add(0, i);
+                attendu.add(0, i);
+            } else {
+                pioche.add(i);
+                attendu.add(i);
+            }
+            if (i % 3 == 0) {
+                assertEquals(attendu.remove(0), pioche.piocher());
+            }
+        }
+        assertEquals(attendu, pioche);
+    }
+
+    @Test
+    void testMelangeSurPlaceConserveLesCartes() {
+        PiocheCartesWagon pioche = new PiocheCartesWagon();
+        for (int i = 0; i < 30; i++) {
+            pioche.add(i % 3 == 0 ? CouleurWagon.LOCOMOTIVE : CouleurWagon.ROUGE);
+        }
+        pioche.melanger(new Random(1));
+        assertEquals(30, pioche.size());
+        assertEquals(10, pioche.compter(CouleurWagon.LOCOMOTIVE));
+        assertEquals(20, pioche.compter(CouleurWagon.ROUGE));
+        CouleurWagon dessus = pioche.piocher();
+        assertEquals(dessus == CouleurWagon.LOCOMOTIVE ? 9 : 10, pioche.compter(CouleurWagon.LOCOMOTIVE));
+    }
+
+    @Test
+    void testCompteurDeLocomotivesTenuAJour() {
+        PiocheCartesWagon pioche = new PiocheCartesWagon(List.of(CouleurWagon.LOCOMOTIVE, CouleurWagon.BLEU));
+        assertEquals(1, pioche.compter(CouleurWagon.LOCOMOTIVE));
+        pioche.set(1, CouleurWagon.LOCOMOTIVE);
+        assertEquals(2, pioche.compter(CouleurWagon.LOCOMOTIVE));
+        assertEquals(0, pioche.compter(CouleurWagon.BLEU));
+        pioche.remove(CouleurWagon.LOCOMOTIVE);
+        assertEquals(1, pioche.compter(CouleurWagon.LOCOMOTIVE));
+        pioche.clear();
+        assertEquals(0, pioche.compter(CouleurWagon.LOCOMOTIVE));
+        assertFalse(pioche.contains(CouleurWagon.LOCOMOTIVE));
+    }
+}
@@ -0,0 +1,249 @@
+package fr.umontpellier.iut.rails;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PlateauTest {
+
+    @Test
+    void testIdentifiantsEtRecherchesParNom() {
+        Plateau plateau = new Plateau(Topologie.EUROPE, List.of());
+        List<Ville> villes = plateau.getVilles();
+        List<Route> routes = plateau.getRoutes();
+        for (int i = 0; i < villes.size(); i++) {
+            assertEquals(i, villes.get(i).getId());
+            assertSame(villes.get(i), plateau.getVille(villes.get(i).getNom()));
+        }
+        for (int i = 0; i < routes.size(); i++) {
+            assertEquals(i, routes.get(i).getId());
+            assertSame(routes.get(i), plateau.getRoute(routes.get(i).getNom()));
+            assertTrue(plateau.getRoutesAdjacentes(routes.get(i).getVille1()).contains(routes.get(i)));
+            assertTrue(plateau.getRoutesAdjacentes(routes.get(i).getVille2()).contains(routes.get(i)));
+        }
+        assertNull(plateau.getVille("Montpellier"));
+        assertNull(plateau.getRoute("Paris - Montpellier"));
+    }
+
+    @Test
+    void testRoutesDoubles() {
+        Plateau plateau = new Plateau(Topologie.EUROPE, List.of());
+        Route route1 = plateau.getRoute("Berlin - Frankfurt(1)");
+        Route route2 = plateau.getRoute("Berlin - Frankfurt(2)");
+        assertSame(route2, route1.getRouteDouble());
+        assertSame(route1, route2.getRouteDouble());
+        assertNull(plateau.getRoute("Berlin - Wien").getRouteDouble());
+        for (Route route : plateau.getRoutes()) {
+            if (route.getRouteDouble() != null) {
+                assertSame(route, route.getRouteDouble().getRouteDouble());
+                assertNotEquals(route.getNom(), route.getRouteDouble().getNom());
+            }
+        }
+    }
+
+    @Test
+    void testTopologiePartageeProprietairesParPartie() {
+        Jeu jeu1 = new Jeu(new String[]{"Guybrush", "Largo"});
+        Jeu jeu2 = new Jeu(new String[]{"LeChuck", "Elaine"});
+        assertSame(jeu1.getPlateau().getTopologie(), jeu2.getPlateau().getTopologie());
+        Joueur joueur = jeu1.getJoueurs().get(1);
+        jeu1.getRoutes().get(3).setProprietaire(joueur);
+        jeu1.getVilles().get(5).setProprietaire(joueur);
+        assertSame(joueur, jeu1.getRoutes().get(3).getProprietaire());
+        assertSame(joueur, jeu1.getVilles().get(5).getProprietaire());
+        assertNull(jeu2.getRoutes().get(3).getProprietaire());
+        assertNull(jeu2.getVilles().get(5).getProprietaire());
+        assertThrows(IllegalArgumentException.class, () -> jeu2.getRoutes().get(3).setProprietaire(joueur));
+        jeu1.getRoutes().get(3).setProprietaire(null);
+        assertNull(jeu1.getRoutes().get(3).getProprietaire());
+    }
+
+    @Test
+    void testPossessionsEnMasquesDeBits() {
+        Jeu jeu = new Jeu(new String[]{"Guybrush", "Largo", "LeChuck"});
+        Plateau plateau = jeu.getPlateau();
+        Joueur joueur1 = jeu.getJoueurs().get(0);
+        Joueur joueur2 = jeu.getJoueurs().get(2);
+        Route route1 = plateau.getRoute("Berlin - Frankfurt(1)");
+        Route route2 = plateau.getRoute("Berlin - Frankfurt(2)");
+        // une route d'identifiant supérieur à 64 (deuxième mot)
+        Route derniere = plateau.getRoutes().get(plateau.getRoutes().size() - 1);
+        long[] vide = plateau.instantane();
+
+        route1.setProprietaire(joueur1);
+        derniere.setProprietaire(joueur1);
+        plateau.getVilles().get(0).setProprietaire(joueur2);
+        assertEquals(List.of(route1, derniere), plateau.getRoutesCapturees(joueur1));
+        assertTrue(plateau.aCapture(joueur1, route1));
+        assertFalse(plateau.aCapture(joueur2, route1));
+        assertEquals(List.of(route2), plateau.getRoutesLibresEntre(route1.getVille2(), route1.getVille1()));
+
+        long[] instantane = plateau.instantane();
+        derniere.setProprietaire(joueur2);
+        assertEquals(List.of(route1), plateau.getRoutesCapturees(joueur1));
+        assertSame(joueur2, derniere.getProprietaire());
+        plateau.restaurer(instantane);
+        assertSame(joueur1, derniere.getProprietaire());
+        assertArrayEquals(instantane, plateau.instantane());
+        plateau.restaurer(vide);
+        assertNull(route1.getProprietaire());
+        assertNull(plateau.getVilles().get(0).getProprietaire());
+        assertEquals(plateau.getVilles().size(), plateau.getVillesLibres().size());
+    }
+
+    /**
+     * @return vrai si un parcours des routes du joueur relie les deux villes
+     */
+    private static boolean parcours(Plateau plateau, Joueur joueur, Ville depart, Ville arrivee) {
+        boolean[] vues = new boolean[plateau.getVilles().size()];
+        Deque<Ville> aVisiter = new ArrayDeque<>(List.of(depart));
+        vues[depart.getId()] = true;
+        while (!aVisiter.isEmpty()) {
+            Ville ville = aVisiter.pop();
+            if (ville == arrivee) return true;
+            for (Route route : plateau.getRoutesAdjacentes(ville)) {
+                Ville autre = route.getVille1() == ville ? route.getVille2() : route.getVille1();
+                if (route.getProprietaire() == joueur && !vues[autre.getId()]) {
+                    vues[autre.getId()] = true;
+                    aVisiter.push(autre);
+                }
+            }
+        }
+        return false;
+    }
+
+    @Test
+    void testDestinationsRealisees() {
+        Jeu jeu = new Jeu(new String[]{"Guybrush", "Largo"});
+        Plateau plateau = jeu.getPlateau();
+        Joueur joueur = jeu.getJoueurs().get(0);
+        Destination destination = new Destination("Amsterdam", "Frankfurt", 8);
+        joueur.getDestinations().clear();
+        joueur.getDestinations().add(destination);
+        assertFalse(joueur.aRealise(destination));
+
+        plateau.getRoute("Amsterdam - Essen").setProprietaire(joueur);
+        plateau.getRoute("Essen - Frankfurt").setProprietaire(joueur);
+        assertTrue(joueur.aRealise(destination));
+        assertEquals(List.of(destination), joueur.getDestinationsRealisees());
+        assertFalse(plateau.estRealisee(jeu.getJoueurs().get(1), destination));
+
+        // la perte d'une route sépare à nouveau les villes
+        plateau.getRoute("Essen - Frankfurt").setProprietaire(jeu.getJoueurs().get(1));
+        assertFalse(joueur.aRealise(destination));
+    }
+
+    @Test
+    void testConnexionsAleatoires() {
+        Jeu jeu = new Jeu(new String[]{"Guybrush", "Largo", "LeChuck"});
+        Plateau plateau = jeu.getPlateau();
+        Random random = new Random(3);
+        List<Route> routes = plateau.getRoutes();
+        List<Ville> villes = plateau.getVilles();
+        long[] instantane = null;
+        for (int i = 0; i < 300; i++) {
+            Route route = routes.get(random.nextInt(routes.size()));
+            int choix = random.nextInt(jeu.getJoueurs().size() + 1);
+            route.setProprietaire(choix < jeu.getJoueurs().size() ? jeu.getJoueurs().get(choix) : null);
+            if (i == 150) instantane = plateau.instantane();
+            if (i == 250) plateau.restaurer(instantane);
+            if (i % 10 == 0) {
+                for (Joueur joueur : jeu.getJoueurs()) {
+                    for (int k = 0; k < 20; k++) {
+                        Ville ville1 = villes.get(random.nextInt(villes.size()));
+                        Ville ville2 = villes.get(random.nextInt(villes.size()));
+                        assertEquals(parcours(plateau, joueur, ville1, ville2),
+                                plateau.sontReliees(joueur, ville1, ville2));
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * @return le nombre de wagons qu'il manque au joueur pour relier les deux
+     * villes, calculé par un parcours (Dijkstra) des routes libres et des
+     * routes du joueur, ou -1
+     */
+    private static int plusCourtChemin(Plateau plateau, Joueur joueur, Ville depart, Ville arrivee) {
+        int[] distances = new int[plateau.getVilles().size()];
+        boolean[] vues = new boolean[distances.length];
+        Arrays.fill(distances, Integer.MAX_VALUE);
+        distances[depart.getId()] = 0;
+        while (true) {
+            int ville = -1;
+            for (int v = 0; v < distances.length; v++) {
+                if (!vues[v] && distances[v] != Integer.MAX_VALUE && (ville < 0 || distances[v] < distances[ville])) {
+                    ville = v;
+                }
+            }
+            if (ville < 0) return -1;
+            if (ville == arrivee.getId()) return distances[ville];
+            vues[ville] = true;
+            for (Route route : plateau.getRoutesAdjacentes(plateau.getVilles().get(ville))) {
+                if (route.getProprietaire() != null && route.getProprietaire() != joueur) continue;
+                int cout = route.getProprietaire() == joueur ? 0 : route.getLongueur();
+                int autre = route.getVille1().getId() == ville ? route.getVille2().getId() : route.getVille1().getId();
+                distances[autre] = Math.min(distances[autre], distances[ville] + cout);
+            }
+        }
+    }
+
+    @Test
+    void testDistancesEntreVilles() {
+        Jeu jeu = new Jeu(new String[]{"Guybrush", "Largo"});
+        Plateau plateau = jeu.getPlateau();
+        Joueur joueur1 = jeu.getJoueurs().get(0);
+        Joueur joueur2 = jeu.getJoueurs().get(1);
+        Distances distances = plateau.getDistances(joueur1);
+        Ville amsterdam = plateau.getVille("Amsterdam");
+        Ville frankfurt = plateau.getVille("Frankfurt");
+        assertEquals(0, distances.getDistance(amsterdam, amsterdam));
+        int initiale = distances.getDistance(amsterdam, frankfurt);
+        assertEquals(plusCourtChemin(plateau, joueur1, amsterdam, frankfurt), initiale);
+
+        plateau.getRoute("Amsterdam - Frankfurt").setProprietaire(joueur1);
+        assertEquals(0, distances.getDistance(amsterdam, frankfurt));
+        // la route est bloquée pour l'autre joueur : il doit faire le détour
+        int detour = plateau.getDistances(joueur2).getDistance(amsterdam, frankfurt);
+        assertTrue(detour > initiale);
+        assertEquals(plusCourtChemin(plateau, joueur2, amsterdam, frankfurt), detour);
+        plateau.getRoute("Amsterdam - Frankfurt").setProprietaire(joueur2);
+        assertEquals(0, plateau.getDistances(joueur2).getDistance(amsterdam, frankfurt));
+        assertEquals(plusCourtChemin(plateau, joueur1, amsterdam, frankfurt),
+                distances.getDistance(amsterdam, frankfurt));
+    }
+
+    @Test
+    void testDistancesIncrementalesAleatoires() {
+        Jeu jeu = new Jeu(new String[]{"Guybrush", "Largo", "LeChuck"});
+        Plateau plateau = jeu.getPlateau();
+        Random random = new Random(5);
+        List<Route> routes = plateau.getRoutes();
+        List<Ville> villes = plateau.getVilles();
+        long[] instantane = null;
+        for (int i = 0; i < 300; i++) {
+            Route route = routes.get(random.nextInt(routes.size()));
+            int choix = random.nextInt(jeu.getJoueurs().size() + 1);
+            route.setProprietaire(choix < jeu.getJoueurs().size() ? jeu.getJoueurs().get(choix) : null);
+            if (i == 150) instantane = plateau.instantane();
+            if (i == 250) plateau.restaurer(instantane);
+            if (i % 5 == 0) {
+                for (Joueur joueur : jeu.getJoueurs()) {
+                    for (int k = 0; k < 10; k++) {
+                        Ville ville1 = villes.get(random.nextInt(villes.size()));
+                        Ville ville2 = villes.get(random.nextInt(villes.size()));
+                        assertEquals(plusCourtChemin(plateau, joueur, ville1, ville2),
+                                plateau.getDistances(joueur).getDistance(ville1, ville2));
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package fr.umontpellier.iut.rails;
+
+import com.google.gson.Gson;
+import fr.umontpellier.iut.gui.EtatPartie;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.AbstractMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Compare la sérialisation de l'état du jeu à chaque prompt : construction
+ * d'objets intermédiaires ({@code asPOJO}) sérialisés par Gson, et écriture
+ * directe par {@code EcrivainEtat}.
+ * <p>
+ * Entre deux prompts, une carte change de main (comme lors d'une pioche). Les
+ * allocations par prompt sont données par la métrique
+ * {@code gc.alloc.rate.norm} du profileur GC.
+ * <p>
+ * Exécution : lancer la méthode {@code main} depuis l'IDE (ou avec le classpath
+ * de test après {@code mvn test-compile}).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class PromptBenchmark {
+    private static final List<String> BOUTONS = List.of("Athina - Angora (5)", "Budapest - Sofia (5)");
+
+    private Jeu jeu;
+    private EcrivainEtat ecrivain;
+    private long version;
+
+    @Setup
+    public void setUp() {
+        jeu = new Jeu(new String[]{"Guybrush", "Largo", "LeChuck", "Elaine"});
+        ecrivain = new EcrivainEtat(jeu);
+        for (int i = 0; i < 10; i++) {
+            jeu.getJoueurs().get(i % 4).ajouterCarteWagon(CouleurWagon.ROUGE);
+        }
+        jeu.getRoutes().get(0).setProprietaire(jeu.getJoueurs().get(0));
+        jeu.getVilles().get(0).setProprietaire(jeu.getJoueurs().get(1));
+        for (int i = 0; i < 8; i++) {
+            jeu.log("<span class=\"joueur\">Guybrush</span>: vous avez pioché une carte wagon.");
+        }
+    }
+
+    /**
+     * Déplace une carte d'une main à l'autre
+     */
+    private void deplacerCarte() {
+        version++;
+        List<Joueur> joueurs = jeu.getJoueurs();
+        Joueur source = joueurs.get((int) (version % joueurs.size()));
+        Joueur destination = joueurs.get((int) ((version + 1) % joueurs.size()));
+        CouleurWagon carte = source.getCartesWagon().remove(0);
+        destination.ajouterCarteWagon(carte);
+    }
+
+    @Benchmark
+    public String cheminPOJO() {
+        deplacerCarte();
+        Map<String, Object> data = Map.ofEntries(
+                new AbstractMap.SimpleEntry<String, Object>("prompt", Map.ofEntries(
+                        new AbstractMap.SimpleEntry<String, Object>("instruction", "Que voulez-vous faire ?"),
+                        new AbstractMap.SimpleEntry<String, Object>("boutons", BOUTONS),
+                        new AbstractMap.SimpleEntry<String, Object>("nomJoueurCourant", jeu.getJoueurCourant().getNom()),
+                        new AbstractMap.SimpleEntry<String, Object>("peutPasser", true))),
+                new AbstractMap.SimpleEntry<>("villes",
+                        jeu.getVilles().stream().map(Ville::asPOJO).collect(Collectors.toList())),
+                new AbstractMap.SimpleEntry<>("routes",
+                        jeu.getRoutes().stream().map(Route::asPOJO).collect(Collectors.toList())),
+                new AbstractMap.SimpleEntry<String, Object>("joueurs",
+                        jeu.getJoueurs().stream().map(Joueur::asPOJO).collect(Collectors.toList())),
+                new AbstractMap.SimpleEntry<String, Object>("piles", Map.ofEntries(
+                        new AbstractMap.SimpleEntry<String, Object>("pileCartesWagon", jeu.getPileCartesWagon().size()),
+                        new AbstractMap.SimpleEntry<String, Object>("pileDestinations", jeu.getPileDestinations().size()),
+                        new AbstractMap.SimpleEntry<String, Object>("defausseCartesWagon", jeu.getDefausseCartesWagon()),
+                        new AbstractMap.SimpleEntry<String, Object>("cartesWagonVisibles", jeu.getCartesWagonVisibles()))),
+                new AbstractMap.SimpleEntry<String, Object>("log", jeu.getLog()));
+        return new Gson().toJson(data);
+    }
+
+    @Benchmark
+    public EtatPartie ecrivainEtat() {
+        deplacerCarte();
+        return ecrivain.ecrire(version, "Que voulez-vous faire ?", BOUTONS, true);
+    }
+
+    @Benchmark
+    public String ecrivainEtatJsonComplet() {
+        deplacerCarte();
+        return ecrivain.ecrire(version, "Que voulez-vous faire ?", BOUTONS, true).toJson();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(PromptBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}
@@ -0,0 +1,46 @@
+// traitement des messages reçus du serveur, sans dépendance à Svelte (testé
+// avec node, voir tests/messages.test.js)
+
+// applique un patch envoyé par le serveur (seuls les éléments modifiés sont transmis)
+export function appliquerPatch(data, patch) {
+  for (const section of ["villes", "routes", "joueurs"]) {
+    if (Array.isArray(patch[section])) {
+      data[section] = patch[section];
+    } else if (patch[section]) {
+      for (const [indice, element] of Object.entries(patch[section])) {
+        data[section][indice] = element;
+      }
+    }
+  }
+  for (const section of ["prompt", "piles", "log"]) {
+    if (patch[section] !== undefined) {
+      data[section] = patch[section];
+    }
+  }
+  data.version = patch.version;
+  return data;
+}
+
+// renvoie le nouvel état de la partie après un message du serveur, et indique
+// s'il faut redemander l'état complet (patch qui ne s'applique pas) ou si une
+// réponse du joueur a été refusée. `resynchronisation` indique que l'état
+// complet a déjà été redemandé : il n'est redemandé qu'une fois, et les patchs
+// sont ignorés jusqu'à sa réception (le résultat donne la nouvelle valeur)
+export function traiterMessage(data, message, resynchronisation = false) {
+  switch (message.type) {
+    case "patch":
+      if (resynchronisation) {
+        return { data, resynchronisation };
+      }
+      if (data && data.version === message.base) {
+        return { data: appliquerPatch(data, message), resynchronisation };
+      }
+      // version manquée : il faut redemander l'état complet
+      return { data, redemander: true, resynchronisation: true };
+    case "rejet":
+      // réponse invalide ou périmée : l'état de la partie n'a pas changé
+      return { data, rejet: message.reponse, resynchronisation };
+    default:
+      return { data: message, resynchronisation: false };
+  }
+}
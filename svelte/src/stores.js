@@ -4,4 +4,27 @@ if (hostname === "") {
     hostname = "localhost";
 }
 
-export const ws = writable(new WebSocket(`ws://${hostname}:3232`));
+// la partie à rejoindre peut être indiquée dans l'adresse de la page (?partie=...)
+let parametres = new URLSearchParams(window.location.search);
+parametres.set("delta", "1");
+// états reçus en binaire (JSON encodé une seule fois par le serveur pour tous les clients)
+parametres.set("encodage", "utf8");
+
+function connecter() {
+    let socket = new WebSocket(`ws://${hostname}:3232/?${parametres}`);
+    socket.binaryType = "arraybuffer";
+    return socket;
+}
+
+export const ws = writable(connecter());
+
+// reconnexion après une coupure : le serveur n'envoie que ce qui a changé depuis
+// la dernière version reçue (si elle est connue, et si la partie n'a pas été
+// recréée entre temps : l'époque identifie l'instance de la partie)
+export function reconnecter(epoque, version) {
+    if (epoque !== undefined && version !== undefined) {
+        parametres.set("epoque", epoque);
+        parametres.set("depuis", version);
+    }
+    ws.set(connecter());
+}
@@ -0,0 +1,59 @@
+import { test } from "node:test";
+import assert from "node:assert/strict";
+import { traiterMessage } from "../src/messages.js";
+
+function etat(version) {
+  return {
+    type: "etat", version, prompt: { instruction: "" },
+    villes: [{ nom: "Paris" }], routes: [{ nom: "Paris - Pamplona" }], joueurs: [], piles: {}, log: [],
+  };
+}
+
+test("un état complet remplace l'état courant", () => {
+  const resultat = traiterMessage(undefined, etat(3));
+  assert.equal(resultat.data.version, 3);
+  assert.equal(resultat.redemander, undefined);
+});
+
+test("un patch s'applique à sa version de base", () => {
+  const patch = { type: "patch", version: 4, base: 3, routes: { 0: { nom: "Paris - Pamplona", proprietaire: "Largo" } } };
+  const resultat = traiterMessage(etat(3), patch);
+  assert.equal(resultat.data.version, 4);
+  assert.equal(resultat.data.routes[0].proprietaire, "Largo");
+  assert.equal(resultat.data.villes[0].nom, "Paris");
+});
+
+test("un patch d'une autre base demande l'état complet", () => {
+  const data = etat(2);
+  const resultat = traiterMessage(data, { type: "patch", version: 4, base: 3 });
+  assert.equal(resultat.redemander, true);
+  assert.equal(resultat.data, data);
+});
+
+test("un rejet ne modifie pas l'état de la partie", () => {
+  const data = etat(3);
+  const resultat = traiterMessage(data, { type: "rejet", version: 3, reponse: "ROUGE x9" });
+  assert.equal(resultat.data, data);
+  assert.deepEqual(resultat.data, etat(3));
+  assert.equal(resultat.rejet, "ROUGE x9");
+});
+
+test("l'état complet n'est redemandé qu'une fois", () => {
+  const data = etat(2);
+  let resultat = traiterMessage(data, { type: "patch", version: 4, base: 3 });
+  assert.equal(resultat.redemander, true);
+  assert.equal(resultat.resynchronisation, true);
+
+  // les patchs suivants sont ignorés, même s'ils s'appliquent à l'état local
+  resultat = traiterMessage(resultat.data, { type: "patch", version: 5, base: 4 }, resultat.resynchronisation);
+  assert.equal(resultat.redemander, undefined);
+  resultat = traiterMessage(resultat.data, { type: "patch", version: 3, base: 2, log: ["x"] }, resultat.resynchronisation);
+  assert.equal(resultat.redemander, undefined);
+  assert.deepEqual(resultat.data, etat(2));
+
+  // l'état complet met fin à la resynchronisation
+  resultat = traiterMessage(resultat.data, etat(5), resultat.resynchronisation);
+  assert.equal(resultat.resynchronisation, false);
+  resultat = traiterMessage(resultat.data, { type: "patch", version: 6, base: 5 }, resultat.resynchronisation);
+  assert.equal(resultat.data.version, 6);
+});